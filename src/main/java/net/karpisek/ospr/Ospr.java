@@ -22,21 +22,43 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.eclipse.jetty.client.HttpClient;
+import org.jdom2.JDOMException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
+import com.google.common.base.VerifyException;
+import com.google.common.hash.Hashing;
 import com.google.common.io.CharStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+import net.karpisek.ospr.net.CachingSpObjectProvider;
+import net.karpisek.ospr.net.GetSpFilePropertiesBatch;
 import net.karpisek.ospr.net.HttpSpObjectProvider;
+import net.karpisek.ospr.net.ISpObjectProvider;
 import net.karpisek.ospr.net.SharepointOnlineAuthentication;
 import net.karpisek.ospr.net.SharepointOnlineAuthentication.Result;
+import net.karpisek.ospr.net.SharepointOnlineAuthenticationCache;
+import net.karpisek.ospr.net.SharepointOnlineTokenManager;
+import net.karpisek.ospr.net.SnapshotSpObjectProvider;
+import net.karpisek.ospr.net.SpChange;
+import net.karpisek.ospr.net.SpExecutors;
+import net.karpisek.ospr.net.SpChangeTokenException;
+import net.karpisek.ospr.net.SpMetadataCache;
+import net.karpisek.ospr.net.SpResponseFormat;
+import net.karpisek.ospr.net.SpSnapshot;
+import net.karpisek.ospr.net.SpThrottle;
 import net.karpisek.ospr.report.SpFileTreeReporter;
+import net.karpisek.ospr.report.SpReportFormat;
 import net.karpisek.ospr.net.SpUri;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
@@ -97,6 +119,33 @@ public class Ospr implements Callable<Integer>{
 			return v;
 		}
 	}
+	
+	static class ParallelismConverter implements ITypeConverter<Integer> {
+		@Override
+		public Integer convert(String string) throws Exception {
+			int v = Integer.parseInt(string);
+			Preconditions.checkArgument(v > 0, "Illegal parallelism value, must be > 0 (is '%s')", v);
+			return v;
+		}
+	}
+	
+	static class PageSizeConverter implements ITypeConverter<Integer> {
+		@Override
+		public Integer convert(String string) throws Exception {
+			int v = Integer.parseInt(string);
+			Preconditions.checkArgument(v > 0 || v == SpFileTreeReporter.UNPAGED, "Illegal page size value, must be > 0 or %s for unpaged listing (is '%s')", SpFileTreeReporter.UNPAGED, v);
+			return v;
+		}
+	}
+	
+	static class BatchSizeConverter implements ITypeConverter<Integer> {
+		@Override
+		public Integer convert(String string) throws Exception {
+			int v = Integer.parseInt(string);
+			Preconditions.checkArgument(v > 0 && v <= GetSpFilePropertiesBatch.MAX_BATCH_SIZE, "Illegal batch size value, must be > 0 and <= %s (is '%s')", GetSpFilePropertiesBatch.MAX_BATCH_SIZE, v);
+			return v;
+		}
+	}
 
 	@Option(names = { "-u", "--user" }, required=true, paramLabel="USERNAME", description = "sharepoint account username in format <userName>@<yourdomain>.onmicrosoft.com")
 	private String username;	
@@ -107,6 +156,42 @@ public class Ospr implements Callable<Integer>{
 	
 	@Option(names = {"--max-depth" }, paramLabel="MAX", converter = MaxDepthConverter.class, description = "how many levels of (sub)folders to traverse, -1 for unlimited")
 	private int maxDepth = UNLIMITED_DEPTH;
+	
+	@Option(names = {"--parallelism" }, paramLabel="N", converter = ParallelismConverter.class, description = "how many folders to fetch at the same time, 1 for sequential traversal")
+	private int parallelism = 1;
+	
+	@Option(names = {"--properties-parallelism" }, paramLabel="N", converter = ParallelismConverter.class, description = "how many office file properties to fetch at the same time, fetching runs in background of traversal")
+	private int propertiesParallelism = 1;
+	
+	@Option(names = {"--batch-size" }, paramLabel="N", converter = BatchSizeConverter.class, description = "how many office file properties to fetch in one $batch request, 1 for separate request per file")
+	private int batchSize = 1;
+	
+	@Option(names = {"--page-size" }, paramLabel="N", converter = PageSizeConverter.class, description = "how many folder children to list in one request, -1 to list whole folder at once, paged folders are traversed sequentially")
+	private int pageSize = SpFileTreeReporter.UNPAGED;
+	
+	@Option(names = {"--response-format" }, paramLabel="FORMAT", description = "format of sharepoint REST responses, ATOM or JSON (smaller and faster to parse)")
+	private SpResponseFormat responseFormat = SpResponseFormat.ATOM;
+	
+	@Option(names = {"--auth-cache" }, paramLabel="DIR", description = "directory where to keep encrypted authentication results, so following runs of the same user can reuse them until close to expiration")
+	private Path authCache;
+	
+	@Option(names = {"--virtual-threads" }, description = "run blocking folder and properties requests on virtual threads (Java 21+, pool of threads on older Java), parallelism options still limit requests in flight; only affects reports using --cache or --snapshot, plain http requests are asynchronous and do not block threads")
+	private boolean virtualThreads;
+	
+	@Option(names = {"--format" }, paramLabel="FORMAT", description = "format of report, XLSX, CSV or NDJSON (written continuously with constant memory, folder rollups go into separate _folders file)")
+	private SpReportFormat format = SpReportFormat.XLSX;
+	
+	@Option(names = {"--in-memory" }, description = "keep whole XLSX report in memory until written instead of writing rows continuously into temporary files, only for reports small enough to fit into memory")
+	private boolean inMemory;
+	
+	@Option(names = {"--resume" }, description = "continue interrupted report of the same URL from its journal, finished folders are not fetched again")
+	private boolean resume;
+	
+	@Option(names = {"--snapshot" }, paramLabel="FILE", description = "keep snapshot of folder tree in FILE, following runs fetch only folders changed since previous run")
+	private Path snapshotPath;
+	
+	@Option(names = {"--cache" }, paramLabel="FILE", description = "keep office file properties in FILE, following runs fetch again only properties of files modified since cached")
+	private Path cachePath;
 
 	@Override
 	public Integer call() throws Exception {
@@ -120,6 +205,13 @@ public class Ospr implements Callable<Integer>{
 
 		// Configure HttpClient, for example:
 		httpClient.setFollowRedirects(false);
+		// asynchronous folder fetches over parallelism limit wait in http client queue for free connection
+		httpClient.setMaxRequestsQueuedPerDestination(Math.max(httpClient.getMaxRequestsQueuedPerDestination(), parallelism + propertiesParallelism));
+
+		// authentication is refreshed in background, at most one refresh is running at the same time
+		ExecutorService authExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("ospr-auth-%d").setDaemon(true).build());
+		// folder responses are parsed while being received, at most one response for each request allowed in flight by throttle
+		ExecutorService parseExecutor = SpExecutors.newExecutor("parse", parallelism + propertiesParallelism, false);
 
 		// Start HttpClient
 		try {
@@ -130,23 +222,102 @@ public class Ospr implements Callable<Integer>{
 				.stsEndpoint(stsEndpoint)
 				.username(username)
 				.password(password)
+				.responseFormat(responseFormat)
+				.cache(authCache == null ? null : new SharepointOnlineAuthenticationCache(authCache))
 				.build();
 			
 			Stopwatch authStopwatch = Stopwatch.createStarted();
 			Result authResult = auth.execute(httpClient);
 			LOG.info("authFinished timeMs={}",  authStopwatch.elapsed(TimeUnit.MILLISECONDS));
 			
-			Path outputPath = Paths.get(String.format("target/%s_%s.xlsx", sharepointUri.getSite(),LocalDateTime.now().format(DateTimeFormatter.ISO_DATE)));
+			Path outputPath = Paths.get(String.format("target/%s_%s.%s", sharepointUri.getSite(),LocalDateTime.now().format(DateTimeFormatter.ISO_DATE), format.getExtension()));
 			if(outputPath.getParent() != null && !Files.exists(outputPath.getParent())) {
 				Files.createDirectories(outputPath.getParent());
 			}
-			new SpFileTreeReporter(new HttpSpObjectProvider(httpClient, authResult, sharepointUri.getSiteUri()), sharepointUri.getPath(), maxDepth, outputPath).execute();
+			//journal of report in progress, deleted when report is written, reports of different folders of the same site have their own journals
+			Path journalPath = outputPath.resolveSibling(String.format("%s_%s.journal", sharepointUri.getSite(), Hashing.murmur3_32().hashString(sharepointUri.getPath(), Charsets.UTF_8)));
+			//authentication expires during long traversals, it is refreshed before expiration or when rejected
+			SharepointOnlineTokenManager tokens = new SharepointOnlineTokenManager(auth, httpClient, authResult, authExecutor);
+			//throttled requests are retried, amount of requests sent at the same time adapts to throttling
+			SpThrottle throttle = new SpThrottle(httpClient, parallelism + propertiesParallelism);
+			HttpSpObjectProvider httpObjectProvider = new HttpSpObjectProvider(httpClient, tokens, throttle, sharepointUri.getSiteUri(), responseFormat, parseExecutor);
+			ISpObjectProvider objectProvider = httpObjectProvider;
+			if(snapshotPath != null) {
+				objectProvider = new SnapshotSpObjectProvider(snapshot(httpObjectProvider), httpObjectProvider);
+			}
+			//properties of unmodified office files are taken from previous runs, folders are always listed
+			try(SpMetadataCache cache = cachePath == null ? null : SpMetadataCache.open(cachePath)){
+				CachingSpObjectProvider caching = cache == null ? null : new CachingSpObjectProvider(cache, objectProvider, SpFileTreeReporter::hasProperties);
+				new SpFileTreeReporter.Builder(caching == null ? objectProvider : caching, sharepointUri.getPath(), outputPath)
+					.maxDepth(maxDepth)
+					.parallelism(parallelism)
+					.propertiesParallelism(propertiesParallelism)
+					.batchSize(batchSize)
+					.pageSize(pageSize)
+					.streaming(inMemory ? SpFileTreeReporter.IN_MEMORY : SpFileTreeReporter.STREAMING)
+					.journal(journalPath)
+					.resume(resume)
+					.format(format)
+					.virtualThreads(virtualThreads)
+					.build()
+					.execute();
+				if(caching != null) {
+					LOG.info("cache propertiesHits={} propertiesMisses={}", caching.getPropertiesHits(), caching.getPropertiesMisses());
+				}
+			}
+			LOG.info("throttling requests={} throttled={} retries={} backoffMs={} limit={}", throttle.getRequests(), throttle.getThrottled(), throttle.getRetries(), throttle.getBackoffTime().toMillis(), throttle.getLimit());
 			
 			LOG.info("End timeMs={}", stopwatch.elapsed(TimeUnit.MILLISECONDS));
 		} finally {
+			authExecutor.shutdownNow();
+			parseExecutor.shutdownNow();
 			httpClient.stop();
 		}
 		return 0;
 	}
+	
+	/**
+	 * @return snapshot of reported folder tree updated by changes since previous run, or walked whole if there is no usable previous snapshot
+	 */
+	private SpSnapshot snapshot(HttpSpObjectProvider objectProvider) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		Stopwatch snapshotStopwatch = Stopwatch.createStarted();
+		String library = sharepointUri.getLibraryPath();
+		//token is taken before fetching, changes done during fetching are applied again by next run
+		String changeToken = objectProvider.getChangeToken(library);
+		SpSnapshot snapshot = null;
+		SpSnapshot previous = null;
+		if(Files.exists(snapshotPath)) {
+			try {
+				previous = SpSnapshot.load(snapshotPath);
+			} catch (VerifyException e) {
+				//snapshot written by older version
+				LOG.warn("snapshot not readable, walking whole folder tree", e);
+			}
+		}
+		if(previous != null && previous.isFor(sharepointUri.getPath(), maxDepth)) {
+			try {
+				List<SpChange> changes = objectProvider.getChanges(library, previous.getChangeToken());
+				snapshot = previous.update(objectProvider, changes, changeToken);
+			} catch (SpChangeTokenException e) {
+				//change token of too old snapshot is not accepted any more, other failures are not hidden by walking whole tree
+				LOG.warn("snapshot changes not available, walking whole folder tree", e);
+			}
+		}
+		if(snapshot == null) {
+			if(parallelism > 1) {
+				ExecutorService executor = SpExecutors.newExecutor("snapshot", parallelism, virtualThreads);
+				try {
+					snapshot = SpSnapshot.walk(objectProvider, sharepointUri.getPath(), maxDepth, changeToken, executor, parallelism);
+				} finally {
+					executor.shutdownNow();
+				}
+			} else {
+				snapshot = SpSnapshot.walk(objectProvider, sharepointUri.getPath(), maxDepth, changeToken);
+			}
+		}
+		snapshot.store(snapshotPath);
+		LOG.info("snapshotFinished folders={} timeMs={}", snapshot.size(), snapshotStopwatch.elapsed(TimeUnit.MILLISECONDS));
+		return snapshot;
+	}
 
 }
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import org.jdom2.JDOMException;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Provider answering file properties from {@link SpMetadataCache} if files were not modified since cached, 
+ * other provider is asked only for properties of modified or not yet cached files.
+ * 
+ * Folders are always listed by other provider, modification time and version of file are known from fresh listing 
+ * of its folder. Sharepoint does not change modification time of folder when files under it are modified, 
+ * so listings themselves can not be validated and are not cached.
+ * Only listed files whose properties will be requested are remembered until requested.
+ */
+public class CachingSpObjectProvider implements ISpObjectProvider {
+	private final SpMetadataCache cache;
+	private final ISpObjectProvider objectProvider;
+	private final Predicate<? super SpFile> requested;
+	//listed files whose properties were not requested yet
+	private final Map<String, SpFile> listed = new ConcurrentHashMap<>();
+	private final LongAdder propertiesHits = new LongAdder();
+	private final LongAdder propertiesMisses = new LongAdder();
+	
+	/**
+	 * @param objectProvider asked for folders and properties missing in cache
+	 */
+	public CachingSpObjectProvider(SpMetadataCache cache, ISpObjectProvider objectProvider) {
+		this(cache, objectProvider, file -> true);
+	}
+	
+	/**
+	 * @param objectProvider asked for folders and properties missing in cache
+	 * @param requested listed files whose properties will be requested, others are not remembered
+	 */
+	public CachingSpObjectProvider(SpMetadataCache cache, ISpObjectProvider objectProvider, Predicate<? super SpFile> requested) {
+		this.cache = cache;
+		this.objectProvider = objectProvider;
+		this.requested = requested;
+	}
+	
+	@Override
+	public SpFolder getFolder(String folder) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		SpFolder result = objectProvider.getFolder(folder);
+		listed(result.getChildren());
+		return result;
+	}
+	
+	@Override
+	public ISpFolderListing listFolder(String folder, int pageSize) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		ISpFolderListing listing = objectProvider.listFolder(folder, pageSize);
+		return new ISpFolderListing() {
+			@Override
+			public SpFolder getFolder() {
+				return listing.getFolder();
+			}
+			
+			@Override
+			public List<? extends SpObject> nextPage() throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+				List<? extends SpObject> page = listing.nextPage();
+				listed(page);
+				return page;
+			}
+		};
+	}
+	
+	@Override
+	public SpFileProperties getSpFileProperties(String file) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		return getSpFileProperties(Lists.newArrayList(file)).get(0);
+	}
+	
+	@Override
+	public List<SpFileProperties> getSpFileProperties(List<String> files) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		List<SpFileProperties> result = Lists.newArrayListWithCapacity(files.size());
+		List<SpFile> listedFiles = Lists.newArrayListWithCapacity(files.size());
+		List<Integer> missing = Lists.newArrayList();
+		for (String file : files) {
+			SpFile spFile = listed.remove(file);
+			SpFileProperties properties = spFile == null ? null : cache.getProperties(spFile);
+			if(properties == null) {
+				missing.add(result.size());
+			}
+			result.add(properties);
+			listedFiles.add(spFile);
+		}
+		propertiesHits.add(files.size() - missing.size());
+		propertiesMisses.add(missing.size());
+		if(missing.isEmpty()) {
+			return result;
+		}
+		
+		List<SpFileProperties> fetched = objectProvider.getSpFileProperties(Lists.transform(missing, files::get));
+		for (int i = 0; i < missing.size(); i++) {
+			int index = missing.get(i);
+			result.set(index, fetched.get(i));
+			//properties of files with unknown modification time can not be validated later
+			if(listedFiles.get(index) != null) {
+				cache.putProperties(listedFiles.get(index), fetched.get(i));
+			}
+		}
+		return result;
+	}
+	
+	private void listed(List<? extends SpObject> children) {
+		for (SpObject child : children) {
+			if(child.isFile() && requested.test((SpFile) child)) {
+				listed.put(child.getServerRelativeUrl(), (SpFile) child);
+			}
+		}
+	}
+	
+	public long getPropertiesHits() {
+		return propertiesHits.sum();
+	}
+	
+	public long getPropertiesMisses() {
+		return propertiesMisses.sum();
+	}
+}
@@ -11,32 +11,43 @@
 package net.karpisek.ospr.net;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.StringReader;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.eclipse.jetty.client.HttpClient;
-import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.http.HttpMethod;
-import org.eclipse.jetty.http.HttpStatus;
-import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.JDOMException;
 import org.jdom2.Namespace;
-import org.jdom2.filter.Filters;
-import org.jdom2.input.SAXBuilder;
-import org.jdom2.xpath.XPathExpression;
-import org.jdom2.xpath.XPathFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Strings;
 import com.google.common.base.Verify;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.net.UrlEscapers;
 
 import net.karpisek.ospr.net.SharepointOnlineAuthentication.Result;
@@ -47,98 +58,286 @@ import net.karpisek.ospr.net.SharepointOnlineAuthentication.Result;
 public class GetFolder {
 	private static final Logger LOG = LoggerFactory.getLogger(SharepointOnlineAuthentication.class);
 	
+	private static final String ATOM = "http://www.w3.org/2005/Atom";
+	private static final String DATASERVICES = "http://schemas.microsoft.com/ado/2007/08/dataservices";
+	private static final String METADATA = "http://schemas.microsoft.com/ado/2007/08/dataservices/metadata";
+	
+	private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+	static {
+		INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+	}
+	
 	public static Instant getChildInstant(Element element, String cname, Namespace ns) {
-		String text = element.getChildText(cname, ns);
+		return toInstant(element.getChildText(cname, ns));
+	}
+	
+	public static int getChildInt(Element element, String cname, Namespace ns) {
+		return toInt(element.getChildText(cname, ns));
+	}
+	
+	private static Instant toInstant(String text) {
 		if(text == null) {
 			return null;
 		}
 		return Instant.from(DateTimeFormatter.ISO_INSTANT.parse(text));
 	}
 	
-	public static int getChildInt(Element element, String cname, Namespace ns) {
-		String text = element.getChildText(cname, ns);
+	private static int toInt(String text) {
 		if(text == null) {
 			return 0;
 		}
 		return Integer.parseInt(text);
 	}
+	
+	private static long toLong(String text) {
+		if(text == null) {
+			return 0;
+		}
+		return Long.parseLong(text);
+	}
+	
+	/**
+	 * Properties of SP.File entry read by {@link #parseFile(Function)}, only these are requested from server.
+	 */
+	static final List<String> FILE_PROPERTIES = ImmutableList.of("Name", "ServerRelativeUrl", "TimeLastModified", "TimeCreated", "Length", "MajorVersion", "MinorVersion", "UniqueId");
+	
+	/**
+	 * Properties of SP.Folder entry read by {@link #parseFolder(Function, List)}, only these are requested from server.
+	 */
+	static final List<String> FOLDER_PROPERTIES = ImmutableList.of("Name", "ServerRelativeUrl", "TimeLastModified", "TimeCreated", "ItemCount", "UniqueId");
+	
+	/**
+	 * @return value of $select query option for given properties of entity or its navigation property (if prefix is not empty)
+	 */
+	static String select(String prefix, List<String> properties) {
+		return properties.stream().map(each -> prefix.isEmpty() ? each : prefix + "/" + each).collect(Collectors.joining(","));
+	}
+	
+	/**
+	 * @param properties answers text of property of SP.File entry by its name
+	 */
+	static SpFile parseFile(Function<String, String> properties) {
+		SpVersion version = SpVersion.fromString(properties.apply("MajorVersion"), properties.apply("MinorVersion"));
+		return new SpFile(
+			properties.apply("Name"), 
+			properties.apply("ServerRelativeUrl"), 
+			toInstant(properties.apply("TimeLastModified")), 
+			toInstant(properties.apply("TimeCreated")),
+			toLong(properties.apply("Length")),
+			version,
+			Strings.emptyToNull(properties.apply("UniqueId"))
+		);
+	}
+	
+	/**
+	 * @param properties answers text of property of SP.Folder entry by its name
+	 */
+	static SpFolder parseFolder(Function<String, String> properties, List<? extends SpObject> children) {
+		return new SpFolder(
+			properties.apply("Name"), 
+			properties.apply("ServerRelativeUrl"), 
+			toInstant(properties.apply("TimeLastModified")),
+			toInstant(properties.apply("TimeCreated")),
+			toInt(properties.apply("ItemCount")),
+			children,
+			Strings.emptyToNull(properties.apply("UniqueId"))
+		);
+	}
 
 	private Result authResult;
 	private URI siteUri;
 	private String folderServerRelativeUrl;
+	private boolean expand;
+	private SpResponseFormat format;
 
 	public GetFolder(SharepointOnlineAuthentication.Result authResult, URI siteUri, String folderServerRelativeUrl) {
+		this(authResult, siteUri, folderServerRelativeUrl, true);
+	}
+	
+	/**
+	 * @param expand whether to answer also subfolders and files of folder, otherwise answered folder has no children
+	 */
+	public GetFolder(SharepointOnlineAuthentication.Result authResult, URI siteUri, String folderServerRelativeUrl, boolean expand) {
+		this(authResult, siteUri, folderServerRelativeUrl, expand, SpResponseFormat.ATOM);
+	}
+	
+	/**
+	 * @param format of requested response
+	 */
+	public GetFolder(SharepointOnlineAuthentication.Result authResult, URI siteUri, String folderServerRelativeUrl, boolean expand, SpResponseFormat format) {
 		this.authResult = authResult;
 		this.siteUri = siteUri;
 		this.folderServerRelativeUrl = folderServerRelativeUrl;
+		this.expand = expand;
+		this.format = format;
+	}
+	
+	static String url(URI siteUri, String folderServerRelativeUrl) {
+		return siteUri + "/_api/Web/GetFolderByServerRelativeUrl(%27" + UrlEscapers.urlFragmentEscaper().escape(folderServerRelativeUrl) + "%27)";
 	}
 	
 	//TODO: would want to have better reaction for invalid (not found) folders 
 	public SpFolder execute(HttpClient httpClient) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
-		String url = siteUri + "/_api/Web/GetFolderByServerRelativeUrl(%27" + UrlEscapers.urlFragmentEscaper().escape(folderServerRelativeUrl) + "%27)?$expand=Folders,Files";
-		
-		ContentResponse response = httpClient.newRequest(url).method(HttpMethod.GET).header("X-RequestDigest", authResult.getFormDigest()).send();
-		LOG.debug("statusCode={}", response.getStatus());
-		Verify.verify(response.getStatus() == HttpStatus.OK_200, "response status not ok, statusCode={}", response.getStatus());
-		
-		String content = response.getContentAsString();
-		LOG.debug("content={}", response.getStatus());
-		Verify.verify(Strings.emptyToNull(content) != null, "response content does not contain data");
-		
-		return parse(content);
+		//response is parsed while being received, without keeping whole content in memory
+		return SpRequests.send(newRequest(httpClient), this::parse);
+	}
+	
+	/**
+	 * Same as {@link #execute(HttpClient)} but without blocking calling thread.
+	 * @param parseExecutor running parse of response while it is being received
+	 */
+	public CompletableFuture<SpFolder> executeAsync(HttpClient httpClient, Executor parseExecutor) {
+		return SpRequests.sendAsync(newRequest(httpClient), this::parse, parseExecutor);
+	}
+	
+	private Request newRequest(HttpClient httpClient) {
+		String url = url(siteUri, folderServerRelativeUrl) + (expand 
+				? "?$select=" + select("", FOLDER_PROPERTIES) + "," + select("Files", FILE_PROPERTIES) + "," + select("Folders", FOLDER_PROPERTIES) + "&$expand=Folders,Files" 
+				: "?$select=" + select("", FOLDER_PROPERTIES));
+		return httpClient.newRequest(url).method(HttpMethod.GET).accept(format.getMediaType()).header("X-RequestDigest", authResult.getFormDigest());
 	}
 	
 	public SpFolder parse(String xml) throws JDOMException, IOException {
-		SAXBuilder builder = new SAXBuilder();
-		Document doc = builder.build(new StringReader(xml));
-
-		Namespace a = Namespace.getNamespace("a", "http://www.w3.org/2005/Atom");
-		Namespace d = Namespace.getNamespace("d", "http://schemas.microsoft.com/ado/2007/08/dataservices");
-		Namespace m = Namespace.getNamespace("m", "http://schemas.microsoft.com/ado/2007/08/dataservices/metadata");
-		
-		List<SpObject> children = Lists.newArrayList();
-		XPathExpression<Element> filesExpr = XPathFactory.instance().compile("//a:feed/a:entry[a:category[@term='SP.File']]/a:content/m:properties", Filters.element(), null, a,d,m);
-		List<Element> filesElements = filesExpr.evaluate(doc);
-		for (Element properties : filesElements) {
-			SpVersion version = SpVersion.fromString(properties.getChildText("MajorVersion", d), properties.getChildText("MinorVersion", d));
-
-			children.add(
-				new SpFile(
-					properties.getChildText("Name", d), 
-					properties.getChildText("ServerRelativeUrl", d), 
-					getChildInstant(properties, "TimeLastModified", d), 
-					getChildInstant(properties, "TimeCreated", d),
-					getChildInt(properties, "Length", d),
-					version
-				)
-			);
-		}		
-		
-		XPathExpression<Element> foldersExpr = XPathFactory.instance().compile("//a:feed/a:entry[a:category[@term='SP.Folder']]/a:content/m:properties", Filters.element(), null, a,d,m);
-		List<Element> folderElements = foldersExpr.evaluate(doc);
-		for (Element properties : folderElements) {
-			children.add(
-				new SpFolder(
-					properties.getChildText("Name", d), 
-					properties.getChildText("ServerRelativeUrl", d), 
-					getChildInstant(properties, "TimeLastModified", d),
-					getChildInstant(properties, "TimeCreated", d),
-					getChildInt(properties, "ItemCount", d),
-					Lists.newArrayList()
-				)
-			);
-		}	
-		
-		XPathExpression<Element> expr5 = XPathFactory.instance().compile("/a:entry/a:content/m:properties", Filters.element(), null, a,d,m);
-		List<Element> links5 = expr5.evaluate(doc);
-		Verify.verify(links5.size() == 1, "This is strange, should be exactly one properties element about");
-		return new SpFolder(
-			links5.get(0).getChildText("Name", d), 
-			links5.get(0).getChildText("ServerRelativeUrl", d), 
-			getChildInstant(links5.get(0), "TimeLastModified", d),
-			getChildInstant(links5.get(0), "TimeCreated", d),
-			getChildInt(links5.get(0), "ItemCount", d),
-			children
-		);
+		if(format == SpResponseFormat.JSON) {
+			return parseJson(new SpJsonReader(new StringReader(xml)));
+		}
+		try {
+			return parse(INPUT_FACTORY.createXMLStreamReader(new StringReader(xml)));
+		} catch (XMLStreamException e) {
+			throw new IOException("Failed to parse folder " + folderServerRelativeUrl, e);
+		}
+	}
+	
+	public SpFolder parse(InputStream stream) throws JDOMException, IOException {
+		if(format == SpResponseFormat.JSON) {
+			return parseJson(new SpJsonReader(new InputStreamReader(stream, StandardCharsets.UTF_8)));
+		}
+		try {
+			return parse(INPUT_FACTORY.createXMLStreamReader(stream));
+		} catch (XMLStreamException e) {
+			throw new IOException("Failed to parse folder " + folderServerRelativeUrl, e);
+		}
+	}
+	
+	/**
+	 * Parse response in one pass, properties of each entry are turned into {@link SpFile} or {@link SpFolder} 
+	 * according to category of entry as soon as they are read.
+	 * Properties of root entry are properties of requested folder, nested entries are its files and subfolders.
+	 */
+	private SpFolder parse(XMLStreamReader reader) throws XMLStreamException {
+		try {
+			List<SpObject> children = Lists.newArrayList();
+			Map<String, String> folderProperties = null;
+			//category term of each currently open entry, empty until category element is read
+			Deque<String> entries = new ArrayDeque<>();
+			while(reader.hasNext()) {
+				int event = reader.next();
+				if(event == XMLStreamConstants.START_ELEMENT) {
+					String namespace = reader.getNamespaceURI();
+					String name = reader.getLocalName();
+					if(ATOM.equals(namespace) && "entry".equals(name)) {
+						entries.push("");
+					}
+					else if(ATOM.equals(namespace) && "category".equals(name) && !entries.isEmpty()) {
+						entries.pop();
+						entries.push(Strings.nullToEmpty(reader.getAttributeValue(null, "term")));
+					}
+					else if(METADATA.equals(namespace) && "properties".equals(name) && !entries.isEmpty()) {
+						Map<String, String> properties = readProperties(reader);
+						if(entries.size() == 1) {
+							folderProperties = properties;
+						}
+						else if("SP.File".equals(entries.peek())) {
+							children.add(parseFile(properties::get));
+						}
+						else if("SP.Folder".equals(entries.peek())) {
+							children.add(parseFolder(properties::get, Lists.newArrayList()));
+						}
+					}
+				}
+				else if(event == XMLStreamConstants.END_ELEMENT && ATOM.equals(reader.getNamespaceURI()) && "entry".equals(reader.getLocalName())) {
+					entries.pop();
+				}
+			}
+			Verify.verify(folderProperties != null, "This is strange, should be exactly one properties element about");
+			LOG.debug("folder={} children={}", folderServerRelativeUrl, children.size());
+			return parseFolder(folderProperties::get, children);
+		}
+		finally {
+			reader.close();
+		}
+	}
+	
+	/**
+	 * Parse JSON response in one pass, properties of folder are members of root object, 
+	 * its files and subfolders are objects in Files and Folders arrays.
+	 */
+	private SpFolder parseJson(SpJsonReader reader) throws IOException {
+		try {
+			List<SpObject> children = Lists.newArrayList();
+			Map<String, String> folderProperties = Maps.newHashMap();
+			reader.beginObject();
+			while(reader.hasNext()) {
+				String name = reader.nextName();
+				SpJsonReader.Token token = reader.peek();
+				if(("Files".equals(name) || "Folders".equals(name)) && token == SpJsonReader.Token.BEGIN_ARRAY) {
+					reader.beginArray();
+					while(reader.hasNext()) {
+						Map<String, String> properties = reader.nextProperties();
+						children.add("Files".equals(name) ? parseFile(properties::get) : parseFolder(properties::get, Lists.newArrayList()));
+					}
+					reader.endArray();
+				}
+				else if(token == SpJsonReader.Token.BEGIN_OBJECT || token == SpJsonReader.Token.BEGIN_ARRAY) {
+					reader.skipValue();
+				}
+				else {
+					String value = reader.nextString();
+					if(value != null) {
+						folderProperties.put(name, value);
+					}
+				}
+			}
+			reader.endObject();
+			LOG.debug("folder={} children={}", folderServerRelativeUrl, children.size());
+			return parseFolder(folderProperties::get, children);
+		}
+		finally {
+			reader.close();
+		}
+	}
+	
+	/**
+	 * Read text of all simple properties until end of properties element, properties with null value are not answered.
+	 */
+	private static Map<String, String> readProperties(XMLStreamReader reader) throws XMLStreamException {
+		Map<String, String> result = Maps.newHashMap();
+		int depth = 1;
+		String name = null;
+		StringBuilder text = new StringBuilder();
+		while(depth > 0) {
+			int event = reader.next();
+			if(event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+				if(depth == 2 && DATASERVICES.equals(reader.getNamespaceURI()) && !"true".equals(reader.getAttributeValue(METADATA, "null"))) {
+					name = reader.getLocalName();
+					text.setLength(0);
+				}
+			}
+			else if(event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+				if(depth == 2 && name != null) {
+					text.append(reader.getText());
+				}
+			}
+			else if(event == XMLStreamConstants.END_ELEMENT) {
+				if(depth == 2 && name != null) {
+					result.put(name, text.toString());
+					name = null;
+				}
+				depth--;
+			}
+		}
+		return result;
 	}
 }
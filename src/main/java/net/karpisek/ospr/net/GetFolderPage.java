@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.http.HttpMethod;
+import org.jdom2.Document;
+import org.jdom2.Element;
+import org.jdom2.JDOMException;
+import org.jdom2.Namespace;
+import org.jdom2.filter.Filters;
+import org.jdom2.input.SAXBuilder;
+import org.jdom2.xpath.XPathExpression;
+import org.jdom2.xpath.XPathFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Strings;
+import com.google.common.base.Verify;
+import com.google.common.collect.Lists;
+
+/**
+ * Answers one page of subfolders or files of folder.
+ * 
+ * Children are ordered by name, url of following page is taken from next link of answered feed. 
+ */
+public class GetFolderPage {
+	private static final Logger LOG = LoggerFactory.getLogger(GetFolderPage.class);
+	
+	public static final String FOLDERS = "Folders";
+	public static final String FILES = "Files";
+	
+	public static class Result{
+		private final List<SpObject> children;
+		private final String nextUrl;
+		
+		Result(List<SpObject> children, String nextUrl) {
+			this.children = children;
+			this.nextUrl = nextUrl;
+		}
+		
+		public List<SpObject> getChildren() {
+			return children;
+		}
+		
+		/**
+		 * @return url of following page or null if this is the last one
+		 */
+		public String getNextUrl() {
+			return nextUrl;
+		}
+	}
+	
+	/**
+	 * @param collection {@link #FOLDERS} or {@link #FILES}
+	 * @return url of first page of folder children
+	 */
+	public static String url(URI siteUri, String folderServerRelativeUrl, String collection, int pageSize) {
+		String select = GetFolder.select("", FILES.equals(collection) ? GetFolder.FILE_PROPERTIES : GetFolder.FOLDER_PROPERTIES);
+		return GetFolder.url(siteUri, folderServerRelativeUrl) + "/" + collection + "?$select=" + select + "&$top=" + pageSize + "&$orderby=Name";
+	}
+	
+	private SharepointOnlineAuthentication.Result authResult;
+	private String url;
+	private String collection;
+	private SpResponseFormat format;
+	
+	public GetFolderPage(SharepointOnlineAuthentication.Result authResult, String url) {
+		this(authResult, url, null, SpResponseFormat.ATOM);
+	}
+	
+	/**
+	 * @param collection {@link #FOLDERS} or {@link #FILES}, needed only for JSON responses which do not contain type of children
+	 * @param format of requested response
+	 */
+	public GetFolderPage(SharepointOnlineAuthentication.Result authResult, String url, String collection, SpResponseFormat format) {
+		this.authResult = authResult;
+		this.url = url;
+		this.collection = collection;
+		this.format = format;
+	}
+	
+	public Result execute(HttpClient httpClient) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		ContentResponse response = httpClient.newRequest(url).method(HttpMethod.GET).accept(format.getMediaType()).header("X-RequestDigest", authResult.getFormDigest()).send();
+		LOG.debug("url={} statusCode={}", url, response.getStatus());
+		SpRequests.verifyStatus(response);
+		
+		String content = response.getContentAsString();
+		Verify.verify(Strings.emptyToNull(content) != null, "response content does not contain data");
+		
+		return parse(content);
+	}
+	
+	public Result parse(String content) throws JDOMException, IOException {
+		if(format == SpResponseFormat.JSON) {
+			try(SpJsonReader reader = new SpJsonReader(new StringReader(content))){
+				return parseJson(reader);
+			}
+		}
+		return parseAtom(content);
+	}
+	
+	/**
+	 * Children are objects in value array, url of following page is in odata.nextLink member.
+	 */
+	private Result parseJson(SpJsonReader reader) throws IOException {
+		Verify.verify(FOLDERS.equals(collection) || FILES.equals(collection), "unknown collection of children %s", collection);
+		List<SpObject> children = Lists.newArrayList();
+		String nextUrl = null;
+		reader.beginObject();
+		while(reader.hasNext()) {
+			String name = reader.nextName();
+			if("value".equals(name)) {
+				reader.beginArray();
+				while(reader.hasNext()) {
+					Map<String, String> properties = reader.nextProperties();
+					children.add(FILES.equals(collection) ? GetFolder.parseFile(properties::get) : GetFolder.parseFolder(properties::get, Lists.newArrayList()));
+				}
+				reader.endArray();
+			}
+			else if("odata.nextLink".equals(name)) {
+				String href = reader.nextString();
+				nextUrl = href == null ? null : URI.create(url).resolve(href).toString();
+			}
+			else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return new Result(children, nextUrl);
+	}
+	
+	private Result parseAtom(String xml) throws JDOMException, IOException {
+		SAXBuilder builder = new SAXBuilder();
+		Document doc = builder.build(new StringReader(xml));
+
+		Namespace a = Namespace.getNamespace("a", "http://www.w3.org/2005/Atom");
+		Namespace d = Namespace.getNamespace("d", "http://schemas.microsoft.com/ado/2007/08/dataservices");
+		Namespace m = Namespace.getNamespace("m", "http://schemas.microsoft.com/ado/2007/08/dataservices/metadata");
+		
+		List<SpObject> children = Lists.newArrayList();
+		XPathExpression<Element> entriesExpr = XPathFactory.instance().compile("/a:feed/a:entry", Filters.element(), null, a,d,m);
+		for (Element entry : entriesExpr.evaluate(doc)) {
+			Element category = entry.getChild("category", a);
+			Element properties = entry.getChild("content", a).getChild("properties", m);
+			Verify.verify(category != null && properties != null, "entry without category or properties");
+			String term = category.getAttributeValue("term");
+			if("SP.File".equals(term)) {
+				children.add(GetFolder.parseFile(name -> properties.getChildText(name, d)));
+			}
+			else if("SP.Folder".equals(term)) {
+				children.add(GetFolder.parseFolder(name -> properties.getChildText(name, d), Lists.newArrayList()));
+			}
+			else {
+				LOG.warn("unexpected entry category={}", term);
+			}
+		}
+		
+		XPathExpression<Element> nextExpr = XPathFactory.instance().compile("/a:feed/a:link[@rel='next']", Filters.element(), null, a,d,m);
+		Element next = nextExpr.evaluateFirst(doc);
+		String nextUrl = null;
+		if(next != null) {
+			//next link can be relative to base of feed
+			String base = doc.getRootElement().getAttributeValue("base", Namespace.XML_NAMESPACE);
+			String href = next.getAttributeValue("href");
+			nextUrl = base == null ? href : URI.create(base).resolve(href).toString();
+		}
+		return new Result(children, nextUrl);
+	}
+}
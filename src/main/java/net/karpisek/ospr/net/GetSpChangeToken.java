@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URI;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.http.HttpMethod;
+import org.jdom2.Document;
+import org.jdom2.Element;
+import org.jdom2.JDOMException;
+import org.jdom2.Namespace;
+import org.jdom2.filter.Filters;
+import org.jdom2.input.SAXBuilder;
+import org.jdom2.xpath.XPathExpression;
+import org.jdom2.xpath.XPathFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Strings;
+import com.google.common.base.Verify;
+
+/**
+ * Answers current change token of document library, changes after it can be requested later by {@link GetSpChanges}.
+ */
+public class GetSpChangeToken {
+	private static final Logger LOG = LoggerFactory.getLogger(GetSpChangeToken.class);
+	
+	static String url(URI siteUri, String listServerRelativeUrl) {
+		return siteUri + "/_api/web/GetList(@u)?$select=CurrentChangeToken&@u=" + GetSpChanges.parameter(listServerRelativeUrl);
+	}
+	
+	private SharepointOnlineAuthentication.Result authResult;
+	private URI siteUri;
+	private String listServerRelativeUrl;
+	private SpResponseFormat format;
+	
+	/**
+	 * @param listServerRelativeUrl of document library
+	 * @param format of requested response
+	 */
+	public GetSpChangeToken(SharepointOnlineAuthentication.Result authResult, URI siteUri, String listServerRelativeUrl, SpResponseFormat format) {
+		this.authResult = authResult;
+		this.siteUri = siteUri;
+		this.listServerRelativeUrl = listServerRelativeUrl;
+		this.format = format;
+	}
+	
+	public String execute(HttpClient httpClient) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		ContentResponse response = httpClient
+				.newRequest(url(siteUri, listServerRelativeUrl))
+				.method(HttpMethod.GET)
+				.accept(format.getMediaType())
+				.header("X-RequestDigest", authResult.getFormDigest())
+				.send();
+		LOG.debug("statusCode={}", response.getStatus());
+		SpRequests.verifyStatus(response);
+		
+		String content = response.getContentAsString();
+		Verify.verify(Strings.emptyToNull(content) != null, "response content does not contain data");
+		
+		return parse(content);
+	}
+	
+	public String parse(String content) throws JDOMException, IOException {
+		String result = null;
+		if(format == SpResponseFormat.JSON) {
+			try(SpJsonReader reader = new SpJsonReader(new StringReader(content))){
+				reader.beginObject();
+				while(reader.hasNext()) {
+					if("CurrentChangeToken".equals(reader.nextName()) && reader.peek() == SpJsonReader.Token.BEGIN_OBJECT) {
+						result = reader.nextProperties().get("StringValue");
+					}
+					else {
+						reader.skipValue();
+					}
+				}
+				reader.endObject();
+			}
+		}
+		else {
+			SAXBuilder builder = new SAXBuilder();
+			Document doc = builder.build(new StringReader(content));
+			
+			Namespace a = Namespace.getNamespace("a", "http://www.w3.org/2005/Atom");
+			Namespace d = Namespace.getNamespace("d", "http://schemas.microsoft.com/ado/2007/08/dataservices");
+			Namespace m = Namespace.getNamespace("m", "http://schemas.microsoft.com/ado/2007/08/dataservices/metadata");
+			
+			XPathExpression<Element> tokenExpr = XPathFactory.instance().compile("/a:entry/a:content/m:properties/d:CurrentChangeToken", Filters.element(), null, a,d,m);
+			Element token = tokenExpr.evaluateFirst(doc);
+			result = token == null ? null : token.getChildText("StringValue", d);
+		}
+		Verify.verify(!Strings.isNullOrEmpty(result), "response does not contain change token");
+		return result;
+	}
+}
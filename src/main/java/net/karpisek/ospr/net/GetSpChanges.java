@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.util.StringContentProvider;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.jdom2.Document;
+import org.jdom2.Element;
+import org.jdom2.JDOMException;
+import org.jdom2.Namespace;
+import org.jdom2.filter.Filters;
+import org.jdom2.input.SAXBuilder;
+import org.jdom2.xpath.XPathExpression;
+import org.jdom2.xpath.XPathFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Strings;
+import com.google.common.base.Verify;
+import com.google.common.collect.Lists;
+import com.google.common.net.UrlEscapers;
+
+/**
+ * Answers changes of items in document library since given change token, at most {@link #FETCH_LIMIT} changes at once.
+ * 
+ * Following changes are requested again using change token of last answered change.
+ */
+public class GetSpChanges {
+	private static final Logger LOG = LoggerFactory.getLogger(GetSpChanges.class);
+	
+	/**
+	 * Maximal number of changes answered by one request.
+	 */
+	public static final int FETCH_LIMIT = 1000;
+	
+	/**
+	 * @return value of url parameter quoted as odata string literal
+	 */
+	static String parameter(String value) {
+		return "%27" + UrlEscapers.urlFormParameterEscaper().escape(value.replace("'", "''")).replace("+", "%20") + "%27";
+	}
+	
+	/**
+	 * @return true if response with given status and content rejects change token of request (expired or malformed), 
+	 * server answers such error with message mentioning the token
+	 */
+	static boolean isChangeTokenRejected(int status, String content) {
+		if(status != HttpStatus.BAD_REQUEST_400 && status != HttpStatus.INTERNAL_SERVER_ERROR_500) {
+			return false;
+		}
+		String message = Strings.nullToEmpty(content).toLowerCase(Locale.ROOT);
+		return message.contains("changetoken") || message.contains("change token");
+	}
+	
+	static String url(URI siteUri, String listServerRelativeUrl) {
+		return siteUri + "/_api/web/GetList(@u)/GetChanges?@u=" + parameter(listServerRelativeUrl);
+	}
+	
+	/**
+	 * @return change query for changes of files and folders which modify folder tree
+	 */
+	static String body(String changeTokenStart) {
+		return "{\"query\":{"
+				+ "\"__metadata\":{\"type\":\"SP.ChangeQuery\"},"
+				+ "\"Item\":true,\"Add\":true,\"Update\":true,\"DeleteObject\":true,\"Rename\":true,\"Move\":true,\"Restore\":true,\"SystemUpdate\":true,"
+				+ "\"FetchLimit\":" + FETCH_LIMIT + ","
+				+ "\"ChangeTokenStart\":{\"__metadata\":{\"type\":\"SP.ChangeToken\"},\"StringValue\":\"" + changeTokenStart.replace("\\", "\\\\").replace("\"", "\\\"") + "\"}"
+				+ "}}";
+	}
+	
+	private SharepointOnlineAuthentication.Result authResult;
+	private URI siteUri;
+	private String listServerRelativeUrl;
+	private String changeTokenStart;
+	private SpResponseFormat format;
+	
+	/**
+	 * @param listServerRelativeUrl of document library
+	 * @param changeTokenStart changes after this token are answered
+	 * @param format of requested response
+	 */
+	public GetSpChanges(SharepointOnlineAuthentication.Result authResult, URI siteUri, String listServerRelativeUrl, String changeTokenStart, SpResponseFormat format) {
+		this.authResult = authResult;
+		this.siteUri = siteUri;
+		this.listServerRelativeUrl = listServerRelativeUrl;
+		this.changeTokenStart = changeTokenStart;
+		this.format = format;
+	}
+	
+	public List<SpChange> execute(HttpClient httpClient) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		ContentResponse response = httpClient
+				.newRequest(url(siteUri, listServerRelativeUrl))
+				.method(HttpMethod.POST)
+				.accept(format.getMediaType())
+				.header("X-RequestDigest", authResult.getFormDigest())
+				.content(new StringContentProvider("application/json;odata=verbose", body(changeTokenStart), StandardCharsets.UTF_8))
+				.send();
+		LOG.debug("statusCode={}", response.getStatus());
+		if(isChangeTokenRejected(response.getStatus(), response.getContentAsString())) {
+			throw new SpChangeTokenException(response.getStatus());
+		}
+		SpRequests.verifyStatus(response);
+		
+		String content = response.getContentAsString();
+		Verify.verify(Strings.emptyToNull(content) != null, "response content does not contain data");
+		
+		return parse(content);
+	}
+	
+	public List<SpChange> parse(String content) throws JDOMException, IOException {
+		if(format == SpResponseFormat.JSON) {
+			try(SpJsonReader reader = new SpJsonReader(new StringReader(content))){
+				return parseJson(reader);
+			}
+		}
+		return parseAtom(content);
+	}
+	
+	/**
+	 * Changes are objects in value array, change token is nested object with StringValue member.
+	 */
+	private List<SpChange> parseJson(SpJsonReader reader) throws IOException {
+		List<SpChange> result = Lists.newArrayList();
+		reader.beginObject();
+		while(reader.hasNext()) {
+			if(!"value".equals(reader.nextName())) {
+				reader.skipValue();
+				continue;
+			}
+			reader.beginArray();
+			while(reader.hasNext()) {
+				String changeType = null;
+				String serverRelativeUrl = null;
+				String fileSystemObjectType = null;
+				String changeToken = null;
+				String uniqueId = null;
+				reader.beginObject();
+				while(reader.hasNext()) {
+					String name = reader.nextName();
+					if("ChangeToken".equals(name) && reader.peek() == SpJsonReader.Token.BEGIN_OBJECT) {
+						reader.beginObject();
+						while(reader.hasNext()) {
+							if("StringValue".equals(reader.nextName())) {
+								changeToken = reader.nextString();
+							}
+							else {
+								reader.skipValue();
+							}
+						}
+						reader.endObject();
+					}
+					else if("ChangeType".equals(name)) {
+						changeType = reader.nextString();
+					}
+					else if("ServerRelativeUrl".equals(name)) {
+						serverRelativeUrl = reader.nextString();
+					}
+					else if("FileSystemObjectType".equals(name)) {
+						fileSystemObjectType = reader.nextString();
+					}
+					else if("UniqueId".equals(name)) {
+						uniqueId = reader.nextString();
+					}
+					else {
+						reader.skipValue();
+					}
+				}
+				reader.endObject();
+				result.add(toSpChange(changeType, serverRelativeUrl, fileSystemObjectType, changeToken, uniqueId));
+			}
+			reader.endArray();
+		}
+		reader.endObject();
+		return result;
+	}
+	
+	private List<SpChange> parseAtom(String xml) throws JDOMException, IOException {
+		SAXBuilder builder = new SAXBuilder();
+		Document doc = builder.build(new StringReader(xml));
+
+		Namespace a = Namespace.getNamespace("a", "http://www.w3.org/2005/Atom");
+		Namespace d = Namespace.getNamespace("d", "http://schemas.microsoft.com/ado/2007/08/dataservices");
+		Namespace m = Namespace.getNamespace("m", "http://schemas.microsoft.com/ado/2007/08/dataservices/metadata");
+		
+		List<SpChange> result = Lists.newArrayList();
+		XPathExpression<Element> propertiesExpr = XPathFactory.instance().compile("/a:feed/a:entry/a:content/m:properties", Filters.element(), null, a,d,m);
+		for (Element properties : propertiesExpr.evaluate(doc)) {
+			Element changeToken = properties.getChild("ChangeToken", d);
+			result.add(toSpChange(
+					properties.getChildText("ChangeType", d), 
+					properties.getChildText("ServerRelativeUrl", d), 
+					properties.getChildText("FileSystemObjectType", d), 
+					changeToken == null ? null : changeToken.getChildText("StringValue", d),
+					properties.getChildText("UniqueId", d)
+					));
+		}
+		return result;
+	}
+	
+	private static SpChange toSpChange(String changeType, String serverRelativeUrl, String fileSystemObjectType, String changeToken, String uniqueId) {
+		Verify.verify(changeType != null && changeToken != null, "change without type or token");
+		//folders have file system object type 1, files 0
+		return new SpChange(SpChange.Type.fromCode(Integer.parseInt(changeType)), Strings.emptyToNull(serverRelativeUrl), "1".equals(fileSystemObjectType), changeToken, Strings.emptyToNull(uniqueId));
+	}
+}
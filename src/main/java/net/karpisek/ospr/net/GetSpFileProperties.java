@@ -15,15 +15,20 @@ import java.io.StringReader;
 import java.net.URI;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.http.HttpMethod;
-import org.eclipse.jetty.http.HttpStatus;
 import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.JDOMException;
@@ -37,7 +42,6 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Strings;
 import com.google.common.base.Verify;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.net.UrlEscapers;
 
@@ -69,20 +73,27 @@ public class GetSpFileProperties {
 	private Result authResult;
 	private URI siteUri;
 	private String fileServerRelativeUrl;
+	private SpResponseFormat format;
 
 	public GetSpFileProperties(SharepointOnlineAuthentication.Result authResult, URI siteUri, String folderServerRelativeUrl) {
+		this(authResult, siteUri, folderServerRelativeUrl, SpResponseFormat.ATOM);
+	}
+	
+	/**
+	 * @param format of requested response
+	 */
+	public GetSpFileProperties(SharepointOnlineAuthentication.Result authResult, URI siteUri, String folderServerRelativeUrl, SpResponseFormat format) {
 		this.authResult = authResult;
 		this.siteUri = siteUri;
 		this.fileServerRelativeUrl = folderServerRelativeUrl;
+		this.format = format;
 	}
 	
 	//TODO: would want to have better reaction for invalid (not found) folders 
 	public SpFileProperties execute(HttpClient httpClient) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
-		String url = siteUri + "/_api/Web/GetFileByServerRelativePath(decodedurl=%27" + UrlEscapers.urlFragmentEscaper().escape(fileServerRelativeUrl) + "%27)/Properties";
-		
-		ContentResponse response = httpClient.newRequest(url).method(HttpMethod.GET).header("X-RequestDigest", authResult.getFormDigest()).send();
+		ContentResponse response = newRequest(httpClient).send();
 		LOG.debug("statusCode={}", response.getStatus());
-		Verify.verify(response.getStatus() == HttpStatus.OK_200, "response status not ok, statusCode={}", response.getStatus());
+		SpRequests.verifyStatus(response);
 		
 		String content = response.getContentAsString();
 		LOG.debug("content={}", response.getStatus());
@@ -91,7 +102,34 @@ public class GetSpFileProperties {
 		return parse(content);
 	}
 	
-	public SpFileProperties parse(String xml) throws JDOMException, IOException {
+	/**
+	 * Same as {@link #execute(HttpClient)} but without blocking calling thread.
+	 */
+	public CompletableFuture<SpFileProperties> executeAsync(HttpClient httpClient) {
+		return SpRequests.sendAsync(newRequest(httpClient), this::parse);
+	}
+	
+	static String url(URI siteUri, String fileServerRelativeUrl) {
+		//only mapped properties are requested, not whole property bag
+		String select = Arrays.stream(CoreProperty.values()).map(CoreProperty::getRestName).collect(Collectors.joining(","));
+		return siteUri + "/_api/Web/GetFileByServerRelativePath(decodedurl=%27" + UrlEscapers.urlFragmentEscaper().escape(fileServerRelativeUrl) + "%27)/Properties?$select=" + select;
+	}
+	
+	private Request newRequest(HttpClient httpClient) {
+		return httpClient.newRequest(url(siteUri, fileServerRelativeUrl)).method(HttpMethod.GET).accept(format.getMediaType()).header("X-RequestDigest", authResult.getFormDigest());
+	}
+	
+	public SpFileProperties parse(String content) throws JDOMException, IOException {
+		if(format == SpResponseFormat.JSON) {
+			try(SpJsonReader reader = new SpJsonReader(new StringReader(content))){
+				Map<String, String> properties = reader.nextProperties();
+				return toSpFileProperties(properties::get);
+			}
+		}
+		return parseAtom(content);
+	}
+	
+	private SpFileProperties parseAtom(String xml) throws JDOMException, IOException {
 		SAXBuilder builder = new SAXBuilder();
 		Document doc = builder.build(new StringReader(xml));
 
@@ -100,23 +138,21 @@ public class GetSpFileProperties {
 		Namespace d = Namespace.getNamespace("d", "http://schemas.microsoft.com/ado/2007/08/dataservices");
 		Namespace m = Namespace.getNamespace("m", "http://schemas.microsoft.com/ado/2007/08/dataservices/metadata");
 
-		//TODO: reworking mapping handling when more properties is needed (and if custom ones too)
-		EnumMap<SpFileProperties.CoreProperty, String> mapping = Maps.newEnumMap(SpFileProperties.CoreProperty.class);
-		mapping.put(CoreProperty.TITLE, "vti_x005f_title");
-		mapping.put(CoreProperty.SUBJECT, "Subject");
-		mapping.put(CoreProperty.COMMENT, "OData__x005f_Comments");
-		mapping.put(CoreProperty.KEYWORDS, "Keywords");
-		mapping.put(CoreProperty.AUTHOR, "OData__x005f_Author");
-
-		List<SpObject> children = Lists.newArrayList();
 		XPathExpression<Element> filesExpr = XPathFactory.instance().compile("//m:properties", Filters.element(), null, a,d,m);
 		List<Element> elements = filesExpr.evaluate(doc);
 		Verify.verify(elements.size() == 1, "Something strange, expected 1 properties element, found %s", elements.size());
 			
 		Element properties = elements.get(0);
+		return toSpFileProperties(name -> properties.getChildText(name, d));
+	}
+	
+	/**
+	 * @param properties answers text of property by its rest name
+	 */
+	private static SpFileProperties toSpFileProperties(Function<String, String> properties) {
 		EnumMap<SpFileProperties.CoreProperty, String> propertyValues = Maps.newEnumMap(SpFileProperties.CoreProperty.class);
 		for (CoreProperty property : SpFileProperties.CoreProperty.values()) {
-			String value = properties.getChildText(mapping.get(property), d);
+			String value = properties.apply(property.getRestName());
 			propertyValues.put(property, Strings.nullToEmpty(value));
 		}
 		return new SpFileProperties(propertyValues);
@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.util.StringContentProvider;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.jdom2.JDOMException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.base.Verify;
+import com.google.common.collect.Lists;
+
+import net.karpisek.ospr.net.SharepointOnlineAuthentication.Result;
+
+/**
+ * Answers properties of several files using one sharepoint REST $batch request.
+ * 
+ * Request contains one GET request for each file same as used by {@link GetSpFileProperties}, 
+ * all of them must succeed otherwise whole batch fails.
+ * 
+ * @see https://docs.microsoft.com/en-us/sharepoint/dev/sp-add-ins/make-batch-requests-with-the-rest-apis
+ */
+public class GetSpFilePropertiesBatch {
+	private static final Logger LOG = LoggerFactory.getLogger(GetSpFilePropertiesBatch.class);
+	
+	/**
+	 * Maximal number of requests sharepoint accepts in one batch.
+	 */
+	public static final int MAX_BATCH_SIZE = 100;
+	
+	private static final String CRLF = "\r\n";
+	
+	private Result authResult;
+	private URI siteUri;
+	private List<String> fileServerRelativeUrls;
+	private SpResponseFormat format;
+	
+	public GetSpFilePropertiesBatch(SharepointOnlineAuthentication.Result authResult, URI siteUri, List<String> fileServerRelativeUrls) {
+		this(authResult, siteUri, fileServerRelativeUrls, SpResponseFormat.ATOM);
+	}
+	
+	/**
+	 * @param format of requested responses of all files
+	 */
+	public GetSpFilePropertiesBatch(SharepointOnlineAuthentication.Result authResult, URI siteUri, List<String> fileServerRelativeUrls, SpResponseFormat format) {
+		Verify.verify(fileServerRelativeUrls.size() <= MAX_BATCH_SIZE, "Too many files in batch, maximum is %s (is '%s')", MAX_BATCH_SIZE, fileServerRelativeUrls.size());
+		this.authResult = authResult;
+		this.siteUri = siteUri;
+		this.fileServerRelativeUrls = fileServerRelativeUrls;
+		this.format = format;
+	}
+	
+	/**
+	 * @return properties of files in the same order as files were requested
+	 */
+	public List<SpFileProperties> execute(HttpClient httpClient) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		ContentResponse response = newRequest(httpClient).send();
+		LOG.debug("statusCode={}", response.getStatus());
+		SpRequests.verifyStatus(response);
+		
+		String content = response.getContentAsString();
+		Verify.verify(Strings.emptyToNull(content) != null, "response content does not contain data");
+		
+		return parse(content);
+	}
+	
+	/**
+	 * Same as {@link #execute(HttpClient)} but without blocking calling thread.
+	 */
+	public CompletableFuture<List<SpFileProperties>> executeAsync(HttpClient httpClient) {
+		return SpRequests.sendAsync(newRequest(httpClient), this::parse);
+	}
+	
+	private Request newRequest(HttpClient httpClient) {
+		String boundary = "batch_" + UUID.randomUUID();
+		StringBuilder body = new StringBuilder();
+		for (String file : fileServerRelativeUrls) {
+			body.append("--").append(boundary).append(CRLF);
+			body.append("Content-Type: application/http").append(CRLF);
+			body.append("Content-Transfer-Encoding: binary").append(CRLF);
+			body.append(CRLF);
+			body.append("GET ").append(GetSpFileProperties.url(siteUri, file)).append(" HTTP/1.1").append(CRLF);
+			body.append("Accept: ").append(format.getMediaType()).append(CRLF);
+			body.append(CRLF);
+		}
+		body.append("--").append(boundary).append("--").append(CRLF);
+		
+		return httpClient.newRequest(siteUri + "/_api/$batch")
+				.method(HttpMethod.POST)
+				.header("X-RequestDigest", authResult.getFormDigest())
+				.content(new StringContentProvider("multipart/mixed; boundary=" + boundary, body.toString(), StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * Parse multipart/mixed batch response, each part contains complete http response for one requested file.
+	 * Boundary is taken from the first line of content.
+	 */
+	public List<SpFileProperties> parse(String content) throws JDOMException, IOException {
+		String normalized = content.replace(CRLF, "\n");
+		String firstLine = Splitter.on('\n').omitEmptyStrings().trimResults().split(normalized).iterator().next();
+		Verify.verify(firstLine.startsWith("--"), "response content does not start with multipart boundary");
+		String delimiter = firstLine;
+		
+		List<SpFileProperties> result = Lists.newArrayList();
+		int index = 0;
+		for (String part : Splitter.on(delimiter).split(normalized)) {
+			if(part.trim().isEmpty() || part.startsWith("--")) {
+				//preamble and closing delimiter
+				continue;
+			}
+			Verify.verify(index < fileServerRelativeUrls.size(), "response contains more parts than requested files (%s)", fileServerRelativeUrls.size());
+			String file = fileServerRelativeUrls.get(index++);
+			
+			//part headers, then http status line and headers of response, then body
+			String response = skipHeaders(part.startsWith("\n") ? part.substring(1) : part);
+			int statusEnd = response.indexOf('\n');
+			String statusLine = statusEnd < 0 ? response : response.substring(0, statusEnd);
+			List<String> status = Splitter.on(' ').omitEmptyStrings().limit(3).splitToList(statusLine);
+			Verify.verify(status.size() >= 2 && status.get(0).startsWith("HTTP/"), "unexpected status line for file %s, statusLine=%s", file, statusLine);
+			int statusCode = Integer.parseInt(status.get(1));
+			LOG.debug("file={} statusCode={}", file, statusCode);
+			Verify.verify(statusCode == HttpStatus.OK_200, "response status not ok for file %s, statusCode=%s", file, statusCode);
+			
+			String body = skipHeaders(response.substring(statusEnd + 1)).trim();
+			Verify.verify(!body.isEmpty(), "response content does not contain data for file %s", file);
+			result.add(new GetSpFileProperties(authResult, siteUri, file, format).parse(body));
+		}
+		Verify.verify(result.size() == fileServerRelativeUrls.size(), "response contains %s parts, expected %s", result.size(), fileServerRelativeUrls.size());
+		return result;
+	}
+	
+	/**
+	 * Answers rest of string after header lines terminated by empty line.
+	 */
+	private static String skipHeaders(String string) {
+		if(string.startsWith("\n")) {
+			return string.substring(1);
+		}
+		int end = string.indexOf("\n\n");
+		return end < 0 ? "" : string.substring(end + 2);
+	}
+}
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.jdom2.JDOMException;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ * Listing of folder fetching its subfolders and files page by page using {@link GetFolderPage}.
+ * 
+ * Subfolders and files are separate collections each ordered by name by server (ignoring case), pages of listing are merged 
+ * from both of them with same ordering. 
+ * 
+ * Pages are followed only by next links answered by server. Listing fails if page does not follow previous one or if fewer 
+ * children than item count of folder were listed, so incomplete listing is never taken as whole folder.
+ */
+class HttpSpFolderListing implements ISpFolderListing {
+	/**
+	 * Children of one collection, next page is fetched when all already fetched children were consumed.
+	 */
+	private class Cursor {
+		private final ArrayDeque<SpObject> children = new ArrayDeque<>();
+		private final String collection;
+		private String nextUrl;
+		private String lastName;
+		private int count;
+		
+		Cursor(String collection, String url) {
+			this.collection = collection;
+			this.nextUrl = url;
+		}
+		
+		SpObject peek() throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+			while(children.isEmpty() && nextUrl != null) {
+				String url = nextUrl;
+				GetFolderPage.Result page = tokens.execute(authResult -> throttle.execute(() -> new GetFolderPage(authResult, url, collection, format).execute(httpClient)));
+				List<SpObject> fetched = page.getChildren();
+				if(lastName != null && !fetched.isEmpty() && String.CASE_INSENSITIVE_ORDER.compare(fetched.get(0).getName(), lastName) <= 0) {
+					throw new IOException(String.format("page does not follow previous one folder=%s collection=%s url=%s", folder.getServerRelativeUrl(), collection, url));
+				}
+				children.addAll(fetched);
+				count += fetched.size();
+				nextUrl = page.getNextUrl();
+				if(!fetched.isEmpty()) {
+					lastName = fetched.get(fetched.size() - 1).getName();
+				}
+			}
+			return children.peek();
+		}
+		
+		SpObject poll() {
+			return children.poll();
+		}
+	}
+	
+	private final HttpClient httpClient;
+	private final SharepointOnlineTokenManager tokens;
+	private final SpThrottle throttle;
+	private final SpResponseFormat format;
+	private final int pageSize;
+	private final SpFolder folder;
+	private final Cursor folders;
+	private final Cursor files;
+	private boolean countVerified;
+	
+	HttpSpFolderListing(HttpClient httpClient, SharepointOnlineTokenManager tokens, SpThrottle throttle, SpResponseFormat format, URI siteUri, String folderServerRelativeUrl, int pageSize) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		Preconditions.checkArgument(pageSize > 0, "Illegal page size value, must be > 0 (is '%s')", pageSize);
+		this.httpClient = httpClient;
+		this.tokens = tokens;
+		this.throttle = throttle;
+		this.format = format;
+		this.pageSize = pageSize;
+		this.folder = tokens.execute(authResult -> throttle.execute(() -> new GetFolder(authResult, siteUri, folderServerRelativeUrl, false, format).execute(httpClient)));
+		this.folders = new Cursor(GetFolderPage.FOLDERS, GetFolderPage.url(siteUri, folderServerRelativeUrl, GetFolderPage.FOLDERS, pageSize));
+		this.files = new Cursor(GetFolderPage.FILES, GetFolderPage.url(siteUri, folderServerRelativeUrl, GetFolderPage.FILES, pageSize));
+	}
+
+	@Override
+	public SpFolder getFolder() {
+		return folder;
+	}
+
+	@Override
+	public List<? extends SpObject> nextPage() throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		List<SpObject> page = Lists.newArrayListWithCapacity(pageSize);
+		while(page.size() < pageSize) {
+			SpObject folder = folders.peek();
+			SpObject file = files.peek();
+			if(folder == null && file == null) {
+				verifyCount();
+				break;
+			}
+			if(file == null || (folder != null && String.CASE_INSENSITIVE_ORDER.compare(folder.getName(), file.getName()) <= 0)) {
+				page.add(folders.poll());
+			}
+			else {
+				page.add(files.poll());
+			}
+		}
+		return page;
+	}
+	
+	/**
+	 * Called when both collections are exhausted, hidden folders (e.g. Forms of library) are not counted by server so only missing children fail listing.
+	 * @throws IOException if fewer children than item count of folder were listed
+	 */
+	private void verifyCount() throws IOException {
+		if(countVerified) {
+			return;
+		}
+		countVerified = true;
+		int listed = folders.count + files.count;
+		if(listed < folder.getItemCount()) {
+			throw new IOException(String.format("listed less children than folder item count folder=%s listed=%s itemCount=%s", folder.getServerRelativeUrl(), listed, folder.getItemCount()));
+		}
+	}
+}
@@ -12,41 +12,161 @@ package net.karpisek.ospr.net;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 
 import org.eclipse.jetty.client.HttpClient;
 import org.jdom2.JDOMException;
 
-import net.karpisek.ospr.net.SharepointOnlineAuthentication.Result;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * Provider of sharepoint files library object information using http REST API for remote calls.
+ * 
+ * Asynchronous calls do not hold any thread while waiting for response, amount of requests being sent at the same time 
+ * is limited by connection pool of http client, requests over this limit are queued by http client. Folder responses 
+ * are parsed while being received on thread of parse executor, so whole response is never kept in memory.
+ * 
+ * Properties of several files are looked up using $batch requests, see {@link GetSpFilePropertiesBatch}.
+ * Folder listing fetches subfolders and files in pages, see {@link GetFolderPage}.
+ * All requests answer responses in the same {@link SpResponseFormat}.
+ * Authentication of requests is taken from {@link SharepointOnlineTokenManager}, so it is refreshed during long traversals.
+ * Requests rejected by throttling are retried by {@link SpThrottle}.
  */
-public class HttpSpObjectProvider implements ISpObjectProvider {
+public class HttpSpObjectProvider implements IAsyncSpObjectProvider {
 	private HttpClient httpClient;
-	private Result authResult;
+	private SharepointOnlineTokenManager tokens;
+	private SpThrottle throttle;
 	private URI uri;
+	private SpResponseFormat format;
+	private Executor parseExecutor;
 
 	public HttpSpObjectProvider(
 		HttpClient httpClient, 
 		SharepointOnlineAuthentication.Result authResult, 
 		URI uri
+	) {
+		this(httpClient, authResult, uri, SpResponseFormat.ATOM);
+	}
+
+	public HttpSpObjectProvider(
+		HttpClient httpClient, 
+		SharepointOnlineAuthentication.Result authResult, 
+		URI uri,
+		SpResponseFormat format
+	) {
+		this(httpClient, new SharepointOnlineTokenManager(authResult), new SpThrottle(httpClient, Integer.MAX_VALUE), uri, format);
+	}
+
+	public HttpSpObjectProvider(
+		HttpClient httpClient, 
+		SharepointOnlineTokenManager tokens, 
+		SpThrottle throttle,
+		URI uri,
+		SpResponseFormat format
+	) {
+		this(httpClient, tokens, throttle, uri, format, Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("ospr-parse-%d").setDaemon(true).build()));
+	}
+
+	/**
+	 * @param tokens consulted for authentication result of each request
+	 * @param throttle retrying throttled requests
+	 * @param parseExecutor parsing asynchronous folder responses while they are being received, 
+	 * one thread is occupied by each folder response in flight
+	 */
+	public HttpSpObjectProvider(
+		HttpClient httpClient, 
+		SharepointOnlineTokenManager tokens, 
+		SpThrottle throttle,
+		URI uri,
+		SpResponseFormat format,
+		Executor parseExecutor
 	) {
 		this.httpClient = httpClient;
-		this.authResult = authResult;
+		this.tokens = tokens;
+		this.throttle = throttle;
 		this.uri = uri;
+		this.format = format;
+		this.parseExecutor = parseExecutor;
 	}
 
 	@Override
 	public SpFolder getFolder(String folder) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
-		return new GetFolder(authResult, uri, folder).execute(httpClient);
+		return tokens.execute(authResult -> throttle.execute(() -> new GetFolder(authResult, uri, folder, true, format).execute(httpClient)));
+	}
+
+	@Override
+	public ISpFolderListing listFolder(String folder, int pageSize) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		return new HttpSpFolderListing(httpClient, tokens, throttle, format, uri, folder, pageSize);
 	}
 
 	@Override
 	public SpFileProperties getSpFileProperties(String file)
 			throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
-		return new GetSpFileProperties(authResult, uri, file).execute(httpClient);
+		return tokens.execute(authResult -> throttle.execute(() -> new GetSpFileProperties(authResult, uri, file, format).execute(httpClient)));
+	}
+
+	@Override
+	public List<SpFileProperties> getSpFileProperties(List<String> files)
+			throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		List<SpFileProperties> result = Lists.newArrayListWithCapacity(files.size());
+		for (List<String> batch : Lists.partition(files, GetSpFilePropertiesBatch.MAX_BATCH_SIZE)) {
+			result.addAll(tokens.execute(authResult -> throttle.execute(() -> new GetSpFilePropertiesBatch(authResult, uri, batch, format).execute(httpClient))));
+		}
+		return result;
+	}
+
+	/**
+	 * @param list server relative url of document library
+	 * @return current change token of document library
+	 */
+	public String getChangeToken(String list) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		return tokens.execute(authResult -> throttle.execute(() -> new GetSpChangeToken(authResult, uri, list, format).execute(httpClient)));
+	}
+	
+	/**
+	 * @param list server relative url of document library
+	 * @return all changes of items in document library made after given change token, in order they were made
+	 * @throws SpChangeTokenException if given change token is not accepted any more
+	 */
+	public List<SpChange> getChanges(String list, String changeToken) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		List<SpChange> result = Lists.newArrayList();
+		String start = changeToken;
+		while(start != null) {
+			String from = start;
+			List<SpChange> changes = tokens.execute(authResult -> throttle.execute(() -> new GetSpChanges(authResult, uri, list, from, format).execute(httpClient)));
+			result.addAll(changes);
+			//full page means there can be more changes after its last one
+			start = changes.size() < GetSpChanges.FETCH_LIMIT ? null : changes.get(changes.size() - 1).getChangeToken();
+		}
+		return result;
+	}
+
+	@Override
+	public CompletableFuture<SpFolder> getFolderAsync(String folder) {
+		return tokens.executeAsync(authResult -> throttle.executeAsync(() -> new GetFolder(authResult, uri, folder, true, format).executeAsync(httpClient, parseExecutor)));
+	}
+
+	@Override
+	public CompletableFuture<SpFileProperties> getSpFilePropertiesAsync(String file) {
+		return tokens.executeAsync(authResult -> throttle.executeAsync(() -> new GetSpFileProperties(authResult, uri, file, format).executeAsync(httpClient)));
+	}
+
+	@Override
+	public CompletableFuture<List<SpFileProperties>> getSpFilePropertiesAsync(List<String> files) {
+		List<CompletableFuture<List<SpFileProperties>>> batches = Lists.partition(files, GetSpFilePropertiesBatch.MAX_BATCH_SIZE)
+				.stream()
+				.map(batch -> tokens.executeAsync(authResult -> throttle.executeAsync(() -> new GetSpFilePropertiesBatch(authResult, uri, batch, format).executeAsync(httpClient))))
+				.collect(Collectors.toList());
+		return CompletableFuture
+				.allOf(batches.toArray(new CompletableFuture<?>[0]))
+				.thenApply(each -> batches.stream().flatMap(batch -> batch.join().stream()).collect(Collectors.toList()));
 	}
 
 }
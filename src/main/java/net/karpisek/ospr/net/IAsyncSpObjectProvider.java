@@ -0,0 +1,35 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * Provider of sharepoint files library object information able to answer results without blocking calling thread.
+ * 
+ * Failures are reported by completing answered future exceptionally with same exceptions as synchronous methods throw.
+ */
+public interface IAsyncSpObjectProvider extends ISpObjectProvider {
+	CompletableFuture<SpFolder> getFolderAsync(String folder);
+	CompletableFuture<SpFileProperties> getSpFilePropertiesAsync(String file);
+	
+	/**
+	 * Same as {@link #getSpFileProperties(List)} but without blocking calling thread.
+	 */
+	default CompletableFuture<List<SpFileProperties>> getSpFilePropertiesAsync(List<String> files) {
+		List<CompletableFuture<SpFileProperties>> futures = files.stream().map(this::getSpFilePropertiesAsync).collect(Collectors.toList());
+		return CompletableFuture
+				.allOf(futures.toArray(new CompletableFuture<?>[0]))
+				.thenApply(each -> futures.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+	}
+}
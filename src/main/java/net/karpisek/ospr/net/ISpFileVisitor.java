@@ -19,4 +19,12 @@ public interface ISpFileVisitor {
 	void visitFile(SpFile file) throws IOException;
 
 	void postVisitFolder(SpFolder folder) throws IOException;
+	
+	/**
+	 * Called before folder is fetched, skipped folder is not fetched and neither it nor its subtree is visited.
+	 * @return true to skip folder with whole its subtree
+	 */
+	default boolean skipFolder(String serverRelativeUrl) {
+		return false;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,35 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.jdom2.JDOMException;
+
+/**
+ * Children of folder answered page by page, so whole content of very large folder does not have to be kept in memory.
+ * 
+ * @see ISpObjectProvider#listFolder(String, int)
+ */
+public interface ISpFolderListing {
+	/**
+	 * @return listed folder itself, its children are not included
+	 */
+	SpFolder getFolder();
+	
+	/**
+	 * @return next page of children ordered by name, empty list when all children were already answered
+	 */
+	List<? extends SpObject> nextPage() throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException;
+}
@@ -11,13 +11,37 @@
 package net.karpisek.ospr.net;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
 
 import org.jdom2.JDOMException;
 
+import com.google.common.collect.Lists;
+
 //TODO: fix exception handling
 public interface ISpObjectProvider {
 	SpFolder getFolder(String folder) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException;
 	SpFileProperties getSpFileProperties(String file) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException;
+	
+	/**
+	 * Answers children of folder page by page.
+	 * Providers able to fetch folder content in parts should override this listing of completely fetched folder.
+	 * @param pageSize maximal number of children in one page
+	 */
+	default ISpFolderListing listFolder(String folder, int pageSize) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		return new SpFolderListing(getFolder(folder), pageSize);
+	}
+	
+	/**
+	 * Answers properties of several files in the same order as files were requested.
+	 * Providers able to lookup more files in one call should override this one by one lookup.
+	 */
+	default List<SpFileProperties> getSpFileProperties(List<String> files) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		List<SpFileProperties> result = Lists.newArrayListWithCapacity(files.size());
+		for (String file : files) {
+			result.add(getSpFileProperties(file));
+		}
+		return result;
+	}
 }
@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.jdom2.JDOMException;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Provider keeping recently answered folders and file properties in memory, so repeated traversals of overlapping 
+ * folders in the same JVM ask other provider only once.
+ * 
+ * Cache is bounded by weight, folder weighs 1 plus count of its children, file properties weigh 1. Least recently used 
+ * entries are evicted first, entries older than time to live are never answered. Concurrent requests of the same 
+ * object wait for one lookup. Folders listed page by page are answered from cache if already cached, but their 
+ * pages are not cached.
+ */
+public class MemoryCachingSpObjectProvider implements ISpObjectProvider {
+	public static final long DEFAULT_MAXIMUM_WEIGHT = 1_000_000;
+	public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(30);
+	
+	public static class Builder{
+		private ISpObjectProvider objectProvider;
+		private long maximumWeight = DEFAULT_MAXIMUM_WEIGHT;
+		private Duration timeToLive = DEFAULT_TIME_TO_LIVE;
+		private Ticker ticker = Ticker.systemTicker();
+		
+		/**
+		 * @param objectProvider asked for objects missing in cache
+		 */
+		public Builder(ISpObjectProvider objectProvider) {
+			this.objectProvider = objectProvider;
+		}
+		
+		/**
+		 * @param value maximal total weight of cached objects
+		 */
+		public Builder maximumWeight(long value) {
+			Preconditions.checkArgument(value >= 0, "Illegal maximum weight value, must be >= 0 (is '%s')", value);
+			this.maximumWeight = value;
+			return this;
+		}
+		
+		/**
+		 * @param value how long after lookup cached object can be answered
+		 */
+		public Builder timeToLive(Duration value) {
+			Preconditions.checkArgument(!value.isNegative(), "Illegal time to live value, must be >= 0 (is '%s')", value);
+			this.timeToLive = value;
+			return this;
+		}
+		
+		Builder ticker(Ticker value) {
+			this.ticker = value;
+			return this;
+		}
+		
+		public MemoryCachingSpObjectProvider build() {
+			return new MemoryCachingSpObjectProvider(objectProvider, CacheBuilder.newBuilder()
+					.maximumWeight(maximumWeight)
+					.weigher((String url, Object value) -> value instanceof SpFolder ? 1 + ((SpFolder) value).getChildren().size() : 1)
+					.expireAfterWrite(timeToLive)
+					.ticker(ticker)
+					.recordStats()
+					.build());
+		}
+	}
+	
+	private final ISpObjectProvider objectProvider;
+	//folders and file properties by server relative url, folder and file never have the same url
+	private final Cache<String, Object> cache;
+	
+	private MemoryCachingSpObjectProvider(ISpObjectProvider objectProvider, Cache<String, Object> cache) {
+		this.objectProvider = objectProvider;
+		this.cache = cache;
+	}
+	
+	@Override
+	public SpFolder getFolder(String folder) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		try {
+			return (SpFolder) cache.get(folder, () -> objectProvider.getFolder(folder));
+		} catch (ExecutionException | UncheckedExecutionException e) {
+			throw unwrap(e);
+		}
+	}
+	
+	@Override
+	public ISpFolderListing listFolder(String folder, int pageSize) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		Object cached = cache.getIfPresent(folder);
+		if(cached instanceof SpFolder) {
+			return new SpFolderListing((SpFolder) cached, pageSize);
+		}
+		return objectProvider.listFolder(folder, pageSize);
+	}
+	
+	@Override
+	public SpFileProperties getSpFileProperties(String file) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		try {
+			return (SpFileProperties) cache.get(file, () -> objectProvider.getSpFileProperties(file));
+		} catch (ExecutionException | UncheckedExecutionException e) {
+			throw unwrap(e);
+		}
+	}
+	
+	@Override
+	public List<SpFileProperties> getSpFileProperties(List<String> files) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		Map<String, Object> cached = cache.getAllPresent(files);
+		List<String> missing = Lists.newArrayList();
+		for (String file : files) {
+			if(!cached.containsKey(file)) {
+				missing.add(file);
+			}
+		}
+		List<SpFileProperties> fetched = missing.isEmpty() ? Lists.newArrayList() : objectProvider.getSpFileProperties(missing);
+		for (int i = 0; i < missing.size(); i++) {
+			cache.put(missing.get(i), fetched.get(i));
+		}
+		
+		List<SpFileProperties> result = Lists.newArrayListWithCapacity(files.size());
+		int position = 0;
+		for (String file : files) {
+			Object properties = cached.get(file);
+			result.add(properties == null ? fetched.get(position++) : (SpFileProperties) properties);
+		}
+		return result;
+	}
+	
+	/**
+	 * @return counts of hits, misses, lookups and evictions since this provider was created
+	 */
+	public CacheStats getStats() {
+		return cache.stats();
+	}
+	
+	/**
+	 * @return count of cached folders and file properties
+	 */
+	public long size() {
+		return cache.size();
+	}
+	
+	/**
+	 * Drop all cached objects, following requests ask other provider again.
+	 */
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+	
+	/**
+	 * @return failure of lookup as thrown by other provider
+	 */
+	private static ExecutionException unwrap(Exception e) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		Throwable cause = e.getCause();
+		if(cause instanceof InterruptedException) {
+			throw (InterruptedException) cause;
+		}
+		if(cause instanceof TimeoutException) {
+			throw (TimeoutException) cause;
+		}
+		if(cause instanceof ExecutionException) {
+			throw (ExecutionException) cause;
+		}
+		if(cause instanceof IOException) {
+			throw (IOException) cause;
+		}
+		if(cause instanceof JDOMException) {
+			throw (JDOMException) cause;
+		}
+		if(cause instanceof RuntimeException) {
+			throw (RuntimeException) cause;
+		}
+		if(cause instanceof Error) {
+			throw (Error) cause;
+		}
+		return e instanceof ExecutionException ? (ExecutionException) e : new ExecutionException(cause);
+	}
+}
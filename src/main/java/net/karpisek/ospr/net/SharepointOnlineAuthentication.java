@@ -13,7 +13,9 @@ package net.karpisek.ospr.net;
 import java.io.IOException;
 import java.io.StringReader;
 import java.net.HttpCookie;
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
 
@@ -35,6 +37,8 @@ import org.slf4j.LoggerFactory;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Strings;
 import com.google.common.base.Verify;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.net.UrlEscapers;
 
 import net.karpisek.ospr.Ospr;
@@ -56,6 +60,8 @@ public class SharepointOnlineAuthentication {
 		private String stsEndpoint;
 		private String username;
 		private String password;
+		private SpResponseFormat responseFormat = SpResponseFormat.ATOM;
+		private SharepointOnlineAuthenticationCache cache;
 		
 		public Builder(SpUri spUri) {
 			this.spUri = spUri;
@@ -81,18 +87,42 @@ public class SharepointOnlineAuthentication {
 			return this;
 		}
 		
+		/**
+		 * @param value format of request digest response
+		 */
+		public Builder responseFormat(SpResponseFormat value) {
+			this.responseFormat = value;
+			return this;
+		}
+		
+		/**
+		 * @param value cache of results from previous runs, result not close to expiration is reused instead of authenticating again
+		 */
+		public Builder cache(SharepointOnlineAuthenticationCache value) {
+			this.cache = value;
+			return this;
+		}
+		
 		public SharepointOnlineAuthentication build() {
-			return new SharepointOnlineAuthentication(spUri, browserUserAgent, stsEndpoint, username, password);
+			return new SharepointOnlineAuthentication(spUri, browserUserAgent, stsEndpoint, username, password, responseFormat, cache);
 		}
 	}
 	
 	public static class Result{
 		public Result(SpUri spUri, String rtFa, String fedAuth, String binarySecurityToken, String formDigest) {
+			this(spUri, rtFa, fedAuth, binarySecurityToken, formDigest, null);
+		}
+		
+		/**
+		 * @param expiration time when cookies or form digest expire, null if not known
+		 */
+		public Result(SpUri spUri, String rtFa, String fedAuth, String binarySecurityToken, String formDigest, Instant expiration) {
 			this.spUri = spUri;
 			this.rtFa = rtFa;
 			this.fedAuth = fedAuth;
 			this.binarySecurityToken = binarySecurityToken;
 			this.formDigest = formDigest;
+			this.expiration = expiration;
 		}
 		
 		final SpUri spUri;
@@ -100,6 +130,7 @@ public class SharepointOnlineAuthentication {
 		final String fedAuth;
 		final String binarySecurityToken;
 		final String formDigest;
+		final Instant expiration;
 		
 		public SpUri getSharepointUri() {
 			return spUri;
@@ -120,29 +151,65 @@ public class SharepointOnlineAuthentication {
 		public String getFormDigest() {
 			return formDigest;
 		}
+		
+		public Instant getExpiration() {
+			return expiration;
+		}
 
 		@Override
 		public String toString() {
-			return MoreObjects.toStringHelper(this).add("url", spUri).add("rtFa", rtFa).add("fedAuth", fedAuth).add("binarySecurityToken", binarySecurityToken).add("formDigest", formDigest).toString();
+			return MoreObjects.toStringHelper(this).add("url", spUri).add("rtFa", rtFa).add("fedAuth", fedAuth).add("binarySecurityToken", binarySecurityToken).add("formDigest", formDigest).add("expiration", expiration).toString();
 		}
 	}
 	
 	private static final Logger LOG = LoggerFactory.getLogger(SharepointOnlineAuthentication.class);
+	private static final String FORM_DIGEST_VALUE = "FormDigestValue";
+	private static final String FORM_DIGEST_TIMEOUT_SECONDS = "FormDigestTimeoutSeconds";
 	private SpUri uri;
 	private String browserUserAgent;
 	private String stsEndpoint;
 	private String username;
 	private String password;
+	private SpResponseFormat responseFormat;
+	private SharepointOnlineAuthenticationCache cache;
 	
-	private SharepointOnlineAuthentication(SpUri uri, String browserUserAgent, String stsEndpoint, String username, String password) {
+	private SharepointOnlineAuthentication(SpUri uri, String browserUserAgent, String stsEndpoint, String username, String password, SpResponseFormat responseFormat, SharepointOnlineAuthenticationCache cache) {
 		this.uri = uri;
 		this.browserUserAgent = browserUserAgent;
 		this.stsEndpoint = stsEndpoint;
 		this.username = username;
 		this.password = password;
+		this.responseFormat = responseFormat;
+		this.cache = cache;
 	}
 	
+	/**
+	 * Authenticate or reuse cached result, in both cases authentication cookies are present in cookie store of http client afterwards.
+	 */
 	public Result execute(HttpClient httpClient) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		if(cache != null) {
+			Result cached = cache.load(uri, username, password, httpClient.getCookieStore());
+			if(cached != null) {
+				LOG.debug("cached result used, expiration={}", cached.getExpiration());
+				return cached;
+			}
+		}
+		return refresh(httpClient);
+	}
+	
+	/**
+	 * Authenticate again regardless of cached result, new result replaces the cached one.
+	 * Cookies in cookie store of http client are replaced by new ones, so requests sent after refresh use them.
+	 */
+	public Result refresh(HttpClient httpClient) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		Result result = authenticate(httpClient);
+		if(cache != null) {
+			cache.store(result, username, password, httpClient.getCookieStore());
+		}
+		return result;
+	}
+	
+	private Result authenticate(HttpClient httpClient) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
 		LOG.debug("## 1-rpsContextCookie");
 		String uri1 = uri.getServerUri() + "/_layouts/15/Authenticate.aspx?Source=" + UrlEscapers.urlFragmentEscaper().escape(uri.getServerUri().toString());
 		LOG.debug("uri1={}", uri1);
@@ -213,6 +280,7 @@ public class SharepointOnlineAuthentication {
 		ContentResponse response4 = httpClient.newRequest(uri4)
 				.method(HttpMethod.POST)
 				.agent(browserUserAgent)
+				.accept(responseFormat.getMediaType())
 				.content(new StringContentProvider(binarySecurityToken))
 				.send();
 		LOG.debug("statusCode= {}", response4.getStatus());
@@ -220,16 +288,51 @@ public class SharepointOnlineAuthentication {
 		Verify.verify(Strings.emptyToNull(content4) != null, "response content does not contain data");
 		LOG.debug(content4);
 
-		Document doc4 = builder.build(new StringReader(content4));
-
-		Namespace d = Namespace.getNamespace("d", "http://schemas.microsoft.com/ado/2007/08/dataservices");
-		XPathExpression<Element> expr4 = xFactory.compile("//d:FormDigestValue", Filters.element(), null, d);
-		List<Element> links4 = expr4.evaluate(doc4);
-		Verify.verify(!links4.isEmpty(), "response does not contain d:FormDigestValue");
-		String formDigest = links.get(0).getText();
-		Verify.verify(!formDigest.isEmpty(), "formDigest should not be empty");
+		Map<String, String> contextInfo = parseContextInfo(content4);
+		String formDigest = contextInfo.get(FORM_DIGEST_VALUE);
+		Verify.verify(!Strings.isNullOrEmpty(formDigest), "formDigest should not be empty");
 		LOG.debug("formDigest=" + formDigest);
 		
-		return new Result(uri, rtFa.getValue(), fedAuth.getValue(), binarySecurityToken, formDigest);
+		//result is usable until form digest or one of cookies expires
+		Instant now = Instant.now();
+		Instant expiration = null;
+		String timeout = contextInfo.get(FORM_DIGEST_TIMEOUT_SECONDS);
+		if(timeout != null) {
+			expiration = now.plusSeconds(Long.parseLong(timeout));
+		}
+		for (HttpCookie cookie : Lists.newArrayList(rtFa, fedAuth)) {
+			if(cookie.getMaxAge() > 0) {
+				Instant cookieExpiration = now.plusSeconds(cookie.getMaxAge());
+				expiration = expiration == null || cookieExpiration.isBefore(expiration) ? cookieExpiration : expiration;
+			}
+		}
+		LOG.debug("expiration={}", expiration);
+		
+		return new Result(uri, rtFa.getValue(), fedAuth.getValue(), binarySecurityToken, formDigest, expiration);
+	}
+	
+	/**
+	 * Answers form digest value and its timeout from response of contextinfo request.
+	 */
+	Map<String, String> parseContextInfo(String content) throws JDOMException, IOException {
+		if(responseFormat == SpResponseFormat.JSON) {
+			try(SpJsonReader reader = new SpJsonReader(new StringReader(content))){
+				Map<String, String> result = reader.nextProperties();
+				Verify.verify(result.containsKey(FORM_DIGEST_VALUE), "response does not contain FormDigestValue");
+				return result;
+			}
+		}
+		Document doc = new SAXBuilder().build(new StringReader(content));
+		Namespace d = Namespace.getNamespace("d", "http://schemas.microsoft.com/ado/2007/08/dataservices");
+		Map<String, String> result = Maps.newHashMap();
+		for (String name : Lists.newArrayList(FORM_DIGEST_VALUE, FORM_DIGEST_TIMEOUT_SECONDS)) {
+			XPathExpression<Element> expr = XPathFactory.instance().compile("//d:" + name, Filters.element(), null, d);
+			List<Element> links = expr.evaluate(doc);
+			if(!links.isEmpty()) {
+				result.put(name, links.get(0).getText());
+			}
+		}
+		Verify.verify(result.containsKey(FORM_DIGEST_VALUE), "response does not contain d:FormDigestValue");
+		return result;
 	}
 }
@@ -0,0 +1,255 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.CookieStore;
+import java.net.HttpCookie;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
+
+import net.karpisek.ospr.Ospr;
+import net.karpisek.ospr.net.SharepointOnlineAuthentication.Result;
+
+/**
+ * Keeps authentication results on disk, so following runs for the same user and sharepoint server do not have to authenticate again.
+ * 
+ * Each result is stored in its own file named by hash of user name and server, together with authentication cookies.
+ * Content is encrypted using AES/GCM with key derived from user password, so it can be read only by run knowing the password.
+ * Results are reused only until given margin before their expiration.
+ */
+public class SharepointOnlineAuthenticationCache {
+	private static final Logger LOG = LoggerFactory.getLogger(SharepointOnlineAuthenticationCache.class);
+	
+	/**
+	 * Default time before expiration when cached result is not reused anymore.
+	 */
+	public static final Duration DEFAULT_MARGIN = Duration.ofMinutes(5);
+	
+	private static final int VERSION = 1;
+	private static final int SALT_LENGTH = 16;
+	private static final int IV_LENGTH = 12;
+	private static final int TAG_LENGTH = 128;
+	private static final int KEY_LENGTH = 256;
+	private static final int ITERATIONS = 65536;
+	private static final List<String> COOKIES = Lists.newArrayList("rtFa", "FedAuth");
+	
+	private final Path directory;
+	private final Duration margin;
+	private final Clock clock;
+	private final SecureRandom random = new SecureRandom();
+	
+	public SharepointOnlineAuthenticationCache(Path directory) {
+		this(directory, DEFAULT_MARGIN, Clock.systemUTC());
+	}
+	
+	SharepointOnlineAuthenticationCache(Path directory, Duration margin, Clock clock) {
+		Preconditions.checkArgument(!margin.isNegative(), "Illegal margin value, must not be negative (is '%s')", margin);
+		this.directory = directory;
+		this.margin = margin;
+		this.clock = clock;
+	}
+	
+	/**
+	 * Answers cached result not close to expiration and adds its authentication cookies into cookie store.
+	 * @return null if there is no usable result
+	 */
+	public Result load(SpUri uri, String username, String password, CookieStore cookieStore) {
+		Path file = file(uri, username);
+		try {
+			byte[] content = Files.readAllBytes(file);
+			DataInputStream input = new DataInputStream(new ByteArrayInputStream(content));
+			if(input.readInt() != VERSION) {
+				LOG.debug("unsupported version of cached result file={}", file);
+				return null;
+			}
+			byte[] salt = readBytes(input);
+			byte[] iv = readBytes(input);
+			byte[] encrypted = readBytes(input);
+			Cipher cipher = cipher(Cipher.DECRYPT_MODE, password, salt, iv, uri, username);
+			DataInputStream payload = new DataInputStream(new ByteArrayInputStream(cipher.doFinal(encrypted)));
+			
+			Instant expiration = Instant.ofEpochMilli(payload.readLong());
+			Instant now = clock.instant();
+			if(now.plus(margin).isAfter(expiration)) {
+				LOG.debug("cached result close to expiration file={} expiration={}", file, expiration);
+				return null;
+			}
+			Result result = new Result(uri, readString(payload), readString(payload), readString(payload), readString(payload), expiration);
+			int cookies = payload.readInt();
+			for (int i = 0; i < cookies; i++) {
+				HttpCookie cookie = new HttpCookie(readString(payload), readString(payload));
+				cookie.setDomain(readString(payload));
+				cookie.setPath(readString(payload));
+				cookie.setSecure(payload.readBoolean());
+				cookie.setHttpOnly(payload.readBoolean());
+				cookie.setMaxAge(Duration.between(now, expiration).getSeconds());
+				cookieStore.add(uri.getServerUri(), cookie);
+			}
+			return result;
+		} catch (NoSuchFileException e) {
+			LOG.debug("no cached result file={}", file);
+			return null;
+		} catch (IOException | GeneralSecurityException e) {
+			//also result encrypted using different password
+			LOG.debug("cached result not readable file={}", file, e);
+			return null;
+		}
+	}
+	
+	/**
+	 * Store result together with its authentication cookies taken from cookie store. 
+	 * Failure to store is only logged, results without known expiration are not stored.
+	 */
+	public void store(Result result, String username, String password, CookieStore cookieStore) {
+		if(result.getExpiration() == null) {
+			LOG.debug("result without expiration is not cached");
+			return;
+		}
+		SpUri uri = result.getSharepointUri();
+		Path file = file(uri, username);
+		try {
+			ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+			DataOutputStream payload = new DataOutputStream(payloadBytes);
+			payload.writeLong(result.getExpiration().toEpochMilli());
+			writeString(payload, result.getRtFa());
+			writeString(payload, result.getFedAuth());
+			writeString(payload, result.getBinarySecurityToken());
+			writeString(payload, result.getFormDigest());
+			List<HttpCookie> cookies = Lists.newArrayList();
+			for (String name : COOKIES) {
+				HttpCookie cookie = Ospr.getCookie(cookieStore, name);
+				if(cookie != null) {
+					cookies.add(cookie);
+				}
+			}
+			payload.writeInt(cookies.size());
+			for (HttpCookie cookie : cookies) {
+				writeString(payload, cookie.getName());
+				writeString(payload, cookie.getValue());
+				writeString(payload, cookie.getDomain() == null ? uri.getHost() : cookie.getDomain());
+				writeString(payload, cookie.getPath() == null ? "/" : cookie.getPath());
+				payload.writeBoolean(cookie.getSecure());
+				payload.writeBoolean(cookie.isHttpOnly());
+			}
+			payload.flush();
+			
+			byte[] salt = new byte[SALT_LENGTH];
+			byte[] iv = new byte[IV_LENGTH];
+			random.nextBytes(salt);
+			random.nextBytes(iv);
+			Cipher cipher = cipher(Cipher.ENCRYPT_MODE, password, salt, iv, uri, username);
+			
+			ByteArrayOutputStream contentBytes = new ByteArrayOutputStream();
+			DataOutputStream content = new DataOutputStream(contentBytes);
+			content.writeInt(VERSION);
+			writeBytes(content, salt);
+			writeBytes(content, iv);
+			writeBytes(content, cipher.doFinal(payloadBytes.toByteArray()));
+			content.flush();
+			
+			Files.createDirectories(directory);
+			Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+			try {
+				try {
+					Files.setPosixFilePermissions(temporary, PosixFilePermissions.fromString("rw-------"));
+				} catch (UnsupportedOperationException e) {
+					//not posix file system
+				}
+				Files.write(temporary, contentBytes.toByteArray());
+				try {
+					Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				} catch (AtomicMoveNotSupportedException e) {
+					Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+				}
+			}
+			finally {
+				Files.deleteIfExists(temporary);
+			}
+			LOG.debug("result cached file={} expiration={}", file, result.getExpiration());
+		} catch (IOException | GeneralSecurityException e) {
+			LOG.warn("Failed to cache authentication result file={}", file, e);
+		}
+	}
+	
+	Path file(SpUri uri, String username) {
+		String key = username.toLowerCase() + "|" + uri.getServerUri();
+		return directory.resolve(Hashing.sha256().hashString(key, StandardCharsets.UTF_8).toString());
+	}
+	
+	/**
+	 * Cipher with key derived from password, user and server are authenticated as additional data so file can not be used for other user.
+	 */
+	private static Cipher cipher(int mode, String password, byte[] salt, byte[] iv, SpUri uri, String username) throws GeneralSecurityException {
+		PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, ITERATIONS, KEY_LENGTH);
+		try {
+			byte[] key = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+			Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+			cipher.init(mode, new SecretKeySpec(key, "AES"), new GCMParameterSpec(TAG_LENGTH, iv));
+			cipher.updateAAD((username.toLowerCase() + "|" + uri.getServerUri()).getBytes(StandardCharsets.UTF_8));
+			return cipher;
+		}
+		finally {
+			spec.clearPassword();
+		}
+	}
+	
+	private static void writeString(DataOutputStream output, String value) throws IOException {
+		writeBytes(output, value.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	private static String readString(DataInputStream input) throws IOException {
+		return new String(readBytes(input), StandardCharsets.UTF_8);
+	}
+	
+	private static void writeBytes(DataOutputStream output, byte[] value) throws IOException {
+		output.writeInt(value.length);
+		output.write(value);
+	}
+	
+	private static byte[] readBytes(DataInputStream input) throws IOException {
+		int length = input.readInt();
+		if(length < 0 || length > input.available()) {
+			throw new IOException("Illegal length of cached value " + length);
+		}
+		byte[] result = new byte[length];
+		input.readFully(result);
+		return result;
+	}
+}
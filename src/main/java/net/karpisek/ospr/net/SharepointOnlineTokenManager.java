@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.jdom2.JDOMException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.karpisek.ospr.net.SharepointOnlineAuthentication.Result;
+
+/**
+ * Keeps authentication result usable during long running traversals, its form digest and cookies expire after some time.
+ * 
+ * Result close to its expiration is refreshed in background while requests keep using the current one until it really expires.
+ * Request rejected because of its authentication (401/403) is repeated once with refreshed result.
+ * Only one refresh is running at the same time, requests asking to refresh already replaced result get the new one.
+ * 
+ * 403 is answered also for objects user has no permission to, so result refreshed less than minimal age ago is not refreshed again
+ * because of rejected request, otherwise each such request would authenticate again.
+ */
+public class SharepointOnlineTokenManager {
+	private static final Logger LOG = LoggerFactory.getLogger(SharepointOnlineTokenManager.class);
+	
+	/**
+	 * Default time before expiration when result is refreshed.
+	 */
+	public static final Duration DEFAULT_MARGIN = Duration.ofMinutes(5);
+	
+	/**
+	 * Default minimal age of refreshed result which can be refreshed again because of rejected request.
+	 */
+	public static final Duration DEFAULT_MIN_AGE = Duration.ofMinutes(1);
+	
+	/**
+	 * Request using given authentication result.
+	 */
+	interface IAuthenticatedCall<T> {
+		T execute(Result authResult) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException;
+	}
+	
+	private final Callable<Result> refresher;
+	private final Duration margin;
+	private final Duration minAge;
+	private final Clock clock;
+	private final Executor executor;
+	private final Object lock = new Object();
+	private volatile Result current;
+	private CompletableFuture<Result> refreshing;
+	/**
+	 * Time when current result was refreshed, null for initial result which age is not known.
+	 */
+	private Instant refreshed;
+	
+	/**
+	 * @param executor running refreshes, owned by caller which shuts it down when manager is not used any more
+	 */
+	public SharepointOnlineTokenManager(SharepointOnlineAuthentication authentication, HttpClient httpClient, Result authResult, Executor executor) {
+		this(() -> authentication.refresh(httpClient), authResult, DEFAULT_MARGIN, DEFAULT_MIN_AGE, Clock.systemUTC(), executor);
+	}
+	
+	/**
+	 * Manager always answering given result, it is never refreshed.
+	 */
+	SharepointOnlineTokenManager(Result authResult) {
+		this(null, authResult, DEFAULT_MARGIN, DEFAULT_MIN_AGE, Clock.systemUTC(), Runnable::run);
+	}
+	
+	/**
+	 * @param refresher answers new authentication result, null if result can not be refreshed
+	 * @param minAge of refreshed result which can be refreshed again because of rejected request
+	 * @param executor running refreshes
+	 */
+	SharepointOnlineTokenManager(Callable<Result> refresher, Result authResult, Duration margin, Duration minAge, Clock clock, Executor executor) {
+		this.refresher = refresher;
+		this.current = authResult;
+		this.margin = margin;
+		this.minAge = minAge;
+		this.clock = clock;
+		this.executor = executor;
+	}
+	
+	/**
+	 * Answer result to use for next request, result close to expiration is still answered while refresh runs in background,
+	 * only already expired result waits for refresh to finish.
+	 */
+	public CompletableFuture<Result> getResultAsync() {
+		Result result = current;
+		Instant expiration = result.getExpiration();
+		if(refresher == null || expiration == null) {
+			return CompletableFuture.completedFuture(result);
+		}
+		Instant now = clock.instant();
+		if(now.isBefore(expiration.minus(margin))) {
+			return CompletableFuture.completedFuture(result);
+		}
+		CompletableFuture<Result> refreshed = refreshAsync(result);
+		if(now.isBefore(expiration)) {
+			return CompletableFuture.completedFuture(result);
+		}
+		return refreshed;
+	}
+	
+	/**
+	 * Same as {@link #getResultAsync()} but blocking calling thread.
+	 */
+	public Result getResult() throws InterruptedException, ExecutionException {
+		return getResultAsync().get();
+	}
+	
+	/**
+	 * Refresh given result, unless it was already replaced by newer one.
+	 * @return future of the newest result, same result if it can not be refreshed
+	 */
+	public CompletableFuture<Result> refreshAsync(Result stale) {
+		synchronized (lock) {
+			if(refresher == null || current != stale) {
+				return CompletableFuture.completedFuture(current);
+			}
+			if(refreshing == null) {
+				CompletableFuture<Result> future = new CompletableFuture<>();
+				refreshing = future;
+				LOG.debug("refresh expiration={}", stale.getExpiration());
+				executor.execute(() -> refresh(future));
+				return future;
+			}
+			return refreshing;
+		}
+	}
+	
+	/**
+	 * Refresh result rejected by server, unless it was refreshed less than minimal age ago.
+	 * @return future of the newest result, same result if it is not refreshed
+	 */
+	CompletableFuture<Result> refreshRejectedAsync(Result rejected) {
+		synchronized (lock) {
+			if(current == rejected && refreshing == null && refreshed != null && clock.instant().isBefore(refreshed.plus(minAge))) {
+				return CompletableFuture.completedFuture(current);
+			}
+		}
+		return refreshAsync(rejected);
+	}
+	
+	private void refresh(CompletableFuture<Result> future) {
+		try {
+			Result result = refresher.call();
+			synchronized (lock) {
+				current = result;
+				refreshed = clock.instant();
+				refreshing = null;
+			}
+			LOG.info("authRefreshed expiration={}", result.getExpiration());
+			future.complete(result);
+		} catch (Exception e) {
+			synchronized (lock) {
+				refreshing = null;
+			}
+			LOG.warn("authRefreshFailed", e);
+			future.completeExceptionally(e);
+		}
+	}
+	
+	/**
+	 * Execute request with current result, request rejected because of authentication is repeated once with refreshed result.
+	 */
+	<T> T execute(IAuthenticatedCall<T> call) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		Result result = getResult();
+		try {
+			return call.execute(result);
+		} catch (SpHttpException e) {
+			if(!e.isAuthenticationFailure()) {
+				throw e;
+			}
+			Result refreshed = refreshRejectedAsync(result).get();
+			if(refreshed == result) {
+				throw e;
+			}
+			LOG.debug("repeat rejected request statusCode={}", e.getStatus());
+			return call.execute(refreshed);
+		}
+	}
+	
+	/**
+	 * Same as {@link #execute(IAuthenticatedCall)} but without blocking calling thread.
+	 */
+	<T> CompletableFuture<T> executeAsync(Function<Result, CompletableFuture<T>> call) {
+		return getResultAsync().thenCompose(result -> call.apply(result)
+				.thenApply(CompletableFuture::completedFuture)
+				.exceptionally(e -> {
+					Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+					if(!(cause instanceof SpHttpException) || !((SpHttpException) cause).isAuthenticationFailure()) {
+						return failed(cause);
+					}
+					return refreshRejectedAsync(result).thenCompose(refreshed -> {
+						if(refreshed == result) {
+							return failed(cause);
+						}
+						LOG.debug("repeat rejected request statusCode={}", ((SpHttpException) cause).getStatus());
+						return call.apply(refreshed);
+					});
+				})
+				.thenCompose(Function.identity()));
+	}
+	
+	private static <T> CompletableFuture<T> failed(Throwable e) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		future.completeExceptionally(e);
+		return future;
+	}
+}
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.jdom2.JDOMException;
+
+/**
+ * Provider answering folders from {@link SpSnapshot} without remote calls, file properties are looked up by other provider.
+ */
+public class SnapshotSpObjectProvider implements ISpObjectProvider {
+	private final SpSnapshot snapshot;
+	private final ISpObjectProvider objectProvider;
+	
+	/**
+	 * @param objectProvider to lookup file properties
+	 */
+	public SnapshotSpObjectProvider(SpSnapshot snapshot, ISpObjectProvider objectProvider) {
+		this.snapshot = snapshot;
+		this.objectProvider = objectProvider;
+	}
+
+	@Override
+	public SpFolder getFolder(String folder) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		SpFolder result = snapshot.getFolder(folder);
+		if(result == null) {
+			throw new FileNotFoundException("folder is not part of snapshot " + folder);
+		}
+		return result;
+	}
+
+	@Override
+	public SpFileProperties getSpFileProperties(String file) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		return objectProvider.getSpFileProperties(file);
+	}
+	
+	@Override
+	public List<SpFileProperties> getSpFileProperties(List<String> files) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		return objectProvider.getSpFileProperties(files);
+	}
+}
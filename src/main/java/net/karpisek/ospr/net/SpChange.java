@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Change of item in document library answered by {@link GetSpChanges}.
+ */
+public class SpChange {
+	/**
+	 * Type of change, codes are values of sharepoint ChangeType enumeration.
+	 */
+	public static enum Type{
+		NO_CHANGE(0),
+		ADD(1),
+		UPDATE(2),
+		DELETE_OBJECT(3),
+		RENAME(4),
+		MOVE_AWAY(5),
+		MOVE_INTO(6),
+		RESTORE(7),
+		SYSTEM_UPDATE(15),
+		/**
+		 * Any other change which does not modify files or folders (permissions, navigation, ...).
+		 */
+		OTHER(-1);
+		
+		private final int code;
+		
+		private Type(int code) {
+			this.code = code;
+		}
+		
+		public int getCode() {
+			return code;
+		}
+		
+		public static Type fromCode(int code) {
+			for (Type each : values()) {
+				if(each.code == code) {
+					return each;
+				}
+			}
+			return OTHER;
+		}
+	}
+	
+	private final Type type;
+	private final String serverRelativeUrl;
+	private final boolean folder;
+	private final String changeToken;
+	private final String uniqueId;
+	
+	/**
+	 * @param serverRelativeUrl of changed item, null if change does not contain it
+	 * @param folder true if changed item is folder
+	 * @param changeToken identifying position of change in change log of library
+	 */
+	public SpChange(Type type, String serverRelativeUrl, boolean folder, String changeToken) {
+		this(type, serverRelativeUrl, folder, changeToken, null);
+	}
+	
+	/**
+	 * @param uniqueId of changed list item, null if change does not contain it
+	 */
+	public SpChange(Type type, String serverRelativeUrl, boolean folder, String changeToken, String uniqueId) {
+		this.type = type;
+		this.serverRelativeUrl = serverRelativeUrl;
+		this.folder = folder;
+		this.changeToken = changeToken;
+		this.uniqueId = uniqueId;
+	}
+	
+	public Type getType() {
+		return type;
+	}
+	
+	public String getServerRelativeUrl() {
+		return serverRelativeUrl;
+	}
+	
+	public boolean isFolder() {
+		return folder;
+	}
+	
+	public String getChangeToken() {
+		return changeToken;
+	}
+	
+	/**
+	 * @return unique id of changed list item, changes of deleted items contain it instead of url
+	 */
+	public String getUniqueId() {
+		return uniqueId;
+	}
+	
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this)
+				.add("type", type)
+				.add("serverRelativeUrl", serverRelativeUrl)
+				.add("folder", folder)
+				.add("changeToken", changeToken)
+				.add("uniqueId", uniqueId)
+				.toString();
+	}
+}
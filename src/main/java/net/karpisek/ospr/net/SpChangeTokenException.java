@@ -0,0 +1,22 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+/**
+ * Request for changes rejected because its change token is not valid, usually because it is older than change log of library.
+ */
+public class SpChangeTokenException extends SpHttpException {
+	private static final long serialVersionUID = 1L;
+	
+	public SpChangeTokenException(int status) {
+		super(status);
+	}
+}
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Creates executors running blocking requests, either on pool of platform threads or on virtual threads.
+ * 
+ * Virtual threads are available since Java 21 and are looked up at runtime, so the tool still runs on Java 8.
+ * Number of requests in flight is not limited by executor, callers limit it by their parallelism regardless of executor kind.
+ */
+public class SpExecutors {
+	private static final Logger LOG = LoggerFactory.getLogger(SpExecutors.class);
+	
+	/**
+	 * @return true if running Java provides virtual threads
+	 */
+	public static boolean isVirtualThreadsSupported() {
+		return newVirtualThreadFactory("ospr-probe-") != null;
+	}
+	
+	/**
+	 * @param name of executor threads, like "folder" for threads named "ospr-folder-0", "ospr-folder-1", ...
+	 * @param parallelism number of platform threads in pool, not used for virtual threads
+	 * @param virtualThreads true to start new virtual thread for each task, pool of platform threads is used if running Java does not support them
+	 */
+	public static ExecutorService newExecutor(String name, int parallelism, boolean virtualThreads) {
+		Preconditions.checkArgument(parallelism > 0, "Illegal parallelism value, must be > 0 (is '%s')", parallelism);
+		if(virtualThreads) {
+			ExecutorService executor = newVirtualThreadExecutor("ospr-" + name + "-");
+			if(executor != null) {
+				return executor;
+			}
+			LOG.warn("virtual threads are not supported by java.version={}, using pool of threads={} for {}", System.getProperty("java.version"), parallelism, name);
+		}
+		return Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder().setNameFormat("ospr-" + name + "-%d").setDaemon(true).build());
+	}
+	
+	/**
+	 * @return executor starting new virtual thread for each task, null if virtual threads are not supported
+	 */
+	private static ExecutorService newVirtualThreadExecutor(String prefix) {
+		ThreadFactory factory = newVirtualThreadFactory(prefix);
+		if(factory == null) {
+			return null;
+		}
+		try {
+			return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, factory);
+		} catch (ReflectiveOperationException e) {
+			LOG.debug("thread per task executor not available", e);
+			return null;
+		}
+	}
+	
+	/**
+	 * Same as <code>Thread.ofVirtual().name(prefix, 0).factory()</code> of Java 21.
+	 * @return null if virtual threads are not supported
+	 */
+	private static ThreadFactory newVirtualThreadFactory(String prefix) {
+		try {
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+			return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			//missing on older Java, preview feature on Java 19 and 20
+			return null;
+		}
+	}
+}
@@ -15,16 +15,26 @@ import java.time.Instant;
 import com.google.common.base.MoreObjects;
 
 public class SpFile extends SpObject{
-	private final int length;
+	private final long length;
 	private SpVersion version;
 
-	public SpFile(String name, String serverRelativeUrl, Instant timeLastModified, Instant timeCreated, int length, SpVersion version) {
-		super(name, serverRelativeUrl, timeLastModified, timeCreated);
+	public SpFile(String name, String serverRelativeUrl, Instant timeLastModified, Instant timeCreated, long length, SpVersion version) {
+		this(name, serverRelativeUrl, timeLastModified, timeCreated, length, version, null);
+	}
+	
+	/**
+	 * @param uniqueId of list item of file, null if not known
+	 */
+	public SpFile(String name, String serverRelativeUrl, Instant timeLastModified, Instant timeCreated, long length, SpVersion version, String uniqueId) {
+		super(name, serverRelativeUrl, timeLastModified, timeCreated, uniqueId);
 		this.length = length;
 		this.version = version;
 	}
 	
-	public int getLength() {
+	/**
+	 * @return size of file in bytes
+	 */
+	public long getLength() {
 		return length;
 	}
 	
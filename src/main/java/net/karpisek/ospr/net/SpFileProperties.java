@@ -18,12 +18,26 @@ import java.util.function.BiConsumer;
  * office documents properties available via rest
  */
 public class SpFileProperties{
+	//TODO: reworking mapping handling when more properties is needed (and if custom ones too)
 	public static enum CoreProperty{
-		TITLE,
-		SUBJECT,
-		COMMENT,
-		KEYWORDS,
-		AUTHOR;
+		TITLE("vti_x005f_title"),
+		SUBJECT("Subject"),
+		COMMENT("OData__x005f_Comments"),
+		KEYWORDS("Keywords"),
+		AUTHOR("OData__x005f_Author");
+		
+		private final String restName;
+		
+		private CoreProperty(String restName) {
+			this.restName = restName;
+		}
+		
+		/**
+		 * @return name of property in property bag of file answered by rest api
+		 */
+		public String getRestName() {
+			return restName;
+		}
 	}
 
 	private EnumMap<CoreProperty, String> coreProperties;
@@ -0,0 +1,386 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import java.time.Instant;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.collect.Lists;
+
+/**
+ * Folders with their direct children kept in primitive columns instead of one object per file, for trees of millions of files.
+ * 
+ * Each folder or file is one node identified by its index in columns. Node keeps index of its parent and only its own 
+ * name (names are interned), server relative url is composed from names of parents when asked. Times are kept as 
+ * epoch milliseconds, unique ids as two longs. Children of listed folder are consecutive nodes ordered by name. {@link SpFolder} and {@link SpFile} 
+ * instances are created only when folder is asked and are not kept.
+ * 
+ * Folder is found by descending from root folder by names of children (binary search in children range). Root folders 
+ * are kept under url they were put, listing folder again replaces its children by new nodes and old nodes are left unused 
+ * until tree is copied.
+ */
+class SpFileTree {
+	private static final int NONE = -1;
+	private static final int FOLDER = -1;
+	//SharePoint limits count of minor versions to 511
+	private static final int MINOR_BITS = 9;
+	private static final int MINOR_MASK = (1 << MINOR_BITS) - 1;
+	//nil uuid stands for unknown unique id
+	private static final long NO_ID = 0;
+	
+	private final Interner<String> names = Interners.newStrongInterner();
+	//server relative urls of folders put without parent
+	private final Map<Integer, String> roots = new LinkedHashMap<>();
+	//urls root folders were put under if different from their server relative urls
+	private final Map<Integer, String> aliases = new LinkedHashMap<>();
+	
+	private int size;
+	private int[] parent = new int[16];
+	private String[] name = new String[16];
+	private long[] modified = new long[16];
+	private long[] created = new long[16];
+	//length of file, item count of folder
+	private long[] length = new long[16];
+	//major and minor version of file, FOLDER for folder
+	private int[] version = new int[16];
+	//first child of folder, NONE if folder was not listed
+	private int[] firstChild = new int[16];
+	private int[] childCount = new int[16];
+	//most and least significant bits of unique id, both NO_ID if unique id is not known
+	private long[] idMost = new long[16];
+	private long[] idLeast = new long[16];
+	
+	/**
+	 * Keep folder with its direct children under given url, previous children of folder are replaced.
+	 * @param url of folder as it will be asked, folder which is not child of already put folder becomes new root
+	 */
+	void put(String url, SpFolder folder) {
+		int node = resolve(url);
+		if(node == NONE) {
+			node = add(NONE, folder);
+			roots.put(node, folder.getServerRelativeUrl());
+			if(!url.equals(folder.getServerRelativeUrl())) {
+				aliases.put(node, url);
+			}
+		}
+		else {
+			set(node, folder);
+		}
+		
+		int previousFirst = firstChild[node];
+		int previousCount = childCount[node];
+		List<? extends SpObject> children = folder.getChildren();
+		int first = size;
+		for (SpObject child : children) {
+			add(node, child);
+		}
+		firstChild[node] = first;
+		childCount[node] = children.size();
+		for (int i = first; i < first + children.size(); i++) {
+			if(version[i] != FOLDER) {
+				continue;
+			}
+			int previous = find(previousFirst, previousCount, name[i]);
+			if(previous != NONE && firstChild[previous] != NONE) {
+				//already listed subfolder keeps its children
+				adopt(i, previous);
+			}
+		}
+		
+		//roots put before their parent folder become its subfolders
+		String prefix = url(node) + "/";
+		for (Integer root : Lists.newArrayList(roots.keySet())) {
+			String rootUrl = roots.get(root);
+			if(root != node && rootUrl.startsWith(prefix) && rootUrl.indexOf('/', prefix.length()) < 0) {
+				int child = find(first, children.size(), rootUrl.substring(prefix.length()));
+				if(child != NONE && version[child] == FOLDER) {
+					adopt(child, root);
+					roots.remove(root);
+					aliases.remove(root);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return folder with its direct children, null if folder was not put
+	 */
+	SpFolder get(String url) {
+		int node = resolve(url);
+		if(node == NONE || firstChild[node] == NONE) {
+			return null;
+		}
+		int first = firstChild[node];
+		int count = childCount[node];
+		return SpFolder.ofSorted(name[node], url(node), Instant.ofEpochMilli(modified[node]), Instant.ofEpochMilli(created[node]), (int) length[node], new AbstractList<SpObject>() {
+			@Override
+			public SpObject get(int index) {
+				Preconditions.checkElementIndex(index, count);
+				return view(first + index);
+			}
+			
+			@Override
+			public int size() {
+				return count;
+			}
+		}, uniqueId(node));
+	}
+	
+	/**
+	 * @return true if folder was put under given url
+	 */
+	boolean contains(String url) {
+		int node = resolve(url);
+		return node != NONE && firstChild[node] != NONE;
+	}
+	
+	/**
+	 * Forget folder and all folders under it.
+	 */
+	void remove(String url) {
+		int node = resolve(url);
+		if(node != NONE) {
+			//nodes under folder are not reachable anymore
+			firstChild[node] = NONE;
+			childCount[node] = 0;
+			if(parent[node] == NONE) {
+				roots.remove(node);
+				aliases.remove(node);
+			}
+		}
+		//roots put under folder while some folder between them was not listed
+		roots.values().removeIf(each -> each.startsWith(url + "/"));
+		aliases.keySet().retainAll(roots.keySet());
+	}
+	
+	/**
+	 * @return server relative urls of children of folders put by their unique ids, children without known unique id are not included
+	 */
+	Map<UUID, String> urlsByUniqueId() {
+		Map<UUID, String> result = new LinkedHashMap<>();
+		for (int node : listed()) {
+			String url = url(node);
+			for (int child = firstChild[node]; child < firstChild[node] + childCount[node]; child++) {
+				if(idMost[child] != NO_ID || idLeast[child] != NO_ID) {
+					result.put(new UUID(idMost[child], idLeast[child]), url + "/" + name[child]);
+				}
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * @return count of folders put
+	 */
+	int size() {
+		return listed().size();
+	}
+	
+	/**
+	 * @return urls of folders put, parent folders before their subfolders
+	 */
+	List<String> urls() {
+		List<String> result = Lists.newArrayList();
+		for (int node : listed()) {
+			result.add(parent[node] == NONE ? aliases.getOrDefault(node, roots.get(node)) : url(node));
+		}
+		return result;
+	}
+	
+	/**
+	 * @return copy of tree without unused nodes
+	 */
+	SpFileTree copy() {
+		SpFileTree result = new SpFileTree();
+		for (String url : urls()) {
+			result.put(url, get(url));
+		}
+		return result;
+	}
+	
+	/**
+	 * @return listed folders reachable from roots, parent folders before their subfolders
+	 */
+	private List<Integer> listed() {
+		List<Integer> result = Lists.newArrayList();
+		Deque<Integer> stack = new ArrayDeque<>();
+		for (Integer root : roots.keySet()) {
+			stack.push(root);
+			while(!stack.isEmpty()) {
+				int node = stack.pop();
+				if(firstChild[node] == NONE) {
+					continue;
+				}
+				result.add(node);
+				for (int child = firstChild[node] + childCount[node] - 1; child >= firstChild[node]; child--) {
+					if(version[child] == FOLDER) {
+						stack.push(child);
+					}
+				}
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * @return node of folder put under given url or of its child, NONE if there is no such node
+	 */
+	private int resolve(String url) {
+		for (Map.Entry<Integer, String> each : roots.entrySet()) {
+			if(url.equals(each.getValue()) || url.equals(aliases.get(each.getKey()))) {
+				return each.getKey();
+			}
+		}
+		for (Map.Entry<Integer, String> each : roots.entrySet()) {
+			int node = descend(each.getKey(), url, each.getValue());
+			if(node == NONE && aliases.containsKey(each.getKey())) {
+				node = descend(each.getKey(), url, aliases.get(each.getKey()));
+			}
+			if(node != NONE) {
+				return node;
+			}
+		}
+		return NONE;
+	}
+	
+	/**
+	 * @return node under root reached by segments of url after rootUrl, NONE if url is not under rootUrl or some segment is not found
+	 */
+	private int descend(int root, String url, String rootUrl) {
+		if(!url.startsWith(rootUrl + "/")) {
+			return NONE;
+		}
+		int node = root;
+		for (String segment : Splitter.on('/').split(url.substring(rootUrl.length() + 1))) {
+			node = find(firstChild[node], childCount[node], segment);
+			if(node == NONE) {
+				return NONE;
+			}
+		}
+		return node;
+	}
+	
+	/**
+	 * @return node with given name in range of children ordered by name, NONE if not found
+	 */
+	private int find(int first, int count, String childName) {
+		int low = first;
+		int high = first + count - 1;
+		while(low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = name[middle].compareTo(childName);
+			if(comparison < 0) {
+				low = middle + 1;
+			}
+			else if(comparison > 0) {
+				high = middle - 1;
+			}
+			else {
+				return middle;
+			}
+		}
+		return NONE;
+	}
+	
+	/**
+	 * Move children of listed folder from one node to other.
+	 */
+	private void adopt(int node, int from) {
+		firstChild[node] = firstChild[from];
+		childCount[node] = childCount[from];
+		for (int child = firstChild[node]; child < firstChild[node] + childCount[node]; child++) {
+			parent[child] = node;
+		}
+	}
+	
+	private SpObject view(int node) {
+		Instant timeLastModified = Instant.ofEpochMilli(modified[node]);
+		Instant timeCreated = Instant.ofEpochMilli(created[node]);
+		if(version[node] == FOLDER) {
+			return new SpFolder(name[node], url(node), timeLastModified, timeCreated, (int) length[node], Lists.newArrayList(), uniqueId(node));
+		}
+		return new SpFile(name[node], url(node), timeLastModified, timeCreated, length[node], SpVersion.of(version[node] >>> MINOR_BITS, version[node] & MINOR_MASK), uniqueId(node));
+	}
+	
+	private String uniqueId(int node) {
+		if(idMost[node] == NO_ID && idLeast[node] == NO_ID) {
+			return null;
+		}
+		return new UUID(idMost[node], idLeast[node]).toString();
+	}
+	
+	private String url(int node) {
+		Deque<String> segments = new ArrayDeque<>();
+		int each = node;
+		while(parent[each] != NONE) {
+			segments.push(name[each]);
+			each = parent[each];
+		}
+		StringBuilder result = new StringBuilder(roots.get(each));
+		for (String segment : segments) {
+			result.append('/').append(segment);
+		}
+		return result.toString();
+	}
+	
+	private int add(int parentNode, SpObject object) {
+		if(size == parent.length) {
+			int capacity = size + (size >> 1);
+			parent = Arrays.copyOf(parent, capacity);
+			name = Arrays.copyOf(name, capacity);
+			modified = Arrays.copyOf(modified, capacity);
+			created = Arrays.copyOf(created, capacity);
+			length = Arrays.copyOf(length, capacity);
+			version = Arrays.copyOf(version, capacity);
+			firstChild = Arrays.copyOf(firstChild, capacity);
+			childCount = Arrays.copyOf(childCount, capacity);
+			idMost = Arrays.copyOf(idMost, capacity);
+			idLeast = Arrays.copyOf(idLeast, capacity);
+		}
+		int node = size++;
+		parent[node] = parentNode;
+		firstChild[node] = NONE;
+		childCount[node] = 0;
+		set(node, object);
+		return node;
+	}
+	
+	private void set(int node, SpObject object) {
+		name[node] = names.intern(object.getName());
+		modified[node] = object.getTimeLastModified().toEpochMilli();
+		created[node] = object.getTimeCreated().toEpochMilli();
+		UUID id = object.getUniqueId() == null ? new UUID(NO_ID, NO_ID) : UUID.fromString(object.getUniqueId());
+		idMost[node] = id.getMostSignificantBits();
+		idLeast[node] = id.getLeastSignificantBits();
+		if(object.isFolder()) {
+			length[node] = ((SpFolder) object).getItemCount();
+			version[node] = FOLDER;
+		}
+		else {
+			SpFile file = (SpFile) object;
+			SpVersion fileVersion = file.getVersion();
+			Preconditions.checkArgument(fileVersion.getMinor() <= MINOR_MASK, "Illegal minor version value, must be <= %s (is '%s')", MINOR_MASK, fileVersion.getMinor());
+			length[node] = file.getLength();
+			version[node] = fileVersion.getMajor() << MINOR_BITS | fileVersion.getMinor();
+		}
+	}
+}
@@ -11,11 +11,17 @@
 package net.karpisek.ospr.net;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeoutException;
 
 import org.jdom2.JDOMException;
 
+import com.google.common.collect.Lists;
+
 import net.karpisek.ospr.Ospr;
 
 public class SpFiles {
@@ -28,6 +34,9 @@ public class SpFiles {
 		if(maxDepth != Ospr.UNLIMITED_DEPTH && depth>maxDepth) {
 			return;
 		}
+		if(visitor.skipFolder(folderName)) {
+			return;
+		}
 		SpFolder folder = objectProvider.getFolder(folderName);
 		walk(
 				objectProvider, 
@@ -55,5 +64,143 @@ public class SpFiles {
 			}
 		}
 		visitor.postVisitFolder(folder);
-	}	
+	}
+
+	/**
+	 * Walk folder tree same way as {@link #walkFileTree(ISpObjectProvider, String, int, int, ISpFileVisitor)} does,
+	 * but list children of folders page by page using {@link ISpObjectProvider#listFolder(String, int)}.
+	 * 
+	 * Only current page of each folder on the path from root is kept in memory, so very large folders can be walked.
+	 * Visited folders have no children, their children are visited between {@link ISpFileVisitor#preVisitFolder(SpFolder)} 
+	 * and {@link ISpFileVisitor#postVisitFolder(SpFolder)} calls. 
+	 */
+	public static void walkFileTreePaged(
+			ISpObjectProvider objectProvider, 
+			String folderName,
+			int depth, 
+			int maxDepth, ISpFileVisitor visitor,
+			int pageSize
+			) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		if(maxDepth != Ospr.UNLIMITED_DEPTH && depth>maxDepth) {
+			return;
+		}
+		if(visitor.skipFolder(folderName)) {
+			return;
+		}
+		ISpFolderListing listing = objectProvider.listFolder(folderName, pageSize);
+		visitor.preVisitFolder(listing.getFolder());
+		for (List<? extends SpObject> page = listing.nextPage(); !page.isEmpty(); page = listing.nextPage()) {
+			for (SpObject child : page) {
+				if(child.isFolder()){
+					walkFileTreePaged(
+							objectProvider,
+							child.getServerRelativeUrl(),
+							depth+1, maxDepth, visitor,
+							pageSize
+							); 				
+				}
+				else {
+					visitor.visitFile((SpFile) child);
+				}
+			}
+		}
+		visitor.postVisitFolder(listing.getFolder());
+	}
+
+	/**
+	 * Walk folder tree same way as {@link #walkFileTree(ISpObjectProvider, String, int, int, ISpFileVisitor)} does,
+	 * but fetch subfolders in background using executor with at most parallelism folders being fetched at the same time.
+	 *
+	 * Visitor is still called only from calling thread and in the same order as for sequential walk.
+	 * Executor is not used if provider is {@link IAsyncSpObjectProvider}, its asynchronous calls are used instead.
+	 */
+	public static void walkFileTree(
+			ISpObjectProvider objectProvider,
+			String folderName,
+			int depth,
+			int maxDepth, ISpFileVisitor visitor,
+			Executor executor, int parallelism
+			) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		if(maxDepth != Ospr.UNLIMITED_DEPTH && depth>maxDepth) {
+			return;
+		}
+		if(visitor.skipFolder(folderName)) {
+			return;
+		}
+		SpFolderPrefetcher prefetcher = new SpFolderPrefetcher(objectProvider, executor, parallelism);
+		try {
+			SpFolder folder = await(prefetcher.fetch(folderName, new int[0]));
+			walk(prefetcher, folder, new int[0], depth, maxDepth, visitor);
+		}
+		finally {
+			prefetcher.cancel();
+		}
+	}
+
+	private static void walk(
+			SpFolderPrefetcher prefetcher,
+			SpFolder folder, int[] order,
+			int depth, int maxDepth, ISpFileVisitor visitor
+			) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		visitor.preVisitFolder(folder);
+		List<? extends SpObject> children = folder.getChildren();
+		boolean descend = maxDepth == Ospr.UNLIMITED_DEPTH || depth+1 <= maxDepth;
+
+		//schedule all subfolders first, so they are being fetched while files and preceding subfolders are visited
+		List<CompletableFuture<SpFolder>> subfolders = Lists.newArrayListWithCapacity(children.size());
+		for (int i = 0; i < children.size(); i++) {
+			SpObject child = children.get(i);
+			subfolders.add(descend && child.isFolder() && !visitor.skipFolder(child.getServerRelativeUrl()) ? prefetcher.fetch(child.getServerRelativeUrl(), childOrder(order, i)) : null);
+		}
+
+		for (int i = 0; i < children.size(); i++) {
+			SpObject child = children.get(i);
+			if(child.isFolder()){
+				CompletableFuture<SpFolder> subfolder = subfolders.set(i, null);
+				if(subfolder != null) {
+					walk(prefetcher, await(subfolder), childOrder(order, i), depth+1, maxDepth, visitor);
+				}
+			}
+			else {
+				visitor.visitFile((SpFile) child);
+			}
+		}
+		visitor.postVisitFolder(folder);
+	}
+
+	private static int[] childOrder(int[] order, int index) {
+		int[] result = Arrays.copyOf(order, order.length + 1);
+		result[order.length] = index;
+		return result;
+	}
+
+	/**
+	 * Wait for result of background call and rethrow its failure same way as it would be thrown by synchronous call.
+	 */
+	static <T> T await(CompletableFuture<T> future) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if(cause instanceof JDOMException) {
+				throw (JDOMException) cause;
+			}
+			if(cause instanceof TimeoutException) {
+				throw (TimeoutException) cause;
+			}
+			if(cause instanceof InterruptedException) {
+				throw (InterruptedException) cause;
+			}
+			if(cause instanceof ExecutionException) {
+				throw (ExecutionException) cause;
+			}
+			if(cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw e;
+		}
+	}
 }
@@ -23,10 +23,26 @@ import com.google.common.base.MoreObjects;
 import com.google.common.collect.Lists;
 
 public class SpFolder extends SpObject{
+	/**
+	 * @param children already ordered by name, list is kept without copying
+	 */
+	static SpFolder ofSorted(String name, String serverRelativeUrl, Instant timeLastModified, Instant timeCreated, int itemCount, List<? extends SpObject> children, String uniqueId) {
+		SpFolder result = new SpFolder(name, serverRelativeUrl, timeLastModified, timeCreated, itemCount, Collections.emptyList(), uniqueId);
+		result.children = children;
+		return result;
+	}
+	
 	private List<? extends SpObject> children;
 
 	public SpFolder(String name, String serverRelativeUrl, Instant timeLastModified, Instant timeCreated, int itemCount, List<? extends SpObject> children) {
-		super(name, serverRelativeUrl, timeLastModified, timeCreated);
+		this(name, serverRelativeUrl, timeLastModified, timeCreated, itemCount, children, null);
+	}
+	
+	/**
+	 * @param uniqueId of list item of folder, null if not known
+	 */
+	public SpFolder(String name, String serverRelativeUrl, Instant timeLastModified, Instant timeCreated, int itemCount, List<? extends SpObject> children, String uniqueId) {
+		super(name, serverRelativeUrl, timeLastModified, timeCreated, uniqueId);
 		this.itemCount = itemCount;
 		this.children = Lists.newArrayList(children);
 		Collections.sort(this.children, new Comparator<SpObject>() {
@@ -36,6 +52,7 @@ public class SpFolder extends SpObject{
 			}
 		});
 	}
+
 	final int itemCount;
 	
 	public int getItemCount() {
@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ * Listing of children of already completely fetched folder.
+ */
+class SpFolderListing implements ISpFolderListing {
+	private final SpFolder folder;
+	private final List<? extends SpObject> children;
+	private final int pageSize;
+	private int position;
+	
+	SpFolderListing(SpFolder folder, int pageSize) {
+		Preconditions.checkArgument(pageSize > 0, "Illegal page size value, must be > 0 (is '%s')", pageSize);
+		this.folder = new SpFolder(folder.getName(), folder.getServerRelativeUrl(), folder.getTimeLastModified(), folder.getTimeCreated(), folder.getItemCount(), Lists.newArrayList());
+		this.children = folder.getChildren();
+		this.pageSize = pageSize;
+	}
+
+	@Override
+	public SpFolder getFolder() {
+		return folder;
+	}
+
+	@Override
+	public List<? extends SpObject> nextPage() {
+		List<? extends SpObject> page = children.subList(position, Math.min(position + pageSize, children.size()));
+		position += page.size();
+		return page;
+	}
+}
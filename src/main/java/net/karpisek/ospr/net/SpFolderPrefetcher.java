@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Fetches folders in background with at most <code>parallelism</code> requests in flight.
+ *
+ * Waiting requests are dispatched in order of their position in depth first traversal
+ * (order is path of child indexes from root folder), so folders needed first by walker are fetched first
+ * and amount of already fetched but not yet visited folders stays small.
+ * 
+ * Providers able to answer folders asynchronously ({@link IAsyncSpObjectProvider}) are called directly from dispatching thread 
+ * and do not occupy executor thread while waiting for response.
+ */
+class SpFolderPrefetcher {
+	private static class Request implements Comparable<Request>{
+		final String folder;
+		final int[] order;
+		final CompletableFuture<SpFolder> result = new CompletableFuture<>();
+
+		Request(String folder, int[] order) {
+			this.folder = folder;
+			this.order = order;
+		}
+
+		@Override
+		public int compareTo(Request other) {
+			int length = Math.min(order.length, other.order.length);
+			for (int i = 0; i < length; i++) {
+				int c = Integer.compare(order[i], other.order[i]);
+				if(c != 0) {
+					return c;
+				}
+			}
+			return Integer.compare(order.length, other.order.length);
+		}
+	}
+
+	private final ISpObjectProvider objectProvider;
+	private final Executor executor;
+	private final int parallelism;
+	private final PriorityQueue<Request> waiting = new PriorityQueue<>();
+	private int inFlight;
+	private boolean cancelled;
+	//thread dispatching requests, nested dispatch from completion of already completed future only asks it to dispatch again
+	private boolean dispatching;
+	private boolean redispatch;
+
+	SpFolderPrefetcher(ISpObjectProvider objectProvider, Executor executor, int parallelism) {
+		Preconditions.checkArgument(parallelism > 0, "Illegal parallelism value, must be > 0 (is '%s')", parallelism);
+		this.objectProvider = objectProvider;
+		this.executor = executor;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Schedule fetch of folder.
+	 * @param folder server relative url of folder
+	 * @param order position of folder in depth first traversal
+	 * @return future completed with fetched folder
+	 */
+	CompletableFuture<SpFolder> fetch(String folder, int[] order) {
+		Request request = new Request(folder, order);
+		synchronized (this) {
+			if(cancelled) {
+				request.result.cancel(false);
+				return request.result;
+			}
+			waiting.add(request);
+		}
+		dispatch();
+		return request.result;
+	}
+
+	/**
+	 * Drop all waiting requests, requests already in flight are left to finish but their results are ignored.
+	 */
+	void cancel() {
+		synchronized (this) {
+			cancelled = true;
+			for (Request request : waiting) {
+				request.result.cancel(false);
+			}
+			waiting.clear();
+		}
+	}
+
+	private void dispatch() {
+		synchronized (this) {
+			if(dispatching) {
+				redispatch = true;
+				return;
+			}
+			dispatching = true;
+		}
+		while(true) {
+			Request request;
+			synchronized (this) {
+				if(inFlight >= parallelism || waiting.isEmpty()) {
+					if(!redispatch) {
+						dispatching = false;
+						return;
+					}
+					redispatch = false;
+					continue;
+				}
+				request = waiting.poll();
+				inFlight++;
+			}
+			if(objectProvider instanceof IAsyncSpObjectProvider) {
+				fetchAsync((IAsyncSpObjectProvider) objectProvider, request);
+				continue;
+			}
+			try {
+				executor.execute(() -> {
+					try {
+						request.result.complete(objectProvider.getFolder(request.folder));
+					} catch (Exception e) {
+						request.result.completeExceptionally(e);
+					} finally {
+						finished();
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				request.result.completeExceptionally(e);
+				finished();
+			}
+		}
+	}
+
+	private void fetchAsync(IAsyncSpObjectProvider asyncProvider, Request request) {
+		CompletableFuture<SpFolder> future;
+		try {
+			future = asyncProvider.getFolderAsync(request.folder);
+		} catch (RuntimeException e) {
+			future = new CompletableFuture<>();
+			future.completeExceptionally(e);
+		}
+		future.whenComplete((folder, failure) -> {
+			if(failure != null) {
+				request.result.completeExceptionally(failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure);
+			}
+			else {
+				request.result.complete(folder);
+			}
+			finished();
+		});
+	}
+
+	private void finished() {
+		synchronized (this) {
+			inFlight--;
+		}
+		dispatch();
+	}
+}
@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import java.io.IOException;
+
+import org.eclipse.jetty.http.HttpStatus;
+
+/**
+ * Sharepoint REST request answered with response status other than ok.
+ */
+public class SpHttpException extends IOException {
+	private static final long serialVersionUID = 1L;
+	
+	private final int status;
+	private final String retryAfter;
+
+	public SpHttpException(int status) {
+		this(status, null);
+	}
+	
+	/**
+	 * @param retryAfter value of Retry-After header of response, null if not present
+	 */
+	public SpHttpException(int status, String retryAfter) {
+		super(String.format("response status not ok, statusCode=%s", status));
+		this.status = status;
+		this.retryAfter = retryAfter;
+	}
+	
+	public int getStatus() {
+		return status;
+	}
+	
+	/**
+	 * @return value of Retry-After header of response, either delay in seconds or http date, null if not present
+	 */
+	public String getRetryAfter() {
+		return retryAfter;
+	}
+	
+	/**
+	 * @return true if request could be rejected because its authentication is not valid (anymore), 403 is answered also for missing permissions
+	 */
+	public boolean isAuthenticationFailure() {
+		return status == HttpStatus.UNAUTHORIZED_401 || status == HttpStatus.FORBIDDEN_403;
+	}
+	
+	/**
+	 * @return true if request was rejected because client is sending too many requests and should retry later
+	 */
+	public boolean isThrottled() {
+		return status == HttpStatus.TOO_MANY_REQUESTS_429 || status == HttpStatus.SERVICE_UNAVAILABLE_503;
+	}
+}
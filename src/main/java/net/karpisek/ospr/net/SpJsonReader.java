@@ -0,0 +1,257 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Pull reader of JSON responses, values are read one by one from underlying reader without building whole document in memory.
+ * 
+ * Reader does not validate separators between values, it is meant only for well formed responses of sharepoint REST API.
+ * All scalar values (strings, numbers and booleans) are answered as text.
+ */
+class SpJsonReader implements Closeable {
+	enum Token {
+		BEGIN_OBJECT,
+		END_OBJECT,
+		BEGIN_ARRAY,
+		END_ARRAY,
+		STRING,
+		NULL,
+		LITERAL,
+		END;
+	}
+	
+	private final Reader reader;
+	//next not consumed character, -2 if none was read ahead
+	private int next = -2;
+	
+	SpJsonReader(Reader reader) {
+		this.reader = new BufferedReader(reader);
+	}
+	
+	/**
+	 * @return type of next value, separators and whitespace before it are skipped
+	 */
+	Token peek() throws IOException {
+		int c = peekChar();
+		while(c == ',' || c == ':' || Character.isWhitespace(c)) {
+			next = -2;
+			c = peekChar();
+		}
+		switch (c) {
+		case -1:
+			return Token.END;
+		case '{':
+			return Token.BEGIN_OBJECT;
+		case '}':
+			return Token.END_OBJECT;
+		case '[':
+			return Token.BEGIN_ARRAY;
+		case ']':
+			return Token.END_ARRAY;
+		case '"':
+			return Token.STRING;
+		case 'n':
+			return Token.NULL;
+		default:
+			return Token.LITERAL;
+		}
+	}
+	
+	void beginObject() throws IOException {
+		expect(Token.BEGIN_OBJECT);
+	}
+	
+	void endObject() throws IOException {
+		expect(Token.END_OBJECT);
+	}
+	
+	void beginArray() throws IOException {
+		expect(Token.BEGIN_ARRAY);
+	}
+	
+	void endArray() throws IOException {
+		expect(Token.END_ARRAY);
+	}
+	
+	/**
+	 * @return true if current object or array has more members
+	 */
+	boolean hasNext() throws IOException {
+		Token token = peek();
+		return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END;
+	}
+	
+	String nextName() throws IOException {
+		if(peek() != Token.STRING) {
+			throw new IOException("Malformed JSON, expected name but found " + peek());
+		}
+		return nextString();
+	}
+	
+	/**
+	 * @return text of next scalar value, null for null value
+	 */
+	String nextString() throws IOException {
+		Token token = peek();
+		if(token == Token.STRING) {
+			next = -2;
+			return readString();
+		}
+		if(token == Token.NULL || token == Token.LITERAL) {
+			String literal = readLiteral();
+			return "null".equals(literal) ? null : literal;
+		}
+		throw new IOException("Malformed JSON, expected value but found " + token);
+	}
+	
+	/**
+	 * Skip next value including all nested values.
+	 */
+	void skipValue() throws IOException {
+		int depth = 0;
+		do {
+			Token token = peek();
+			switch (token) {
+			case BEGIN_OBJECT:
+			case BEGIN_ARRAY:
+				next = -2;
+				depth++;
+				break;
+			case END_OBJECT:
+			case END_ARRAY:
+				next = -2;
+				depth--;
+				break;
+			case END:
+				throw new IOException("Malformed JSON, unexpected end of content");
+			default:
+				nextString();
+			}
+		} while(depth > 0);
+	}
+	
+	/**
+	 * Read next object, its scalar values are answered by member name, nested objects and arrays are skipped and null values are not answered.
+	 */
+	Map<String, String> nextProperties() throws IOException {
+		Map<String, String> result = Maps.newHashMap();
+		beginObject();
+		while(hasNext()) {
+			String name = nextName();
+			Token token = peek();
+			if(token == Token.BEGIN_OBJECT || token == Token.BEGIN_ARRAY) {
+				skipValue();
+			}
+			else {
+				String value = nextString();
+				if(value != null) {
+					result.put(name, value);
+				}
+			}
+		}
+		endObject();
+		return result;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+	
+	private void expect(Token expected) throws IOException {
+		Token token = peek();
+		if(token != expected) {
+			throw new IOException("Malformed JSON, expected " + expected + " but found " + token);
+		}
+		next = -2;
+	}
+	
+	private int peekChar() throws IOException {
+		if(next == -2) {
+			next = reader.read();
+		}
+		return next;
+	}
+	
+	private int readChar() throws IOException {
+		int c = peekChar();
+		next = -2;
+		if(c == -1) {
+			throw new IOException("Malformed JSON, unexpected end of content");
+		}
+		return c;
+	}
+	
+	private String readLiteral() throws IOException {
+		StringBuilder result = new StringBuilder();
+		int c = peekChar();
+		while(c != -1 && c != ',' && c != '}' && c != ']' && c != ':' && !Character.isWhitespace(c)) {
+			result.append((char) c);
+			next = -2;
+			c = peekChar();
+		}
+		return result.toString();
+	}
+	
+	private String readString() throws IOException {
+		StringBuilder result = new StringBuilder();
+		while(true) {
+			int c = readChar();
+			if(c == '"') {
+				return result.toString();
+			}
+			if(c != '\\') {
+				result.append((char) c);
+				continue;
+			}
+			c = readChar();
+			switch (c) {
+			case 'b':
+				result.append('\b');
+				break;
+			case 'f':
+				result.append('\f');
+				break;
+			case 'n':
+				result.append('\n');
+				break;
+			case 'r':
+				result.append('\r');
+				break;
+			case 't':
+				result.append('\t');
+				break;
+			case 'u':
+				char[] hex = new char[4];
+				for (int i = 0; i < hex.length; i++) {
+					hex[i] = (char) readChar();
+				}
+				try {
+					result.append((char) Integer.parseInt(new String(hex), 16));
+				} catch (NumberFormatException e) {
+					throw new IOException("Malformed JSON, illegal unicode escape \\u" + new String(hex), e);
+				}
+				break;
+			default:
+				//quotation mark, reverse solidus and solidus
+				result.append((char) c);
+			}
+		}
+	}
+}
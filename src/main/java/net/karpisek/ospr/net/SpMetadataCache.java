@@ -0,0 +1,257 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Verify;
+import com.google.common.base.VerifyException;
+import com.google.common.collect.Lists;
+
+/**
+ * File properties kept on disk between runs, entry is valid while modification time and version of its file is unchanged.
+ * 
+ * Folder listings are not cached, modification time of folder does not change when files under it are modified.
+ * 
+ * Store is append only log of records encoded by {@link SpObjectCodec}, file properties record is one line. 
+ * Only position of latest record of each file is kept in memory, records are read from disk when asked. Replaced records 
+ * are dropped by rewriting the log when it is opened and they take more space than valid records. Incomplete last record 
+ * of interrupted run is dropped.
+ * 
+ * Instances are thread safe.
+ */
+public class SpMetadataCache implements Closeable {
+	private static final Logger LOG = LoggerFactory.getLogger(SpMetadataCache.class);
+	
+	private static final String HEADER = "ospr-cache";
+	private static final String VERSION = "1";
+	private static final String PROPERTIES = "P";
+	
+	/**
+	 * Position of record in log.
+	 */
+	private static class Entry {
+		final String validator;
+		final long offset;
+		final int length;
+		
+		Entry(String validator, long offset, int length) {
+			this.validator = validator;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+	
+	/**
+	 * Open existing cache or create new empty one.
+	 */
+	public static SpMetadataCache open(Path path) throws IOException {
+		Map<String, Entry> properties = new HashMap<>();
+		long end = 0;
+		long garbage = 0;
+		if(Files.exists(path) && Files.size(path) > 0) {
+			try(InputStream input = new BufferedInputStream(Files.newInputStream(path))){
+				ByteArrayOutputStream line = new ByteArrayOutputStream();
+				end = readLine(input, line);
+				List<String> header = end < 0 ? null : split(line);
+				Verify.verify(header != null && header.size() == 2 && HEADER.equals(header.get(0)) && VERSION.equals(header.get(1)), "cache %s has unknown format", path);
+				while(true) {
+					long offset = end;
+					int length = readLine(input, line);
+					if(length < 0) {
+						break;
+					}
+					List<String> fields = split(line);
+					if(PROPERTIES.equals(fields.get(0)) && fields.size() == 3 + SpObjectCodec.PROPERTIES_FIELDS) {
+						Entry previous = properties.put(fields.get(1), new Entry(fields.get(2), offset, length));
+						garbage += previous == null ? 0 : previous.length;
+					}
+					else {
+						throw new VerifyException(String.format("cache %s contains unknown record '%s'", path, line.toString(StandardCharsets.UTF_8.name())));
+					}
+					end += length;
+				}
+			}
+		}
+		
+		SpMetadataCache cache;
+		if(end <= 0) {
+			cache = new SpMetadataCache(path, FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), properties, 0);
+			cache.append(null, Lists.newArrayList(SpObjectCodec.join(Lists.newArrayList(HEADER, VERSION))));
+		}
+		else {
+			FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			if(channel.size() > end) {
+				LOG.info("cache {} incomplete record dropped, bytes={}", path, channel.size() - end);
+				channel.truncate(end);
+			}
+			cache = new SpMetadataCache(path, channel, properties, end);
+			if(garbage > end - garbage) {
+				cache.compact();
+			}
+		}
+		LOG.info("cacheOpened path={} properties={} bytes={}", path, properties.size(), cache.end);
+		return cache;
+	}
+	
+	/**
+	 * Read line including its line terminator.
+	 * @return length of line in bytes, -1 if there is no complete line left
+	 */
+	private static int readLine(InputStream input, ByteArrayOutputStream line) throws IOException {
+		line.reset();
+		int length = 0;
+		for(int b = input.read(); b >= 0; b = input.read()) {
+			length++;
+			if(b == '\n') {
+				return length;
+			}
+			line.write(b);
+		}
+		return -1;
+	}
+	
+	private static List<String> split(ByteArrayOutputStream line) throws IOException {
+		return SpObjectCodec.split(line.toString(StandardCharsets.UTF_8.name()));
+	}
+	
+	private static String validator(SpFile file) {
+		return file.getTimeLastModified() + "/" + file.getVersion();
+	}
+	
+	private final Path path;
+	private FileChannel channel;
+	private final Map<String, Entry> properties;
+	private long end;
+	
+	private SpMetadataCache(Path path, FileChannel channel, Map<String, Entry> properties, long end) {
+		this.path = path;
+		this.channel = channel;
+		this.properties = properties;
+		this.end = end;
+	}
+	
+	/**
+	 * @param file as known from fresh listing of its folder
+	 * @return cached properties, null if not cached or file was modified since cached
+	 */
+	public synchronized SpFileProperties getProperties(SpFile file) throws IOException {
+		Entry entry = properties.get(file.getServerRelativeUrl());
+		if(entry == null || !entry.validator.equals(validator(file))) {
+			return null;
+		}
+		List<String> fields = SpObjectCodec.split(read(entry).get(0));
+		return SpObjectCodec.decodeProperties(fields.subList(3, fields.size()));
+	}
+	
+	public synchronized void putProperties(SpFile file, SpFileProperties fileProperties) throws IOException {
+		List<String> fields = Lists.newArrayList(PROPERTIES, file.getServerRelativeUrl(), validator(file));
+		fields.addAll(SpObjectCodec.encode(fileProperties));
+		properties.put(file.getServerRelativeUrl(), append(validator(file), Lists.newArrayList(SpObjectCodec.join(fields))));
+	}
+	
+	/**
+	 * @return count of files with cached properties
+	 */
+	public synchronized int getPropertiesCount() {
+		return properties.size();
+	}
+	
+	private List<String> read(Entry entry) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(entry.length);
+		while(buffer.hasRemaining()) {
+			if(channel.read(buffer, entry.offset + buffer.position()) < 0) {
+				throw new IOException(String.format("cache %s is shorter than expected", path));
+			}
+		}
+		String text = new String(buffer.array(), StandardCharsets.UTF_8);
+		//records always end by line terminator
+		return Lists.newArrayList(text.substring(0, text.length() - 1).split("\n", -1));
+	}
+	
+	/**
+	 * @param lines of one record, without line terminators
+	 */
+	private Entry append(String validator, List<String> lines) throws IOException {
+		StringBuilder record = new StringBuilder();
+		for (String line : lines) {
+			record.append(line).append('\n');
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(record.toString().getBytes(StandardCharsets.UTF_8));
+		Entry entry = new Entry(validator, end, buffer.remaining());
+		while(buffer.hasRemaining()) {
+			channel.write(buffer, end + buffer.position());
+		}
+		end += entry.length;
+		return entry;
+	}
+	
+	/**
+	 * Rewrite log with latest records only, replaced records are dropped.
+	 */
+	private void compact() throws IOException {
+		long before = end;
+		Path temporary = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+		try {
+			try(FileChannel target = FileChannel.open(temporary, StandardOpenOption.WRITE)){
+				long position = 0;
+				ByteBuffer header = ByteBuffer.wrap((SpObjectCodec.join(Lists.newArrayList(HEADER, VERSION)) + "\n").getBytes(StandardCharsets.UTF_8));
+				while(header.hasRemaining()) {
+					position += target.write(header, position);
+				}
+				for (Map.Entry<String, Entry> each : properties.entrySet()) {
+					Entry entry = each.getValue();
+					long copied = 0;
+					while(copied < entry.length) {
+						copied += channel.transferTo(entry.offset + copied, entry.length - copied, target.position(position + copied));
+					}
+					each.setValue(new Entry(entry.validator, position, entry.length));
+					position += entry.length;
+				}
+				end = position;
+			}
+			channel.close();
+			try {
+				Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+			channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		}
+		finally {
+			Files.deleteIfExists(temporary);
+		}
+		LOG.info("cacheCompacted path={} bytesBefore={} bytesAfter={}", path, before, end);
+	}
+	
+	@Override
+	public synchronized void close() throws IOException {
+		channel.close();
+	}
+}
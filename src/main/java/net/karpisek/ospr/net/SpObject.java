@@ -18,12 +18,21 @@ public abstract class SpObject {
 	protected final String serverRelativeUrl;
 	protected final Instant timeLastModified;
 	protected final Instant timeCreated;
+	protected final String uniqueId;
 
 	public SpObject(String name, String serverRelativeUrl, Instant timeLastModified, Instant timeCreated) {
+		this(name, serverRelativeUrl, timeLastModified, timeCreated, null);
+	}
+	
+	/**
+	 * @param uniqueId of list item of object, null if not known
+	 */
+	public SpObject(String name, String serverRelativeUrl, Instant timeLastModified, Instant timeCreated, String uniqueId) {
 		this.name=name;
 		this.serverRelativeUrl=serverRelativeUrl;
 		this.timeLastModified=timeLastModified;
 		this.timeCreated=timeCreated;
+		this.uniqueId=uniqueId;
 	}
 
 	public String getName() {
@@ -42,6 +51,13 @@ public abstract class SpObject {
 		return timeCreated;
 	}
 	
+	/**
+	 * @return unique id of list item of object, identifies object also in changes of deleted items which do not contain its url, null if not known
+	 */
+	public String getUniqueId() {
+		return uniqueId;
+	}
+	
 	public boolean isFile() {
 		return false;
 	}
@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Encodes sharepoint objects as lines of tab separated text fields, so they can be stored and read back without fetching them again.
+ * 
+ * Tabs, line breaks and backslashes in values are escaped by backslash, so each encoded object is exactly one line.
+ */
+public class SpObjectCodec {
+	private static final char SEPARATOR = '\t';
+	private static final char ESCAPE = '\\';
+	
+	/**
+	 * Count of fields of encoded file.
+	 */
+	public static final int FILE_FIELDS = 6;
+	
+	/**
+	 * Count of fields of encoded file properties.
+	 */
+	public static final int PROPERTIES_FIELDS = SpFileProperties.CoreProperty.values().length;
+	
+	/**
+	 * Count of fields of encoded folder, without its children.
+	 */
+	public static final int FOLDER_FIELDS = 5;
+	
+	public static List<String> encode(SpFile file) {
+		return Lists.newArrayList(
+				file.getName(), 
+				file.getServerRelativeUrl(), 
+				file.getTimeLastModified().toString(), 
+				file.getTimeCreated().toString(), 
+				Long.toString(file.getLength()), 
+				file.getVersion().toString()
+				);
+	}
+	
+	public static SpFile decodeFile(List<String> fields) {
+		return decodeFile(fields, null);
+	}
+	
+	/**
+	 * @param uniqueId of file kept separately from its fields, null if not known
+	 */
+	public static SpFile decodeFile(List<String> fields, String uniqueId) {
+		Preconditions.checkArgument(fields.size() == FILE_FIELDS, "Illegal count of file fields, must be %s (is '%s')", FILE_FIELDS, fields.size());
+		String version = fields.get(5);
+		int dot = version.indexOf('.');
+		Preconditions.checkArgument(dot > 0, "Illegal version value, must be in format major.minor (is '%s')", version);
+		return new SpFile(
+				fields.get(0), 
+				fields.get(1), 
+				Instant.parse(fields.get(2)), 
+				Instant.parse(fields.get(3)), 
+				Long.parseLong(fields.get(4)), 
+				SpVersion.fromString(version.substring(0, dot), version.substring(dot + 1)),
+				uniqueId
+				);
+	}
+	
+	/**
+	 * @return fields of folder, its children are not encoded
+	 */
+	public static List<String> encode(SpFolder folder) {
+		return Lists.newArrayList(
+				folder.getName(), 
+				folder.getServerRelativeUrl(), 
+				folder.getTimeLastModified().toString(), 
+				folder.getTimeCreated().toString(), 
+				Integer.toString(folder.getItemCount())
+				);
+	}
+	
+	public static SpFolder decodeFolder(List<String> fields, List<? extends SpObject> children) {
+		return decodeFolder(fields, children, null);
+	}
+	
+	/**
+	 * @param uniqueId of folder kept separately from its fields, null if not known
+	 */
+	public static SpFolder decodeFolder(List<String> fields, List<? extends SpObject> children, String uniqueId) {
+		Preconditions.checkArgument(fields.size() == FOLDER_FIELDS, "Illegal count of folder fields, must be %s (is '%s')", FOLDER_FIELDS, fields.size());
+		return new SpFolder(
+				fields.get(0), 
+				fields.get(1), 
+				Instant.parse(fields.get(2)), 
+				Instant.parse(fields.get(3)), 
+				Integer.parseInt(fields.get(4)), 
+				children,
+				uniqueId
+				);
+	}
+	
+	public static List<String> encode(SpFileProperties properties) {
+		List<String> result = Lists.newArrayListWithCapacity(PROPERTIES_FIELDS);
+		for (SpFileProperties.CoreProperty property : SpFileProperties.CoreProperty.values()) {
+			result.add(properties.getValue(property, ""));
+		}
+		return result;
+	}
+	
+	public static SpFileProperties decodeProperties(List<String> fields) {
+		Preconditions.checkArgument(fields.size() == PROPERTIES_FIELDS, "Illegal count of properties fields, must be %s (is '%s')", PROPERTIES_FIELDS, fields.size());
+		EnumMap<SpFileProperties.CoreProperty, String> values = Maps.newEnumMap(SpFileProperties.CoreProperty.class);
+		for (SpFileProperties.CoreProperty property : SpFileProperties.CoreProperty.values()) {
+			values.put(property, fields.get(property.ordinal()));
+		}
+		return new SpFileProperties(values);
+	}
+	
+	/**
+	 * @return fields joined into one line, without line terminator
+	 */
+	public static String join(List<String> fields) {
+		StringBuilder result = new StringBuilder();
+		for (String field : fields) {
+			if(result.length() > 0) {
+				result.append(SEPARATOR);
+			}
+			for (int i = 0; i < field.length(); i++) {
+				char c = field.charAt(i);
+				switch (c) {
+				case SEPARATOR:
+					result.append(ESCAPE).append('t');
+					break;
+				case '\n':
+					result.append(ESCAPE).append('n');
+					break;
+				case '\r':
+					result.append(ESCAPE).append('r');
+					break;
+				case ESCAPE:
+					result.append(ESCAPE).append(ESCAPE);
+					break;
+				default:
+					result.append(c);
+				}
+			}
+		}
+		return result.toString();
+	}
+	
+	/**
+	 * @return fields of line created by {@link #join(List)}
+	 */
+	public static List<String> split(String line) {
+		List<String> result = Lists.newArrayList();
+		StringBuilder field = new StringBuilder();
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if(c == SEPARATOR) {
+				result.add(field.toString());
+				field.setLength(0);
+			}
+			else if(c == ESCAPE) {
+				Preconditions.checkArgument(i + 1 < line.length(), "Illegal escape at end of line '%s'", line);
+				char escaped = line.charAt(++i);
+				switch (escaped) {
+				case 't':
+					field.append(SEPARATOR);
+					break;
+				case 'n':
+					field.append('\n');
+					break;
+				case 'r':
+					field.append('\r');
+					break;
+				case ESCAPE:
+					field.append(ESCAPE);
+					break;
+				default:
+					throw new IllegalArgumentException(String.format("Illegal escape '%s' in line '%s'", escaped, line));
+				}
+			}
+			else {
+				field.append(c);
+			}
+		}
+		result.add(field.toString());
+		return result;
+	}
+}
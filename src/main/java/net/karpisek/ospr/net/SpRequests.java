@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.client.util.BufferingResponseListener;
+import org.eclipse.jetty.client.util.InputStreamResponseListener;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import org.jdom2.JDOMException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Strings;
+import com.google.common.base.Verify;
+import com.google.common.io.Closeables;
+
+/**
+ * Support for sending sharepoint REST requests asynchronously or with response content parsed while being received.
+ */
+class SpRequests {
+	private static final Logger LOG = LoggerFactory.getLogger(SpRequests.class);
+	
+	/**
+	 * Maximal size of response content buffered for asynchronous request.
+	 */
+	static final int MAX_CONTENT_LENGTH = 256 * 1024 * 1024;
+	
+	interface IContentParser<T> {
+		T parse(String content) throws JDOMException, IOException;
+	}
+	
+	interface IStreamParser<T> {
+		T parse(InputStream stream) throws JDOMException, IOException;
+	}
+	
+	/**
+	 * @throws SpHttpException if status of response is not ok
+	 */
+	static void verifyStatus(Response response) throws SpHttpException {
+		if(response.getStatus() != HttpStatus.OK_200) {
+			throw new SpHttpException(response.getStatus(), response.getHeaders().get(HttpHeader.RETRY_AFTER));
+		}
+	}
+	
+	/**
+	 * Send request and parse content of successful response directly from stream, while it is being received.
+	 */
+	static <T> T send(Request request, IStreamParser<T> parser) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		InputStreamResponseListener listener = new InputStreamResponseListener();
+		request.send(listener);
+		//same as blocking send of request, wait for response as long as request timeout allows
+		Response response = listener.get(request.getTimeout() > 0 ? request.getTimeout() : Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		try (InputStream stream = listener.getInputStream()){
+			LOG.debug("statusCode={}", response.getStatus());
+			verifyStatus(response);
+			return parser.parse(stream);
+		}
+	}
+	
+	/**
+	 * Send request without blocking calling thread, content of successful response is parsed directly from stream 
+	 * while it is being received. Parsing blocks until content arrives, so it runs on thread of given executor instead of http client thread.
+	 */
+	static <T> CompletableFuture<T> sendAsync(Request request, IStreamParser<T> parser, Executor executor) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		request.send(new InputStreamResponseListener() {
+			@Override
+			public void onHeaders(Response response) {
+				super.onHeaders(response);
+				try {
+					executor.execute(() -> {
+						InputStream stream = getInputStream();
+						try {
+							LOG.debug("statusCode={}", response.getStatus());
+							verifyStatus(response);
+							future.complete(parser.parse(stream));
+						} catch (Exception e) {
+							future.completeExceptionally(e);
+						} finally {
+							//closing unread stream aborts response, so future is completed before
+							Closeables.closeQuietly(stream);
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					response.abort(e);
+					future.completeExceptionally(e);
+				}
+			}
+			
+			@Override
+			public void onComplete(Result result) {
+				super.onComplete(result);
+				if(result.isFailed()) {
+					//request failed before parsing started or while content was being read
+					future.completeExceptionally(result.getFailure());
+				}
+			}
+		});
+		return future;
+	}
+	
+	/**
+	 * Send request without blocking calling thread, content of successful response is buffered and parsed on http client thread.
+	 * Used for responses known to be small.
+	 */
+	static <T> CompletableFuture<T> sendAsync(Request request, IContentParser<T> parser) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		request.send(new BufferingResponseListener(MAX_CONTENT_LENGTH) {
+			@Override
+			public void onComplete(Result result) {
+				if(result.isFailed()) {
+					future.completeExceptionally(result.getFailure());
+					return;
+				}
+				try {
+					LOG.debug("statusCode={}", result.getResponse().getStatus());
+					verifyStatus(result.getResponse());
+					
+					String content = getContentAsString();
+					Verify.verify(Strings.emptyToNull(content) != null, "response content does not contain data");
+					
+					future.complete(parser.parse(content));
+				} catch (Exception e) {
+					future.completeExceptionally(e);
+				}
+			}
+		});
+		return future;
+	}
+}
@@ -0,0 +1,35 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+/**
+ * Format of sharepoint REST responses requested by Accept header.
+ */
+public enum SpResponseFormat {
+	/**
+	 * OData Atom XML, default format of sharepoint REST API.
+	 */
+	ATOM("application/atom+xml"),
+	/**
+	 * OData JSON without metadata, several times smaller than Atom.
+	 */
+	JSON("application/json;odata=nometadata");
+	
+	private final String mediaType;
+	
+	private SpResponseFormat(String mediaType) {
+		this.mediaType = mediaType;
+	}
+	
+	public String getMediaType() {
+		return mediaType;
+	}
+}
@@ -0,0 +1,356 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import org.eclipse.jetty.http.HttpStatus;
+import org.jdom2.JDOMException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Strings;
+import com.google.common.base.Verify;
+import com.google.common.base.VerifyException;
+import com.google.common.collect.Lists;
+
+/**
+ * Folder tree walked by previous run together with change token of document library taken before it was walked,
+ * so following run can fetch only folders changed since then.
+ * 
+ * Each folder of tree is kept with its direct children, same as answered by {@link ISpObjectProvider#getFolder(String)}.
+ * Tree is kept in compact {@link SpFileTree}, folders are created when asked.
+ * Changes are applied by fetching again parent folders of changed items, new subfolders are walked completely 
+ * and subfolders not present anymore are removed together with their subtrees.
+ * Unique ids of folders and files are kept too, changes of deleted items contain only unique id and url of item is found by it.
+ */
+public class SpSnapshot {
+	private static final Logger LOG = LoggerFactory.getLogger(SpSnapshot.class);
+	
+	private static final String HEADER = "ospr-snapshot";
+	private static final String VERSION = "2";
+	private static final String FOLDER = "D";
+	private static final String CHILD_FOLDER = "d";
+	private static final String CHILD_FILE = "f";
+	
+	/**
+	 * Changes which can modify folder tree, other changes are ignored.
+	 */
+	private static final Set<SpChange.Type> TREE_CHANGES = EnumSet.of(
+			SpChange.Type.ADD, 
+			SpChange.Type.UPDATE, 
+			SpChange.Type.DELETE_OBJECT, 
+			SpChange.Type.RENAME, 
+			SpChange.Type.MOVE_AWAY, 
+			SpChange.Type.MOVE_INTO, 
+			SpChange.Type.RESTORE, 
+			SpChange.Type.SYSTEM_UPDATE
+			);
+	
+	/**
+	 * Walk whole folder tree.
+	 * @param changeToken of document library taken before walk was started
+	 */
+	public static SpSnapshot walk(ISpObjectProvider objectProvider, String folder, int maxDepth, String changeToken) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		SpFileTree folders = new SpFileTree();
+		SpFiles.walkFileTree(objectProvider, folder, 0, maxDepth, collector(folders, folder));
+		return new SpSnapshot(folder, maxDepth, changeToken, folders);
+	}
+	
+	/**
+	 * Same as {@link #walk(ISpObjectProvider, String, int, String)} but fetching subfolders in background, 
+	 * see {@link SpFiles#walkFileTree(ISpObjectProvider, String, int, int, ISpFileVisitor, Executor, int)}.
+	 */
+	public static SpSnapshot walk(ISpObjectProvider objectProvider, String folder, int maxDepth, String changeToken, Executor executor, int parallelism) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		SpFileTree folders = new SpFileTree();
+		SpFiles.walkFileTree(objectProvider, folder, 0, maxDepth, collector(folders, folder), executor, parallelism);
+		return new SpSnapshot(folder, maxDepth, changeToken, folders);
+	}
+	
+	/**
+	 * @return visitor collecting visited folders, first visited folder is kept under given url
+	 */
+	private static ISpFileVisitor collector(SpFileTree folders, String url) {
+		return new ISpFileVisitor() {
+			private boolean first = true;
+			
+			@Override
+			public void preVisitFolder(SpFolder folder) throws IOException {
+				folders.put(first ? url : folder.getServerRelativeUrl(), folder);
+				first = false;
+			}
+			
+			@Override
+			public void visitFile(SpFile file) throws IOException {
+				//nothing to do
+			}
+			
+			@Override
+			public void postVisitFolder(SpFolder folder) throws IOException {
+				//nothing to do
+			}
+		};
+	}
+	
+	public static SpSnapshot load(Path path) throws IOException {
+		try(BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)){
+			List<String> header = SpObjectCodec.split(Strings.nullToEmpty(reader.readLine()));
+			Verify.verify(header.size() == 5 && HEADER.equals(header.get(0)) && VERSION.equals(header.get(1)), "snapshot %s has unknown format", path);
+			
+			SpFileTree folders = new SpFileTree();
+			List<String> folder = null;
+			List<SpObject> children = Lists.newArrayList();
+			for(String line = reader.readLine(); line != null; line = reader.readLine()) {
+				List<String> fields = SpObjectCodec.split(line);
+				//unique id is the last field of each record
+				List<String> values = fields.subList(1, fields.size() - 1);
+				String uniqueId = Strings.emptyToNull(fields.get(fields.size() - 1));
+				if(FOLDER.equals(fields.get(0))) {
+					if(folder != null) {
+						folders.put(folder.get(2), decodeFolder(folder, children));
+					}
+					folder = fields;
+					children = Lists.newArrayList();
+				}
+				else if(CHILD_FOLDER.equals(fields.get(0)) && folder != null) {
+					children.add(SpObjectCodec.decodeFolder(values, Lists.newArrayList(), uniqueId));
+				}
+				else if(CHILD_FILE.equals(fields.get(0)) && folder != null) {
+					children.add(SpObjectCodec.decodeFile(values, uniqueId));
+				}
+				else {
+					throw new VerifyException(String.format("snapshot %s contains unknown record '%s'", path, line));
+				}
+			}
+			if(folder != null) {
+				folders.put(folder.get(2), decodeFolder(folder, children));
+			}
+			return new SpSnapshot(header.get(2), Integer.parseInt(header.get(3)), header.get(4), folders);
+		}
+	}
+	
+	private static SpFolder decodeFolder(List<String> fields, List<SpObject> children) {
+		return SpObjectCodec.decodeFolder(fields.subList(1, fields.size() - 1), children, Strings.emptyToNull(fields.get(fields.size() - 1)));
+	}
+	
+	private final String folder;
+	private final int maxDepth;
+	private final String changeToken;
+	private final SpFileTree folders;
+	
+	private SpSnapshot(String folder, int maxDepth, String changeToken, SpFileTree folders) {
+		this.folder = folder;
+		this.maxDepth = maxDepth;
+		this.changeToken = changeToken;
+		this.folders = folders;
+	}
+	
+	/**
+	 * @return url of root folder of snapshot
+	 */
+	public String getFolder() {
+		return folder;
+	}
+	
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+	
+	/**
+	 * @return change token of document library taken before snapshot was walked or updated
+	 */
+	public String getChangeToken() {
+		return changeToken;
+	}
+	
+	/**
+	 * @return folder of snapshot with its direct children, null if it is not part of snapshot
+	 */
+	public SpFolder getFolder(String serverRelativeUrl) {
+		return folders.get(serverRelativeUrl);
+	}
+	
+	/**
+	 * @return count of folders in snapshot
+	 */
+	public int size() {
+		return folders.size();
+	}
+	
+	/**
+	 * @return true if snapshot was walked from given folder with given maximal depth
+	 */
+	public boolean isFor(String folder, int maxDepth) {
+		return this.folder.equals(folder) && this.maxDepth == maxDepth;
+	}
+	
+	/**
+	 * Apply changes of document library to folder tree, parent folders of changed items are fetched again.
+	 * Url of item in snapshot is found by its unique id: deleted items are found by it and old parent folders of moved or 
+	 * renamed items are fetched again too, changes of unknown deleted items are ignored. 
+	 * Whole tree is walked again if some change does not contain either url or unique id of changed item.
+	 * @param changes made after change token of this snapshot
+	 * @param changeToken of document library taken before changes were requested
+	 * @return updated snapshot, this snapshot is not modified
+	 */
+	public SpSnapshot update(ISpObjectProvider objectProvider, List<SpChange> changes, String changeToken) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		SpFileTree updated = folders.copy();
+		//sorted so parent folders are fetched before their subfolders
+		Set<String> changed = new TreeSet<>();
+		//urls of items in snapshot by their unique ids, created only when some change contains unique id
+		Map<UUID, String> urls = null;
+		for (SpChange change : changes) {
+			if(!TREE_CHANGES.contains(change.getType())) {
+				continue;
+			}
+			String url = change.getServerRelativeUrl();
+			String previousUrl = null;
+			if(change.getUniqueId() != null) {
+				if(urls == null) {
+					urls = folders.urlsByUniqueId();
+				}
+				previousUrl = urls.get(UUID.fromString(change.getUniqueId()));
+				if(url == null && previousUrl == null) {
+					//item not in snapshot (e.g. added and deleted since previous run or under maximal depth)
+					LOG.debug("change of unknown item {}", change);
+					continue;
+				}
+			}
+			if(url == null) {
+				url = previousUrl;
+			}
+			else if(previousUrl != null && !previousUrl.equals(url)) {
+				//item moved or renamed, it is not in its previous folder anymore
+				if(updated.contains(previousUrl)) {
+					updated.remove(previousUrl);
+				}
+				changed.add(previousUrl.substring(0, previousUrl.lastIndexOf('/')));
+			}
+			if(url == null) {
+				LOG.info("change without url {}, walking whole tree", change);
+				return walk(objectProvider, folder, maxDepth, changeToken);
+			}
+			if(url.equals(folder)) {
+				changed.add(url);
+			}
+			else if(url.startsWith(folder + "/")) {
+				if((change.isFolder() || updated.contains(url)) && change.getType() != SpChange.Type.ADD && change.getType() != SpChange.Type.UPDATE) {
+					//folder moved away or deleted, its children are not known anymore
+					updated.remove(url);
+				}
+				changed.add(url.substring(0, url.lastIndexOf('/')));
+			}
+		}
+		for (String each : changed) {
+			//folders removed, under new subfolders or over maximal depth are not fetched
+			if(updated.contains(each)) {
+				refresh(objectProvider, updated, each);
+			}
+		}
+		LOG.info("snapshotUpdated changes={} changedFolders={} folders={}", changes.size(), changed.size(), updated.size());
+		return new SpSnapshot(folder, maxDepth, changeToken, updated);
+	}
+	
+	private void refresh(ISpObjectProvider objectProvider, SpFileTree folders, String url) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		SpFolder current;
+		try {
+			current = objectProvider.getFolder(url);
+		} catch (SpHttpException e) {
+			if(e.getStatus() != HttpStatus.NOT_FOUND_404) {
+				throw e;
+			}
+			folders.remove(url);
+			return;
+		}
+		SpFolder previous = folders.get(url);
+		folders.put(url, current);
+		
+		Set<String> removed = previous.getChildren(SpObject::isFolder).map(SpObject::getServerRelativeUrl).collect(Collectors.toSet());
+		int depth = depth(url);
+		for (SpObject child : current.getChildren(SpObject::isFolder).collect(Collectors.toList())) {
+			String childUrl = child.getServerRelativeUrl();
+			removed.remove(childUrl);
+			if(!folders.contains(childUrl)) {
+				SpFiles.walkFileTree(objectProvider, childUrl, depth + 1, maxDepth, collector(folders, childUrl));
+			}
+		}
+		for (String each : removed) {
+			folders.remove(each);
+		}
+	}
+	
+	/**
+	 * @return depth of folder relative to root folder of snapshot
+	 */
+	private int depth(String url) {
+		return (int) url.substring(folder.length()).chars().filter(c -> c == '/').count();
+	}
+	
+	/**
+	 * Write snapshot into file, existing file is replaced only when whole snapshot is written.
+	 */
+	public void store(Path path) throws IOException {
+		Path directory = path.toAbsolutePath().getParent();
+		Files.createDirectories(directory);
+		Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+		try {
+			try(BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)){
+				writeLine(writer, Lists.newArrayList(HEADER, VERSION, folder, Integer.toString(maxDepth), changeToken));
+				for (String url : folders.urls()) {
+					SpFolder each = folders.get(url);
+					List<String> fields = Lists.newArrayList(FOLDER);
+					fields.addAll(SpObjectCodec.encode(each));
+					//root folder is kept under requested url
+					fields.set(2, url);
+					fields.add(Strings.nullToEmpty(each.getUniqueId()));
+					writeLine(writer, fields);
+					for (SpObject child : each.getChildren()) {
+						List<String> childFields = Lists.newArrayList(child.isFolder() ? CHILD_FOLDER : CHILD_FILE);
+						childFields.addAll(child.isFolder() ? SpObjectCodec.encode((SpFolder) child) : SpObjectCodec.encode((SpFile) child));
+						childFields.add(Strings.nullToEmpty(child.getUniqueId()));
+						writeLine(writer, childFields);
+					}
+				}
+			}
+			try {
+				Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		finally {
+			Files.deleteIfExists(temporary);
+		}
+		LOG.debug("snapshot stored path={} folders={}", path, folders.size());
+	}
+	
+	private static void writeLine(BufferedWriter writer, List<String> fields) throws IOException {
+		writer.write(SpObjectCodec.join(fields));
+		writer.write('\n');
+	}
+}
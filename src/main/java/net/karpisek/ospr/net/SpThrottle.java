@@ -0,0 +1,297 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.jdom2.JDOMException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ * Retries requests throttled by sharepoint (429/503) and adapts amount of requests sent at the same time to observed throttling.
+ * 
+ * Throttled request is repeated after delay given by its Retry-After header, or after exponential backoff if header is missing.
+ * Limit of requests sent at the same time is adapted AIMD-style: each successful request increases it by 1/limit 
+ * (by one per round of requests), throttled request halves it, at most once per round of requests sent with the same limit.
+ * Requests over the limit wait for free slot, asynchronous requests do not hold any thread while waiting.
+ */
+public class SpThrottle {
+	private static final Logger LOG = LoggerFactory.getLogger(SpThrottle.class);
+	
+	public static final int DEFAULT_MAX_RETRIES = 10;
+	public static final Duration DEFAULT_BASE_DELAY = Duration.ofSeconds(1);
+	public static final Duration DEFAULT_MAX_DELAY = Duration.ofMinutes(5);
+	
+	/**
+	 * Request which may be rejected by throttling.
+	 */
+	interface IRequest<T> {
+		T execute() throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException;
+	}
+	
+	private final Supplier<Scheduler> scheduler;
+	private final int maxConcurrency;
+	private final int maxRetries;
+	private final Duration baseDelay;
+	private final Duration maxDelay;
+	private final Clock clock;
+	
+	private final Object lock = new Object();
+	private final ArrayDeque<CompletableFuture<Long>> waiting = new ArrayDeque<>();
+	private double limit;
+	private int inFlight;
+	private long epoch;
+	
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder throttled = new LongAdder();
+	private final LongAdder retries = new LongAdder();
+	private final LongAdder backoffMillis = new LongAdder();
+	
+	/**
+	 * @param httpClient which scheduler is used to delay retries of asynchronous requests
+	 * @param maxConcurrency maximal amount of requests sent at the same time
+	 */
+	public SpThrottle(HttpClient httpClient, int maxConcurrency) {
+		this(httpClient::getScheduler, maxConcurrency, DEFAULT_MAX_RETRIES, DEFAULT_BASE_DELAY, DEFAULT_MAX_DELAY, Clock.systemUTC());
+	}
+	
+	SpThrottle(Supplier<Scheduler> scheduler, int maxConcurrency, int maxRetries, Duration baseDelay, Duration maxDelay, Clock clock) {
+		Preconditions.checkArgument(maxConcurrency > 0, "Illegal concurrency value, must be > 0 (is '%s')", maxConcurrency);
+		Preconditions.checkArgument(maxRetries >= 0, "Illegal retries value, must be >= 0 (is '%s')", maxRetries);
+		this.scheduler = scheduler;
+		this.maxConcurrency = maxConcurrency;
+		this.maxRetries = maxRetries;
+		this.baseDelay = baseDelay;
+		this.maxDelay = maxDelay;
+		this.clock = clock;
+		this.limit = maxConcurrency;
+	}
+	
+	/**
+	 * Execute request, throttled request is repeated after delay on calling thread.
+	 */
+	<T> T execute(IRequest<T> request) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		for(int attempt = 0;; attempt++) {
+			long permit = acquire().get();
+			try {
+				T result = request.execute();
+				release(permit, true);
+				return result;
+			}
+			catch(SpHttpException e) {
+				if(!e.isThrottled()) {
+					release(permit, false);
+					throw e;
+				}
+				Duration delay = onThrottled(permit, e, attempt);
+				if(delay == null) {
+					throw e;
+				}
+				Thread.sleep(delay.toMillis());
+			}
+			catch(Throwable e) {
+				release(permit, false);
+				throw e;
+			}
+		}
+	}
+	
+	/**
+	 * Same as {@link #execute(IRequest)} but without blocking calling thread, retries are scheduled using scheduler of http client.
+	 */
+	<T> CompletableFuture<T> executeAsync(Supplier<CompletableFuture<T>> request) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		executeAsync(request, 0, result);
+		return result;
+	}
+	
+	private <T> void executeAsync(Supplier<CompletableFuture<T>> request, int attempt, CompletableFuture<T> result) {
+		acquire().thenAccept(permit -> {
+			CompletableFuture<T> response;
+			try {
+				response = request.get();
+			} catch (RuntimeException e) {
+				release(permit, false);
+				result.completeExceptionally(e);
+				return;
+			}
+			response.whenComplete((value, e) -> {
+				if(e == null) {
+					release(permit, true);
+					result.complete(value);
+					return;
+				}
+				Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+				if(!(cause instanceof SpHttpException) || !((SpHttpException) cause).isThrottled()) {
+					release(permit, false);
+					result.completeExceptionally(cause);
+					return;
+				}
+				Duration delay = onThrottled(permit, (SpHttpException) cause, attempt);
+				if(delay == null) {
+					result.completeExceptionally(cause);
+					return;
+				}
+				scheduler.get().schedule(() -> executeAsync(request, attempt + 1, result), delay.toMillis(), TimeUnit.MILLISECONDS);
+			});
+		});
+	}
+	
+	/**
+	 * @return future completed by round of request when there is free slot for it
+	 */
+	private CompletableFuture<Long> acquire() {
+		synchronized (lock) {
+			if(inFlight < (int) limit && waiting.isEmpty()) {
+				inFlight++;
+				return CompletableFuture.completedFuture(epoch);
+			}
+			CompletableFuture<Long> future = new CompletableFuture<>();
+			waiting.add(future);
+			return future;
+		}
+	}
+	
+	/**
+	 * @param permit round in which finished request was sent
+	 * @param success true if request was successful and limit can be increased
+	 */
+	private void release(long permit, boolean success) {
+		List<CompletableFuture<Long>> next = Lists.newArrayList();
+		long round;
+		synchronized (lock) {
+			requests.increment();
+			inFlight--;
+			if(success) {
+				limit = Math.min(maxConcurrency, limit + 1 / limit);
+			}
+			while(inFlight < (int) limit && !waiting.isEmpty()) {
+				inFlight++;
+				next.add(waiting.poll());
+			}
+			round = epoch;
+		}
+		//waiting requests are sent outside of lock
+		next.forEach(each -> each.complete(round));
+	}
+	
+	/**
+	 * Decrease limit and compute delay of next attempt of throttled request.
+	 * @return delay of next attempt, null if request is not retried anymore
+	 */
+	private Duration onThrottled(long permit, SpHttpException e, int attempt) {
+		throttled.increment();
+		synchronized (lock) {
+			//requests sent with already decreased limit do not decrease it again
+			if(permit == epoch) {
+				limit = Math.max(1, Math.min(limit, inFlight) / 2);
+				epoch++;
+				LOG.debug("throttled statusCode={} limit={}", e.getStatus(), (int) limit);
+			}
+		}
+		release(permit, false);
+		if(attempt >= maxRetries) {
+			LOG.warn("throttled request not retried anymore, attempts={}", attempt + 1);
+			return null;
+		}
+		Duration delay = retryAfter(e.getRetryAfter(), clock.instant());
+		if(delay == null) {
+			//exponential backoff with full jitter
+			long max = Math.min(maxDelay.toMillis(), baseDelay.toMillis() << Math.min(attempt, 30));
+			delay = Duration.ofMillis(ThreadLocalRandom.current().nextLong(max + 1));
+		}
+		retries.increment();
+		backoffMillis.add(delay.toMillis());
+		LOG.debug("retry attempt={} delayMs={}", attempt + 1, delay.toMillis());
+		return delay;
+	}
+	
+	/**
+	 * @param value of Retry-After header, either delay in seconds or http date
+	 * @return delay requested by server, null if value is missing or not valid
+	 */
+	static Duration retryAfter(String value, Instant now) {
+		if(value == null) {
+			return null;
+		}
+		String trimmed = value.trim();
+		try {
+			if(trimmed.chars().allMatch(Character::isDigit) && !trimmed.isEmpty()) {
+				return Duration.ofSeconds(Long.parseLong(trimmed));
+			}
+			Instant date = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+			return date.isAfter(now) ? Duration.between(now, date) : Duration.ZERO;
+		}
+		catch(NumberFormatException | DateTimeParseException e) {
+			LOG.debug("invalid Retry-After value={}", value);
+			return null;
+		}
+	}
+	
+	/**
+	 * @return current limit of requests sent at the same time
+	 */
+	public int getLimit() {
+		synchronized (lock) {
+			return (int) limit;
+		}
+	}
+	
+	/**
+	 * @return count of finished requests, including throttled ones
+	 */
+	public long getRequests() {
+		return requests.sum();
+	}
+	
+	/**
+	 * @return count of requests rejected by throttling
+	 */
+	public long getThrottled() {
+		return throttled.sum();
+	}
+	
+	/**
+	 * @return count of repeated requests
+	 */
+	public long getRetries() {
+		return retries.sum();
+	}
+	
+	/**
+	 * @return sum of delays before repeated requests
+	 */
+	public Duration getBackoffTime() {
+		return Duration.ofMillis(backoffMillis.sum());
+	}
+}
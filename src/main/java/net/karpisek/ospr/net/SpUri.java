@@ -13,6 +13,7 @@ package net.karpisek.ospr.net;
 import java.net.URI;
 import java.util.List;
 
+import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
 import com.google.common.net.UrlEscapers;
@@ -98,6 +99,18 @@ public class SpUri {
 	public String getPath() {
 		return uri.getPath();
 	}
+	
+	/**
+	 * Answers server relative url of document library. 
+	 * For example:
+	 * <pre>
+	 * /sites/siteName/libraryName
+	 * <pre>
+	 */
+	public String getLibraryPath() {
+		List<String> pathSegments = Splitter.on("/").omitEmptyStrings().splitToList(getPath());
+		return "/" + Joiner.on("/").join(pathSegments.subList(0, 3));
+	}
 
 	public int getPort() {
 		return uri.getPort();
@@ -14,6 +14,10 @@ public class SpVersion {
 	public static SpVersion fromString(String majorVersion, String minorVersion) {
 		return new SpVersion(Integer.parseInt(majorVersion), Integer.parseInt(minorVersion));
 	}
+	
+	public static SpVersion of(int major, int minor) {
+		return new SpVersion(major, minor);
+	}
 
 	private int major;
 	private int minor;
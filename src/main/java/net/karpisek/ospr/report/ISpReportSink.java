@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.report;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import net.karpisek.ospr.net.SpFile;
+import net.karpisek.ospr.net.SpFileProperties;
+import net.karpisek.ospr.net.SpFileProperties.CoreProperty;
+
+/**
+ * Output of report, receives file rows and folder rollups in order they are finished by traversal.
+ * 
+ * Report is available on its output path only after {@link #finish()}, closing unfinished sink drops everything written.
+ */
+interface ISpReportSink extends Closeable {
+	/**
+	 * @return names of columns of file rows
+	 */
+	static List<String> fileColumns() {
+		List<String> result = Lists.newArrayList("sp.name", "sp.serverRelativeUrl", "sp.timeLastModified", "sp.timeCreated", "sp.length", "sp.version");
+		for (CoreProperty property : SpFileProperties.CoreProperty.values()) {
+			result.add("meta." + property.name().toLowerCase());
+		}
+		return result;
+	}
+	
+	/**
+	 * @return names of columns of folder rollups
+	 */
+	static List<String> folderColumns() {
+		return Lists.newArrayList("sp.serverRelativeUrl", "rollup.depth", "rollup.files", "rollup.folders", "rollup.length", "rollup.maxDepth", "rollup.timeLastModified");
+	}
+	
+	/**
+	 * @param properties of file, null if file has no properties
+	 */
+	void write(SpFile file, SpFileProperties properties) throws IOException;
+	
+	void write(SpFolderRollup rollup) throws IOException;
+	
+	/**
+	 * Complete report after all its rows were written.
+	 */
+	void finish() throws IOException;
+}
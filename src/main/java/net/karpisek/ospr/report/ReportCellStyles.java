@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.report;
+
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DataFormat;
+import org.apache.poi.ss.usermodel.Workbook;
+
+/**
+ * Cell styles used by report cells. 
+ * 
+ * Created only once per workbook and shared by all cells, workbook style table is limited (about 64k styles) 
+ * and every new style makes writing and opening of report slower.
+ */
+class ReportCellStyles {
+	static final String TIMESTAMP_FORMAT = "dd/mm/yyyy hh:mm";
+	static final String NUMBER_FORMAT = "#,##0";
+	
+	private final CellStyle timestamp;
+	private final CellStyle number;
+	private final CellStyle text;
+	
+	ReportCellStyles(Workbook workbook) {
+		DataFormat dataFormat = workbook.createDataFormat();
+		this.timestamp = createStyle(workbook, dataFormat.getFormat(TIMESTAMP_FORMAT));
+		this.number = createStyle(workbook, dataFormat.getFormat(NUMBER_FORMAT));
+		this.text = createStyle(workbook, (short) BuiltinFormats.getBuiltinFormat("@"));
+	}
+	
+	private static CellStyle createStyle(Workbook workbook, short format) {
+		CellStyle style = workbook.createCellStyle();
+		style.setDataFormat(format);
+		return style;
+	}
+	
+	/**
+	 * Answers style for date and time values.
+	 */
+	CellStyle getTimestamp() {
+		return timestamp;
+	}
+	
+	/**
+	 * Answers style for whole numbers, like sizes and counts.
+	 */
+	CellStyle getNumber() {
+		return number;
+	}
+	
+	/**
+	 * Answers style for values which must stay text even if looking like number, like versions.
+	 */
+	CellStyle getText() {
+		return text;
+	}
+}
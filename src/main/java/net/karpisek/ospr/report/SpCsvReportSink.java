@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.report;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.List;
+
+import com.google.common.base.CharMatcher;
+
+/**
+ * Writes report as comma separated values (RFC 4180) with header line, timestamps are in ISO-8601 format.
+ */
+class SpCsvReportSink extends SpTextReportSink {
+	private static final CharMatcher SPECIAL = CharMatcher.anyOf(",\"\r\n");
+	
+	static String escape(String value) {
+		if(!SPECIAL.matchesAnyOf(value)) {
+			return value;
+		}
+		return "\"" + value.replace("\"", "\"\"") + "\"";
+	}
+	
+	SpCsvReportSink(Path outputPath) throws IOException {
+		super(outputPath);
+		start();
+	}
+	
+	@Override
+	void writeHeader(Writer writer, List<String> columns) throws IOException {
+		writeLine(writer, columns);
+	}
+	
+	@Override
+	void writeRecord(Writer writer, List<String> columns, List<Object> values) throws IOException {
+		writeLine(writer, values);
+	}
+	
+	private void writeLine(Writer writer, List<?> values) throws IOException {
+		for (int i = 0; i < values.size(); i++) {
+			if(i > 0) {
+				writer.write(',');
+			}
+			Object value = values.get(i);
+			if(value != null) {
+				writer.write(escape(value.toString()));
+			}
+		}
+		writer.write("\r\n");
+	}
+}
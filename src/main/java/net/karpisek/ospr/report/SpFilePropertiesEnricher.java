@@ -0,0 +1,250 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.report;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import net.karpisek.ospr.net.IAsyncSpObjectProvider;
+import net.karpisek.ospr.net.ISpObjectProvider;
+import net.karpisek.ospr.net.SpFile;
+import net.karpisek.ospr.net.SpFileProperties;
+import net.karpisek.ospr.net.SpFolder;
+
+/**
+ * Adds properties to visited files using background lookups, at most parallelism lookups are running at the same time.
+ * 
+ * Files are passed to writer in the same order as they were added, each one together with its properties 
+ * (or null for files without properties), so rows can be written in order of traversal while lookups overlap with it.
+ * Finished folders are passed to writer in the same order, after all files added before them.
+ * Amount of files waiting for writing is limited, when limit is reached adding waits for oldest file.
+ * 
+ * Files are looked up in batches of given size using {@link ISpObjectProvider#getSpFileProperties(List)}, 
+ * incomplete batch is sent as soon as writing has to wait for one of its files.
+ */
+class SpFilePropertiesEnricher {
+	interface IWriter {
+		void write(SpFile file, SpFileProperties properties) throws IOException;
+		
+		/**
+		 * Called after all files added before folder was finished were written.
+		 */
+		default void postVisitFolder(SpFolder folder) throws IOException {
+			//nothing to do
+		}
+	}
+	
+	/**
+	 * Added file waiting for its properties, or finished folder if file is null.
+	 */
+	private static class Entry {
+		final SpFile file;
+		final SpFolder folder;
+		final CompletableFuture<SpFileProperties> properties;
+		
+		Entry(SpFile file, SpFolder folder, CompletableFuture<SpFileProperties> properties) {
+			this.file = file;
+			this.folder = folder;
+			this.properties = properties;
+		}
+	}
+	
+	private final ISpObjectProvider objectProvider;
+	private final Predicate<SpFile> hasProperties;
+	private final Executor executor;
+	private final Semaphore inFlight;
+	private final int capacity;
+	private final int batchSize;
+	private final IWriter writer;
+	private final ArrayDeque<Entry> waiting = new ArrayDeque<>();
+	//progress readable from other threads
+	private volatile int waitingSize;
+	private final LongAdder written = new LongAdder();
+	private List<Entry> batch = Lists.newArrayList();
+	
+	/**
+	 * @param objectProvider to lookup properties, asynchronous provider is called directly without using executor
+	 * @param hasProperties which files have properties to lookup
+	 * @param executor to run lookups on
+	 * @param parallelism maximal number of lookups running at the same time
+	 * @param batchSize how many files to lookup in one call
+	 * @param writer receiving files with properties in order they were added 
+	 */
+	SpFilePropertiesEnricher(ISpObjectProvider objectProvider, Predicate<SpFile> hasProperties, Executor executor, int parallelism, int batchSize, IWriter writer) {
+		Preconditions.checkArgument(parallelism > 0, "Illegal parallelism value, must be > 0 (is '%s')", parallelism);
+		Preconditions.checkArgument(batchSize > 0, "Illegal batch size value, must be > 0 (is '%s')", batchSize);
+		this.objectProvider = objectProvider;
+		this.hasProperties = hasProperties;
+		this.executor = executor;
+		this.inFlight = new Semaphore(parallelism);
+		this.capacity = Math.max(64, 4 * parallelism * batchSize);
+		this.batchSize = batchSize;
+		this.writer = writer;
+	}
+	
+	void add(SpFile file) throws IOException {
+		Entry entry = new Entry(file, null, hasProperties.test(file) ? new CompletableFuture<>() : CompletableFuture.completedFuture(null));
+		waiting.add(entry);
+		if(!entry.properties.isDone()) {
+			batch.add(entry);
+			if(batch.size() >= batchSize) {
+				send();
+			}
+		}
+		writeDone();
+	}
+	
+	/**
+	 * Pass finished folder to writer after all files added before it were written.
+	 */
+	void postVisitFolder(SpFolder folder) throws IOException {
+		waiting.add(new Entry(null, folder, CompletableFuture.completedFuture(null)));
+		writeDone();
+	}
+	
+	private void writeDone() throws IOException {
+		while(!waiting.isEmpty() && (waiting.size() > capacity || waiting.peek().properties.isDone())) {
+			writeOldest();
+		}
+		waitingSize = waiting.size();
+	}
+	
+	/**
+	 * Wait for all remaining lookups and write all remaining files.
+	 */
+	void finish() throws IOException {
+		send();
+		while(!waiting.isEmpty()) {
+			writeOldest();
+			waitingSize = waiting.size();
+		}
+	}
+	
+	/**
+	 * Drop all files waiting for writing, lookups already running are left to finish.
+	 */
+	void cancel() {
+		for (Entry entry : waiting) {
+			entry.properties.cancel(false);
+		}
+		waiting.clear();
+		batch.clear();
+		waitingSize = 0;
+	}
+	
+	/**
+	 * @return number of files and folders waiting for writing, can be called from any thread
+	 */
+	int getWaiting() {
+		return waitingSize;
+	}
+	
+	/**
+	 * @return number of files passed to writer, can be called from any thread
+	 */
+	long getWritten() {
+		return written.sum();
+	}
+	
+	private void writeOldest() throws IOException {
+		Entry entry = waiting.poll();
+		if(entry.file == null) {
+			writer.postVisitFolder(entry.folder);
+			return;
+		}
+		if(!entry.properties.isDone()) {
+			//do not wait for incomplete batch to be filled 
+			send();
+		}
+		SpFileProperties properties;
+		try {
+			properties = entry.properties.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for properties of " + entry.file.getServerRelativeUrl());
+		} catch (ExecutionException e) {
+			//TODO: rework exception handling in visitor and also here
+			if(e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+		writer.write(entry.file, properties);
+		written.increment();
+	}
+	
+	/**
+	 * Start lookup of current batch.
+	 */
+	private void send() throws IOException {
+		if(batch.isEmpty()) {
+			return;
+		}
+		List<Entry> entries = batch;
+		batch = Lists.newArrayList();
+		List<String> files = entries.stream().map(each -> each.file.getServerRelativeUrl()).collect(Collectors.toList());
+		try {
+			inFlight.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for lookup of " + files);
+		}
+		CompletableFuture<List<SpFileProperties>> result;
+		if(objectProvider instanceof IAsyncSpObjectProvider) {
+			IAsyncSpObjectProvider asyncProvider = (IAsyncSpObjectProvider) objectProvider;
+			try {
+				result = files.size() == 1 ? asyncProvider.getSpFilePropertiesAsync(files.get(0)).thenApply(Lists::newArrayList) : asyncProvider.getSpFilePropertiesAsync(files);
+			} catch (RuntimeException e) {
+				result = new CompletableFuture<>();
+				result.completeExceptionally(e);
+			}
+		}
+		else {
+			result = new CompletableFuture<>();
+			CompletableFuture<List<SpFileProperties>> future = result;
+			try {
+				executor.execute(() -> {
+					try {
+						future.complete(files.size() == 1 ? Lists.newArrayList(objectProvider.getSpFileProperties(files.get(0))) : objectProvider.getSpFileProperties(files));
+					} catch (Exception e) {
+						future.completeExceptionally(e);
+					}
+				});
+			} catch (RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+		}
+		result.whenComplete((values, failure) -> {
+			inFlight.release();
+			for (int i = 0; i < entries.size(); i++) {
+				if(failure != null) {
+					entries.get(i).properties.completeExceptionally(failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure);
+				}
+				else {
+					entries.get(i).properties.complete(values.get(i));
+				}
+			}
+		});
+	}
+}
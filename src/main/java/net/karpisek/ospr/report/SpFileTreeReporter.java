@@ -10,145 +10,395 @@
  *******************************************************************************/
 package net.karpisek.ospr.report;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.time.Instant;
-import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.CellStyle;
-import org.apache.poi.ss.usermodel.CreationHelper;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.jdom2.JDOMException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.collect.Lists;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+import net.karpisek.ospr.Ospr;
+import net.karpisek.ospr.net.IAsyncSpObjectProvider;
 import net.karpisek.ospr.net.ISpFileVisitor;
 import net.karpisek.ospr.net.ISpObjectProvider;
+import net.karpisek.ospr.net.SpExecutors;
 import net.karpisek.ospr.net.SpFile;
 import net.karpisek.ospr.net.SpFileProperties;
-import net.karpisek.ospr.net.SpFileProperties.CoreProperty;
 import net.karpisek.ospr.net.SpFiles;
 import net.karpisek.ospr.net.SpFolder;
 
 public class SpFileTreeReporter{
+	/**
+	 * Value of row access window size for report kept completely in memory until written.
+	 */
+	public static final int IN_MEMORY = -1;
+	
+	/**
+	 * Default row access window size, rows of XLSX report are flushed into temporary files so report of any size fits into memory.
+	 */
+	public static final int STREAMING = SXSSFWorkbook.DEFAULT_WINDOW_SIZE;
+	
+	/**
+	 * Value of page size for folders listed completely in one request.
+	 */
+	public static final int UNPAGED = -1;
+	
+	/**
+	 * How many rows and finished folders can wait for writing before traversal waits for writer.
+	 */
+	static final int WRITER_CAPACITY = 4096;
+	
+	/**
+	 * How often to log progress of pipeline stages.
+	 */
+	private static final long PROGRESS_PERIOD_SECONDS = 10;
+	
+	public static class Builder{
+		private ISpObjectProvider objectProvider;
+		private String path;
+		private Path outputPath;
+		private int maxDepth = Ospr.UNLIMITED_DEPTH;
+		private int parallelism = 1;
+		private int propertiesParallelism = 1;
+		private int batchSize = 1;
+		private int pageSize = UNPAGED;
+		private int rowAccessWindowSize = STREAMING;
+		private Path journalPath;
+		private boolean resume;
+		private SpReportFormat format = SpReportFormat.XLSX;
+		private boolean virtualThreads;
+		
+		public Builder(ISpObjectProvider objectProvider, String path, Path outputPath) {
+			this.objectProvider = objectProvider;
+			this.path = path;
+			this.outputPath = outputPath;
+		}
+		
+		public Builder maxDepth(int value) {
+			this.maxDepth = value;
+			return this;
+		}
+		
+		/**
+		 * @param value how many folders can be fetched at the same time, 1 for sequential walk
+		 */
+		public Builder parallelism(int value) {
+			Preconditions.checkArgument(value > 0, "Illegal parallelism value, must be > 0 (is '%s')", value);
+			this.parallelism = value;
+			return this;
+		}
+		
+		/**
+		 * @param value how many file properties can be fetched at the same time, lookups are running in background of traversal
+		 */
+		public Builder propertiesParallelism(int value) {
+			Preconditions.checkArgument(value > 0, "Illegal parallelism value, must be > 0 (is '%s')", value);
+			this.propertiesParallelism = value;
+			return this;
+		}
+		
+		/**
+		 * @param value how many file properties to fetch in one request, 1 to fetch each file separately
+		 */
+		public Builder batchSize(int value) {
+			Preconditions.checkArgument(value > 0, "Illegal batch size value, must be > 0 (is '%s')", value);
+			this.batchSize = value;
+			return this;
+		}
+		
+		/**
+		 * List folders page by page, pages of folders are fetched sequentially regardless of {@link #parallelism(int)}.
+		 * @param value maximal number of folder children in one page, {@link SpFileTreeReporter#UNPAGED} to list whole folder at once
+		 */
+		public Builder pageSize(int value) {
+			Preconditions.checkArgument(value > 0 || value == UNPAGED, "Illegal page size value, must be > 0 or %s for unpaged listing (is '%s')", UNPAGED, value);
+			this.pageSize = value;
+			return this;
+		}
+		
+		/**
+		 * Write report in streaming way keeping in memory only last rows, older rows are flushed into temporary file.
+		 * @param value how many last rows to keep in memory, {@link SpFileTreeReporter#STREAMING} by default, 
+		 * {@link SpFileTreeReporter#IN_MEMORY} to keep whole report (including all rolled over sheets) in memory
+		 */
+		public Builder streaming(int value) {
+			Preconditions.checkArgument(value > 0 || value == IN_MEMORY, "Illegal row access window size, must be > 0 or %s for in memory report (is '%s')", IN_MEMORY, value);
+			this.rowAccessWindowSize = value;
+			return this;
+		}
+		
+		/**
+		 * Record written rows and finished folders into journal, so interrupted report can be resumed.
+		 * Journal is deleted when report is successfully written.
+		 * @param value path of journal, null for no journal
+		 */
+		public Builder journal(Path value) {
+			this.journalPath = value;
+			return this;
+		}
+		
+		/**
+		 * @param value true to continue report from journal of interrupted run, finished folders are not fetched again
+		 */
+		public Builder resume(boolean value) {
+			this.resume = value;
+			return this;
+		}
+		
+		/**
+		 * @param value format of written report, {@link #streaming(int)} applies only to {@link SpReportFormat#XLSX}
+		 */
+		public Builder format(SpReportFormat value) {
+			this.format = Preconditions.checkNotNull(value);
+			return this;
+		}
+		
+		/**
+		 * @param value true to run blocking folder and properties requests on virtual threads if running Java supports them, 
+		 * {@link #parallelism(int)} and {@link #propertiesParallelism(int)} still limit number of requests in flight; 
+		 * has no effect for {@link IAsyncSpObjectProvider} whose requests do not block any thread
+		 */
+		public Builder virtualThreads(boolean value) {
+			this.virtualThreads = value;
+			return this;
+		}
+		
+		public SpFileTreeReporter build() {
+			return new SpFileTreeReporter(this);
+		}
+	}
+	
 	private static final Logger LOG = LoggerFactory.getLogger(SpFileTreeReporter.class);
 	
 	private Path outputPath;
 	private ISpObjectProvider objectProvider;
 	private String path;
 	private int maxDepth;
+	private int parallelism;
+	private int propertiesParallelism;
+	private int batchSize;
+	private int pageSize;
+	private int rowAccessWindowSize;
+	private Path journalPath;
+	private boolean resume;
+	private SpReportFormat format;
+	private boolean virtualThreads;
 
 	public SpFileTreeReporter(ISpObjectProvider objectProvider, String path, int maxDepth, Path outputPath) {
-		this.outputPath = outputPath;
-		this.objectProvider = objectProvider;
-		this.maxDepth = maxDepth;
-		this.path = path;
+		this(new Builder(objectProvider, path, outputPath).maxDepth(maxDepth));
+	}
+	
+	private SpFileTreeReporter(Builder builder) {
+		this.outputPath = builder.outputPath;
+		this.objectProvider = builder.objectProvider;
+		this.maxDepth = builder.maxDepth;
+		this.path = builder.path;
+		this.parallelism = builder.parallelism;
+		this.propertiesParallelism = builder.propertiesParallelism;
+		this.batchSize = builder.batchSize;
+		this.pageSize = builder.pageSize;
+		this.rowAccessWindowSize = builder.rowAccessWindowSize;
+		this.journalPath = builder.journalPath;
+		this.resume = builder.resume;
+		this.format = builder.format;
+		this.virtualThreads = builder.virtualThreads;
+		Preconditions.checkArgument(!resume || journalPath != null, "Illegal resume without journal");
+	}
+	
+	//TODO: make this configurable, add other possible office extensions
+	public static boolean hasProperties(SpFile file) {
+		HashSet<String> supported = Sets.newHashSet(".doc", ".docx", ".xls", ".xlsx", ".ppt", ".pptx");
+		return supported.stream().anyMatch(extension -> file.getName().toLowerCase().endsWith(extension));
 	}
 	
 	public void execute() throws IOException, InterruptedException, TimeoutException, ExecutionException, JDOMException {
-		LOG.info("fileTreeWalk dir={} maxDepth={}", path, maxDepth);
+		LOG.info("fileTreeWalk dir={} maxDepth={} parallelism={} propertiesParallelism={} batchSize={} pageSize={} rowAccessWindowSize={} journal={} resume={} format={} virtualThreads={}", path, maxDepth, parallelism, propertiesParallelism, batchSize, pageSize, rowAccessWindowSize, journalPath, resume, format, virtualThreads);
+		if(virtualThreads && objectProvider instanceof IAsyncSpObjectProvider) {
+			LOG.warn("virtualThreads have no effect, provider={} requests asynchronously without blocking threads", objectProvider.getClass().getSimpleName());
+		}
 		AtomicInteger folders = new AtomicInteger(0);
+		AtomicLong files = new AtomicLong(0);
+			
+		try(ISpReportSink sink = createSink()){
+			SpFilePropertiesEnricher.IWriter rows = sink::write;
+			SpFolderRollupVisitor.IWriter folderRows = sink::write;
 			
-		try(XSSFWorkbook  workbook = new XSSFWorkbook()){
-	        XSSFSheet sheet = workbook.createSheet("files");
-	        AtomicInteger rowNum = new AtomicInteger(0);
-	        {
-	        	Row row = sheet.createRow(rowNum.getAndIncrement());
-	        	int colNumber = 0;
-	        	List<String> header = Lists.newArrayList("sp.name", "sp.serverRelativeUrl", "sp.timeLastModified", "sp.timeCreated", "sp.length", "sp.version");
+			//report is written in pipeline of stages: traversal on calling thread, properties enrichment in background lookups 
+			//and writing of rows and journal on writer thread, stages are connected by bounded queues
+			try(SpReportJournal journal = openJournal(rows, folderRows); SpPipelineStage writer = new SpPipelineStage("writer", WRITER_CAPACITY)){
+				//rollups of finished folders waiting for their rows to be written
+				Map<String, SpFolderRollup> finishedRollups = new HashMap<>();
+				SpFolderRollupVisitor rollupVisitor = new SpFolderRollupVisitor(rollup -> finishedRollups.put(rollup.getServerRelativeUrl(), rollup));
 
-	        	for (CoreProperty property : SpFileProperties.CoreProperty.values()) {
-	        		header.add("meta." + property.name().toLowerCase());
-				}
-	        	
-	        	for (String colName : header) {
-	        		row.createCell(colNumber++).setCellValue(colName);
-				}
-	        }
-			SpFiles.walkFileTree(objectProvider, path, 0, maxDepth, new ISpFileVisitor() {
-				@Override
-				public void visitFile(SpFile file) throws IOException {
-					AtomicInteger colNumber = new AtomicInteger();
-					Row row = sheet.createRow(rowNum.getAndIncrement());
-					row.createCell(colNumber.getAndIncrement()).setCellValue(file.getName());
-					row.createCell(colNumber.getAndIncrement()).setCellValue(file.getServerRelativeUrl());
-					createTimestampCell(row, colNumber.getAndIncrement(), file.getTimeLastModified());
-					createTimestampCell(row, colNumber.getAndIncrement(), file.getTimeCreated());
-					row.createCell(colNumber.getAndIncrement()).setCellValue(file.getLength());
-					row.createCell(colNumber.getAndIncrement()).setCellValue(file.getVersion().toString());
-					
-					//TODO: make this configurable, add other possible office extensions
-					HashSet<String> supported = Sets.newHashSet(".doc", ".docx", ".xls", ".xlsx", ".ppt", ".pptx");
-					if(supported.stream().anyMatch(extension -> file.getName().toLowerCase().endsWith(extension))) {
-						try {
-							SpFileProperties properties = objectProvider.getSpFileProperties(file.getServerRelativeUrl());
-							properties.keysAndValuesDo((property, value) -> {
-								row.createCell(colNumber.getAndIncrement()).setCellValue(value);
-							});
-							
-						} catch (InterruptedException | TimeoutException | ExecutionException | JDOMException e) {
-							//TODO: rework exception handling in visitor and also here
-							throw new IOException(e);
+				ExecutorService propertiesExecutor = SpExecutors.newExecutor("properties", propertiesParallelism, virtualThreads);
+				SpFilePropertiesEnricher enricher = new SpFilePropertiesEnricher(objectProvider, SpFileTreeReporter::hasProperties, propertiesExecutor, propertiesParallelism, batchSize, new SpFilePropertiesEnricher.IWriter() {
+					@Override
+					public void write(SpFile file, SpFileProperties properties) throws IOException {
+						writer.put(() -> {
+							rows.write(file, properties);
+							if(journal != null) {
+								journal.write(file, properties);
+							}
+						});
+					}
+				
+					@Override
+					public void postVisitFolder(SpFolder folder) throws IOException {
+						SpFolderRollup rollup = finishedRollups.remove(folder.getServerRelativeUrl());
+						writer.put(() -> {
+							folderRows.write(rollup);
+							if(journal != null) {
+								journal.postVisitFolder(rollup);
+							}
+						});
+					}
+				});
+				
+				ISpFileVisitor visitor = new ISpFileVisitor() {
+					@Override
+					public void visitFile(SpFile file) throws IOException {
+						files.incrementAndGet();
+						rollupVisitor.visitFile(file);
+						if(journal != null && journal.isWritten(file)) {
+							//row was already written by interrupted run
+							return;
 						}
+						enricher.add(file);
+					}
+	
+					@Override
+					public void preVisitFolder(SpFolder folder) throws IOException {
+						rollupVisitor.preVisitFolder(folder);
+						//TODO: counts of files and folders could be cached already on SpFolder instance creation time
+						//children of paged folder are not known yet, only its item count
+						LOG.info(
+								"{}. {} (items={} folders={} files={})", 
+								folders.getAndIncrement(), 
+								folder.getServerRelativeUrl(), 
+								folder.getItemCount(),
+								folder.getChildren(each -> each.isFolder()).count(),
+								folder.getChildren(each -> each.isFile()).count()
+								);
 					}
-				}
 	
-				@Override
-				public void preVisitFolder(SpFolder folder) throws IOException {
-					//TODO: counts of files and folders could be cached already on SpFolder instance creation time
+					@Override
+					public void postVisitFolder(SpFolder folder) throws IOException {
+						rollupVisitor.postVisitFolder(folder);
+						enricher.postVisitFolder(folder);
+					}
+				
+					@Override
+					public boolean skipFolder(String serverRelativeUrl) {
+						if(journal != null && journal.isFinished(serverRelativeUrl)) {
+							//skipped subtree still counts into rollup of its parent
+							SpFolderRollup rollup = journal.getRollup(serverRelativeUrl);
+							if(rollup != null) {
+								rollupVisitor.add(rollup);
+							}
+							return true;
+						}
+						return false;
+					}
+				};
+			
+				Stopwatch stopwatch = Stopwatch.createStarted();
+				ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("ospr-progress-%d").setDaemon(true).build());
+				progress.scheduleAtFixedRate(() -> {
+					double seconds = Math.max(1, stopwatch.elapsed(TimeUnit.SECONDS));
 					LOG.info(
-							"{}. {} (folders={} files={})", 
-							folders.getAndIncrement(), 
-							folder.getServerRelativeUrl(), 
-							folder.getChildren(each -> each.isFolder()).count(),
-							folder.getChildren(each -> each.isFile()).count()
+							"pipelineProgress folders={} filesPerSec={} enricherWaiting={} enrichedPerSec={} writerQueued={} writtenPerSec={}", 
+							folders.get(), 
+							Math.round(files.get() / seconds), 
+							enricher.getWaiting(), 
+							Math.round(enricher.getWritten() / seconds), 
+							writer.getQueued(), 
+							Math.round(writer.getDone() / seconds)
 							);
+				}, PROGRESS_PERIOD_SECONDS, PROGRESS_PERIOD_SECONDS, TimeUnit.SECONDS);
+				
+				boolean walked = false;
+				try {
+					if(pageSize != UNPAGED) {
+						SpFiles.walkFileTreePaged(objectProvider, path, 0, maxDepth, visitor, pageSize);
+					}
+					else if(parallelism == 1) {
+						SpFiles.walkFileTree(objectProvider, path, 0, maxDepth, visitor);
+					}
+					else {
+						ExecutorService executor = SpExecutors.newExecutor("folder", parallelism, virtualThreads);
+						try {
+							SpFiles.walkFileTree(objectProvider, path, 0, maxDepth, visitor, executor, parallelism);
+						}
+						finally {
+							executor.shutdownNow();
+						}
+					}
+					walked = true;
+					LOG.info("traversalFinished folders={} files={} timeMs={}", folders.get(), files.get(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
+					enricher.finish();
+					writer.finish();
 				}
-	
-				@Override
-				public void postVisitFolder(SpFolder folder) throws IOException {
-					//nothing to do
+				finally {
+					if(!walked && journal != null) {
+						//rows of files fetched before failure are journaled, so resumed run does not fetch them again
+						try {
+							enricher.finish();
+							writer.finish();
+						} catch (IOException e) {
+							LOG.debug("rows of interrupted report not written", e);
+						}
+					}
+					enricher.cancel();
+					propertiesExecutor.shutdownNow();
+					progress.shutdownNow();
 				}
-			});
-			
-			for (int i = sheet.getRow(0).getFirstCellNum(); i < sheet.getRow(0).getLastCellNum(); i++) {
-				sheet.autoSizeColumn(i);				
 			}
 			
-	        try (OutputStream outputStream = Files.newOutputStream(outputPath)){
-	            workbook.write(outputStream);
-	        } catch (FileNotFoundException e) {
-	            e.printStackTrace();
-	        } catch (IOException e) {
-	            e.printStackTrace();
-	        }
-        }
+			sink.finish();
+			if(journalPath != null) {
+				//report is complete, there is nothing to resume
+				Files.deleteIfExists(journalPath);
+			}
+		}
 		LOG.info("fileTreeWalkDone output={} folders={}", outputPath.toAbsolutePath(), folders.get());
 	}
 	
-	private Cell createTimestampCell(Row row, int colNumber, Instant timestamp) {
-		Workbook wb = row.getSheet().getWorkbook();
-		CellStyle cellStyle = wb.createCellStyle();
-		CreationHelper createHelper = wb.getCreationHelper();
-		cellStyle.setDataFormat(createHelper.createDataFormat().getFormat("dd/mm/yyyy hh:mm"));
-		Cell cell = row.createCell(colNumber);
-		cell.setCellValue(Date.from(timestamp));
-		cell.setCellStyle(cellStyle);
-		return cell;
+	private SpReportJournal openJournal(SpFilePropertiesEnricher.IWriter rows, SpFolderRollupVisitor.IWriter folderRows) throws IOException {
+		if(journalPath == null) {
+			return null;
+		}
+		if(resume) {
+			return SpReportJournal.resume(journalPath, path, maxDepth, rows, folderRows);
+		}
+		return SpReportJournal.create(journalPath, path, maxDepth);
+	}
+	
+	private ISpReportSink createSink() throws IOException {
+		switch (format) {
+		case CSV:
+			return new SpCsvReportSink(outputPath);
+		case NDJSON:
+			return new SpJsonReportSink(outputPath);
+		default:
+			return new SpXlsxReportSink(outputPath, rowAccessWindowSize);
+		}
 	}
 }
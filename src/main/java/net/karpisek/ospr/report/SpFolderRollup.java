@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.report;
+
+import java.time.Instant;
+
+import com.google.common.base.MoreObjects;
+
+import net.karpisek.ospr.net.SpFile;
+
+/**
+ * Aggregated size and counts of folder with whole its visited subtree.
+ */
+class SpFolderRollup {
+	private final String serverRelativeUrl;
+	private final int depth;
+	private long files;
+	private long folders;
+	private long bytes;
+	private int maxDepth;
+	private Instant newest;
+	
+	/**
+	 * @param depth of folder relative to traversed folder, 0 for traversed folder itself
+	 * @param timeLastModified of folder itself
+	 */
+	SpFolderRollup(String serverRelativeUrl, int depth, Instant timeLastModified) {
+		this(serverRelativeUrl, depth, 0, 0, 0, 0, timeLastModified);
+	}
+	
+	SpFolderRollup(String serverRelativeUrl, int depth, long files, long folders, long bytes, int maxDepth, Instant newest) {
+		this.serverRelativeUrl = serverRelativeUrl;
+		this.depth = depth;
+		this.files = files;
+		this.folders = folders;
+		this.bytes = bytes;
+		this.maxDepth = maxDepth;
+		this.newest = newest;
+	}
+	
+	void add(SpFile file) {
+		files++;
+		bytes += file.getLength();
+		newest = newer(newest, file.getTimeLastModified());
+	}
+	
+	/**
+	 * Include finished rollup of direct subfolder.
+	 */
+	void add(SpFolderRollup subfolder) {
+		files += subfolder.files;
+		folders += 1 + subfolder.folders;
+		bytes += subfolder.bytes;
+		maxDepth = Math.max(maxDepth, 1 + subfolder.maxDepth);
+		newest = newer(newest, subfolder.newest);
+	}
+	
+	private static Instant newer(Instant a, Instant b) {
+		if(a == null) {
+			return b;
+		}
+		if(b == null) {
+			return a;
+		}
+		return a.isAfter(b) ? a : b;
+	}
+	
+	String getServerRelativeUrl() {
+		return serverRelativeUrl;
+	}
+	
+	/**
+	 * @return depth of folder relative to traversed folder
+	 */
+	int getDepth() {
+		return depth;
+	}
+	
+	/**
+	 * @return number of files in whole subtree
+	 */
+	long getFiles() {
+		return files;
+	}
+	
+	/**
+	 * @return number of subfolders in whole subtree, folder itself is not counted
+	 */
+	long getFolders() {
+		return folders;
+	}
+	
+	/**
+	 * @return total length of files in whole subtree
+	 */
+	long getBytes() {
+		return bytes;
+	}
+	
+	/**
+	 * @return how many levels of subfolders are below folder, 0 for folder without visited subfolders
+	 */
+	int getMaxDepth() {
+		return maxDepth;
+	}
+	
+	/**
+	 * @return latest modification time of folder itself and of files and folders in its subtree
+	 */
+	Instant getNewest() {
+		return newest;
+	}
+	
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this)
+				.add("serverRelativeUrl", serverRelativeUrl)
+				.add("depth", depth)
+				.add("files", files)
+				.add("folders", folders)
+				.add("bytes", bytes)
+				.add("maxDepth", maxDepth)
+				.add("newest", newest)
+				.toString();
+	}
+}
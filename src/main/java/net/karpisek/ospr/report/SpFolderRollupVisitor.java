@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.report;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import com.google.common.base.Verify;
+
+import net.karpisek.ospr.net.ISpFileVisitor;
+import net.karpisek.ospr.net.SpFile;
+import net.karpisek.ospr.net.SpFolder;
+
+/**
+ * Computes {@link SpFolderRollup} of each visited folder in one pass of traversal.
+ * 
+ * Only rollups of folders on path from traversed folder to currently visited one are kept, 
+ * rollup is passed to writer when its folder is finished and then added into rollup of its parent.
+ * Folder rollups are written in post order, subfolders before their parent.
+ */
+class SpFolderRollupVisitor implements ISpFileVisitor {
+	interface IWriter {
+		void write(SpFolderRollup rollup) throws IOException;
+	}
+	
+	private final Deque<SpFolderRollup> open = new ArrayDeque<>();
+	private final IWriter writer;
+	
+	SpFolderRollupVisitor(IWriter writer) {
+		this.writer = writer;
+	}
+	
+	@Override
+	public void preVisitFolder(SpFolder folder) throws IOException {
+		open.push(new SpFolderRollup(folder.getServerRelativeUrl(), open.size(), folder.getTimeLastModified()));
+	}
+	
+	@Override
+	public void visitFile(SpFile file) throws IOException {
+		Verify.verify(!open.isEmpty(), "file %s visited outside of folder", file.getServerRelativeUrl());
+		open.peek().add(file);
+	}
+	
+	@Override
+	public void postVisitFolder(SpFolder folder) throws IOException {
+		SpFolderRollup rollup = open.pop();
+		Verify.verify(rollup.getServerRelativeUrl().equals(folder.getServerRelativeUrl()), "folder %s finished while %s is visited", folder.getServerRelativeUrl(), rollup.getServerRelativeUrl());
+		add(rollup);
+		writer.write(rollup);
+	}
+	
+	/**
+	 * Include rollup of subfolder which is not visited, like subfolder already finished by interrupted run.
+	 * Rollup is added into currently visited folder, it is not passed to writer.
+	 */
+	void add(SpFolderRollup subfolder) {
+		if(!open.isEmpty()) {
+			open.peek().add(subfolder);
+		}
+	}
+}
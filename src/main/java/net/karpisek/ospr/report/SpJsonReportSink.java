@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.report;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Writes report as JSON lines (NDJSON), each record is one object with column names as keys, timestamps are in ISO-8601 format.
+ */
+class SpJsonReportSink extends SpTextReportSink {
+	static String quote(String value) {
+		StringBuilder result = new StringBuilder(value.length() + 2);
+		result.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				result.append("\\\"");
+				break;
+			case '\\':
+				result.append("\\\\");
+				break;
+			case '\n':
+				result.append("\\n");
+				break;
+			case '\r':
+				result.append("\\r");
+				break;
+			case '\t':
+				result.append("\\t");
+				break;
+			default:
+				if(c < 0x20) {
+					result.append(String.format("\\u%04x", (int) c));
+				}
+				else {
+					result.append(c);
+				}
+			}
+		}
+		return result.append('"').toString();
+	}
+	
+	SpJsonReportSink(Path outputPath) throws IOException {
+		super(outputPath);
+		start();
+	}
+	
+	@Override
+	void writeHeader(Writer writer, List<String> columns) {
+		//every record has its column names
+	}
+	
+	@Override
+	void writeRecord(Writer writer, List<String> columns, List<Object> values) throws IOException {
+		writer.write('{');
+		for (int i = 0; i < values.size(); i++) {
+			if(i > 0) {
+				writer.write(',');
+			}
+			writer.write(quote(columns.get(i)));
+			writer.write(':');
+			Object value = values.get(i);
+			if(value == null) {
+				writer.write("null");
+			}
+			else if(value instanceof Number) {
+				writer.write(value.toString());
+			}
+			else {
+				writer.write(quote(value.toString()));
+			}
+		}
+		writer.write("}\n");
+	}
+}
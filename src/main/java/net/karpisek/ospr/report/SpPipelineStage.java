@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.report;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Stage of report pipeline running its tasks on its own thread, one by one in order they were put.
+ * 
+ * Tasks wait in bounded queue, putting task into full queue blocks until stage takes one, 
+ * so previous stage can not run away from slower one. Failure of task stops the stage, it is thrown by following put or finish.
+ */
+class SpPipelineStage implements Closeable {
+	interface ITask {
+		void run() throws IOException;
+	}
+	
+	private static final Logger LOG = LoggerFactory.getLogger(SpPipelineStage.class);
+	private static final ITask END = () -> {
+		//marks that no more tasks will be put
+	};
+	
+	private final String name;
+	private final BlockingQueue<ITask> queue;
+	private final Thread thread;
+	private final CountDownLatch stopped = new CountDownLatch(1);
+	private final LongAdder done = new LongAdder();
+	private final LongAdder busyNanos = new LongAdder();
+	private final LongAdder blockedNanos = new LongAdder();
+	private volatile Throwable failure;
+	
+	/**
+	 * @param name of stage, used for thread name and metrics
+	 * @param capacity maximal number of tasks waiting in queue
+	 */
+	SpPipelineStage(String name, int capacity) {
+		Preconditions.checkArgument(capacity > 0, "Illegal capacity value, must be > 0 (is '%s')", capacity);
+		this.name = name;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		this.thread = new Thread(this::runTasks, "ospr-" + name);
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+	
+	private void runTasks() {
+		try {
+			for(ITask task = queue.take(); task != END; task = queue.take()) {
+				long start = System.nanoTime();
+				task.run();
+				busyNanos.add(System.nanoTime() - start);
+				done.increment();
+			}
+		} catch (InterruptedException e) {
+			//stage was closed
+			Thread.currentThread().interrupt();
+		} catch (Throwable e) {
+			//also errors (e.g. out of memory), stage must not stop without failure known to producer
+			failure = e;
+			//release producer blocked by full queue
+			queue.clear();
+		} finally {
+			stopped.countDown();
+		}
+	}
+	
+	/**
+	 * Add task to run after all tasks put before, waits while queue is full.
+	 */
+	void put(ITask task) throws IOException {
+		verifyNotFailed();
+		long start = System.nanoTime();
+		try {
+			while(!queue.offer(task, 100, TimeUnit.MILLISECONDS)) {
+				verifyNotFailed();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for stage " + name);
+		}
+		blockedNanos.add(System.nanoTime() - start);
+	}
+	
+	/**
+	 * Wait until all tasks put before are done.
+	 */
+	void finish() throws IOException {
+		put(END);
+		try {
+			stopped.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for stage " + name);
+		}
+		verifyNotFailed();
+		LOG.info("stageFinished name={} tasks={} busyMs={} blockedMs={}", name, getDone(), TimeUnit.NANOSECONDS.toMillis(busyNanos.sum()), TimeUnit.NANOSECONDS.toMillis(blockedNanos.sum()));
+	}
+	
+	private void verifyNotFailed() throws IOException {
+		Throwable cause = failure;
+		if(cause != null) {
+			throw new IOException("Stage " + name + " failed", cause);
+		}
+	}
+	
+	/**
+	 * @return number of tasks waiting in queue
+	 */
+	int getQueued() {
+		return queue.size();
+	}
+	
+	/**
+	 * @return number of tasks done
+	 */
+	long getDone() {
+		return done.sum();
+	}
+	
+	/**
+	 * Stop stage without waiting for tasks in queue, task already running is interrupted.
+	 */
+	@Override
+	public void close() throws IOException {
+		thread.interrupt();
+		try {
+			stopped.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while stopping stage " + name);
+		}
+	}
+}
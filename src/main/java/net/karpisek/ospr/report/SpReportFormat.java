@@ -0,0 +1,42 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.report;
+
+/**
+ * Format of written report.
+ */
+public enum SpReportFormat {
+	/**
+	 * Excel workbook with files and folders sheets, rows over 1,048,576 rows limit of sheet continue in files_2, files_3, ... sheets.
+	 */
+	XLSX("xlsx"),
+	/**
+	 * Comma separated values, folder rollups are written into separate file.
+	 */
+	CSV("csv"),
+	/**
+	 * JSON lines, one object per line, folder rollups are written into separate file.
+	 */
+	NDJSON("ndjson");
+	
+	private final String extension;
+	
+	private SpReportFormat(String extension) {
+		this.extension = extension;
+	}
+	
+	/**
+	 * @return usual file name extension of format, without dot
+	 */
+	public String getExtension() {
+		return extension;
+	}
+}
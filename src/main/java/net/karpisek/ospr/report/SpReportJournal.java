@@ -0,0 +1,223 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.report;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Strings;
+import com.google.common.base.Verify;
+import com.google.common.base.VerifyException;
+import com.google.common.collect.Lists;
+
+import net.karpisek.ospr.net.SpFile;
+import net.karpisek.ospr.net.SpFileProperties;
+import net.karpisek.ospr.net.SpObjectCodec;
+
+/**
+ * Journal of written report rows and finished folders, so interrupted report can be resumed without fetching finished subtrees again.
+ * 
+ * Each line is one record encoded by {@link SpObjectCodec}: header with traversed folder and maximal depth, written row 
+ * (file followed by its properties if it has any) or finished folder with its {@link SpFolderRollup}. Journal is flushed 
+ * after each finished folder, finished folders are checkpoints of traversal. Incomplete last record of interrupted run is dropped when resumed.
+ */
+class SpReportJournal implements Closeable {
+	private static final Logger LOG = LoggerFactory.getLogger(SpReportJournal.class);
+	
+	private static final String HEADER = "ospr-journal";
+	private static final String VERSION = "1";
+	private static final String ROW = "R";
+	private static final String FOLDER = "F";
+	private static final int ROLLUP_FIELDS = 6;
+	
+	/**
+	 * Start new journal, existing one is overwritten.
+	 */
+	static SpReportJournal create(Path path, String folder, int maxDepth) throws IOException {
+		SpReportJournal journal = new SpReportJournal(Files.newBufferedWriter(path, StandardCharsets.UTF_8));
+		journal.append(Lists.newArrayList(HEADER, VERSION, folder, Integer.toString(maxDepth)));
+		journal.writer.flush();
+		return journal;
+	}
+	
+	/**
+	 * Continue existing journal, its rows and folder rollups are passed to writers in order they were written.
+	 * New journal is started if it does not exist yet.
+	 * @param rows receiving rows written by interrupted run
+	 * @param rollups receiving rollups of folders finished by interrupted run
+	 */
+	static SpReportJournal resume(Path path, String folder, int maxDepth, SpFilePropertiesEnricher.IWriter rows, SpFolderRollupVisitor.IWriter rollups) throws IOException {
+		if(!Files.exists(path)) {
+			LOG.info("journal {} does not exist, starting from scratch", path);
+			return create(path, folder, maxDepth);
+		}
+		dropIncompleteRecord(path);
+		
+		Map<String, SpFolderRollup> finishedFolders = new HashMap<>();
+		Set<String> writtenFiles = new HashSet<>();
+		int count = 0;
+		try(BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)){
+			List<String> header = SpObjectCodec.split(Strings.nullToEmpty(reader.readLine()));
+			Verify.verify(header.size() == 4 && HEADER.equals(header.get(0)) && VERSION.equals(header.get(1)), "journal %s has unknown format", path);
+			Verify.verify(
+					folder.equals(header.get(2)) && Integer.toString(maxDepth).equals(header.get(3)), 
+					"journal %s was written for folder=%s maxDepth=%s, can not resume folder=%s maxDepth=%s", 
+					path, header.get(2), header.get(3), folder, maxDepth
+					);
+			for(String line = reader.readLine(); line != null; line = reader.readLine()) {
+				List<String> fields = SpObjectCodec.split(line);
+				if(FOLDER.equals(fields.get(0)) && fields.size() == 2) {
+					//finished by version without rollups
+					finishedFolders.put(fields.get(1), null);
+				}
+				else if(FOLDER.equals(fields.get(0)) && fields.size() == 2 + ROLLUP_FIELDS) {
+					SpFolderRollup rollup = decodeRollup(fields.get(1), fields.subList(2, fields.size()));
+					rollups.write(rollup);
+					finishedFolders.put(fields.get(1), rollup);
+				}
+				else if(ROW.equals(fields.get(0)) && (fields.size() == 1 + SpObjectCodec.FILE_FIELDS || fields.size() == 1 + SpObjectCodec.FILE_FIELDS + SpObjectCodec.PROPERTIES_FIELDS)) {
+					SpFile file = SpObjectCodec.decodeFile(fields.subList(1, 1 + SpObjectCodec.FILE_FIELDS));
+					List<String> properties = fields.subList(1 + SpObjectCodec.FILE_FIELDS, fields.size());
+					rows.write(file, properties.isEmpty() ? null : SpObjectCodec.decodeProperties(properties));
+					writtenFiles.add(file.getServerRelativeUrl());
+					count++;
+				}
+				else {
+					throw new VerifyException(String.format("journal %s contains unknown record '%s'", path, line));
+				}
+			}
+		}
+		//files of finished folders are never visited again
+		writtenFiles.removeIf(file -> finishedFolders.containsKey(file.substring(0, Math.max(0, file.lastIndexOf('/')))));
+		LOG.info("journalResumed path={} rows={} finishedFolders={}", path, count, finishedFolders.size());
+		
+		SpReportJournal journal = new SpReportJournal(Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.APPEND));
+		journal.finishedFolders.putAll(finishedFolders);
+		journal.writtenFiles.addAll(writtenFiles);
+		return journal;
+	}
+	
+	/**
+	 * Truncate journal after its last complete line, interrupted run could write only part of its last record.
+	 */
+	private static void dropIncompleteRecord(Path path) throws IOException {
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)){
+			ByteBuffer buffer = ByteBuffer.allocate(1);
+			long end = channel.size();
+			while(end > 0) {
+				buffer.clear();
+				channel.read(buffer, end - 1);
+				if(buffer.get(0) == '\n') {
+					break;
+				}
+				end--;
+			}
+			if(end < channel.size()) {
+				LOG.info("journal {} incomplete record dropped, bytes={}", path, channel.size() - end);
+				channel.truncate(end);
+			}
+		}
+	}
+	
+	private final BufferedWriter writer;
+	private final Map<String, SpFolderRollup> finishedFolders = new HashMap<>();
+	private final Set<String> writtenFiles = new HashSet<>();
+	
+	private SpReportJournal(BufferedWriter writer) {
+		this.writer = writer;
+	}
+	
+	/**
+	 * @return true if folder with its whole subtree was already finished by interrupted run
+	 */
+	boolean isFinished(String folder) {
+		return finishedFolders.containsKey(folder);
+	}
+	
+	/**
+	 * @return rollup of folder finished by interrupted run, null if folder is not finished or its rollup was not journaled
+	 */
+	SpFolderRollup getRollup(String folder) {
+		return finishedFolders.get(folder);
+	}
+	
+	/**
+	 * @return true if row of file was already written by interrupted run
+	 */
+	boolean isWritten(SpFile file) {
+		return writtenFiles.contains(file.getServerRelativeUrl());
+	}
+	
+	void write(SpFile file, SpFileProperties properties) throws IOException {
+		List<String> fields = Lists.newArrayList(ROW);
+		fields.addAll(SpObjectCodec.encode(file));
+		if(properties != null) {
+			fields.addAll(SpObjectCodec.encode(properties));
+		}
+		append(fields);
+	}
+	
+	/**
+	 * Record folder as finished, all its rows and rows of its subfolders have to be written already.
+	 */
+	void postVisitFolder(SpFolderRollup rollup) throws IOException {
+		append(Lists.newArrayList(
+				FOLDER, 
+				rollup.getServerRelativeUrl(), 
+				Integer.toString(rollup.getDepth()), 
+				Long.toString(rollup.getFiles()), 
+				Long.toString(rollup.getFolders()), 
+				Long.toString(rollup.getBytes()), 
+				Integer.toString(rollup.getMaxDepth()), 
+				rollup.getNewest() == null ? "" : rollup.getNewest().toString()
+				));
+		writer.flush();
+	}
+	
+	private static SpFolderRollup decodeRollup(String folder, List<String> fields) {
+		return new SpFolderRollup(
+				folder, 
+				Integer.parseInt(fields.get(0)), 
+				Long.parseLong(fields.get(1)), 
+				Long.parseLong(fields.get(2)), 
+				Long.parseLong(fields.get(3)), 
+				Integer.parseInt(fields.get(4)), 
+				fields.get(5).isEmpty() ? null : Instant.parse(fields.get(5))
+				);
+	}
+	
+	private void append(List<String> fields) throws IOException {
+		writer.write(SpObjectCodec.join(fields));
+		writer.write('\n');
+	}
+	
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+}
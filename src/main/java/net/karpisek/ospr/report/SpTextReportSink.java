@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.report;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import net.karpisek.ospr.net.SpFile;
+import net.karpisek.ospr.net.SpFileProperties;
+import net.karpisek.ospr.net.SpFileProperties.CoreProperty;
+
+/**
+ * Writes report as text files with one record per line, file rows into output path and folder rollups into its sibling
+ * with "_folders" suffix (like report.csv and report_folders.csv).
+ * 
+ * Records are written through buffer straight into partial files next to outputs, which are renamed to outputs when finished,
+ * memory used does not depend on size of report.
+ */
+abstract class SpTextReportSink implements ISpReportSink {
+	private static final String PART_SUFFIX = ".part";
+	
+	/**
+	 * @return path of folder rollups written with file rows into output path
+	 */
+	static Path foldersPath(Path outputPath) {
+		String name = outputPath.getFileName().toString();
+		int extension = name.lastIndexOf('.');
+		if(extension < 0) {
+			return outputPath.resolveSibling(name + "_folders");
+		}
+		return outputPath.resolveSibling(name.substring(0, extension) + "_folders" + name.substring(extension));
+	}
+	
+	private static Path partPath(Path path) {
+		return path.resolveSibling(path.getFileName() + PART_SUFFIX);
+	}
+	
+	private final List<String> fileColumns = ISpReportSink.fileColumns();
+	private final List<String> folderColumns = ISpReportSink.folderColumns();
+	private final Path filesPath;
+	private final Path foldersPath;
+	private final BufferedWriter files;
+	private final BufferedWriter folders;
+	private boolean finished;
+	
+	SpTextReportSink(Path outputPath) throws IOException {
+		this.filesPath = outputPath;
+		this.foldersPath = foldersPath(outputPath);
+		this.files = Files.newBufferedWriter(partPath(filesPath), StandardCharsets.UTF_8);
+		this.folders = Files.newBufferedWriter(partPath(foldersPath), StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Write header of output, nothing for formats without header.
+	 */
+	abstract void writeHeader(Writer writer, List<String> columns) throws IOException;
+	
+	/**
+	 * Write one record terminated by line break.
+	 * @param values of columns, {@link String}, {@link Number}, {@link java.time.Instant} or null for missing value
+	 */
+	abstract void writeRecord(Writer writer, List<String> columns, List<Object> values) throws IOException;
+	
+	@Override
+	public void write(SpFile file, SpFileProperties properties) throws IOException {
+		List<Object> values = Lists.newArrayList(
+				file.getName(), 
+				file.getServerRelativeUrl(), 
+				file.getTimeLastModified(), 
+				file.getTimeCreated(), 
+				file.getLength(), 
+				file.getVersion().toString()
+				);
+		for (CoreProperty property : SpFileProperties.CoreProperty.values()) {
+			values.add(properties == null ? null : properties.getValue(property, null));
+		}
+		writeRecord(files, fileColumns, values);
+	}
+	
+	@Override
+	public void write(SpFolderRollup rollup) throws IOException {
+		List<Object> values = Lists.newArrayList(
+				rollup.getServerRelativeUrl(), 
+				rollup.getDepth(), 
+				rollup.getFiles(), 
+				rollup.getFolders(), 
+				rollup.getBytes(), 
+				rollup.getMaxDepth(), 
+				rollup.getNewest()
+				);
+		writeRecord(folders, folderColumns, values);
+	}
+	
+	/**
+	 * Write headers of both outputs, subclass calls it once it is constructed.
+	 */
+	void start() throws IOException {
+		writeHeader(files, fileColumns);
+		writeHeader(folders, folderColumns);
+	}
+	
+	@Override
+	public void finish() throws IOException {
+		files.close();
+		folders.close();
+		Files.move(partPath(filesPath), filesPath, StandardCopyOption.REPLACE_EXISTING);
+		Files.move(partPath(foldersPath), foldersPath, StandardCopyOption.REPLACE_EXISTING);
+		finished = true;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		try {
+			files.close();
+			folders.close();
+		}
+		finally {
+			if(!finished) {
+				//partial outputs of failed report are not kept
+				Files.deleteIfExists(partPath(filesPath));
+				Files.deleteIfExists(partPath(foldersPath));
+			}
+		}
+	}
+}
@@ -0,0 +1,251 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.report;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import net.karpisek.ospr.net.SpFile;
+import net.karpisek.ospr.net.SpFileProperties;
+
+/**
+ * Writes report as workbook with "files" sheet of file rows and "folders" sheet of folder rollups.
+ * 
+ * Workbook is kept in memory or streamed into temporary files, it is written to output path when finished. 
+ * Rows over sheet row limit continue in next sheet of the same kind, "files_2", "files_3" and so on. In memory workbook 
+ * keeps rows of all its sheets, so only streamed workbook writes reports over sheet row limit in constant memory.
+ * 
+ * Column widths are estimated from the longest text written into column, measuring rendered text of each cell 
+ * by {@link Sheet#autoSizeColumn(int)} would take longer than writing the whole report.
+ */
+class SpXlsxReportSink implements ISpReportSink {
+	/**
+	 * Maximal column width allowed by excel, in characters.
+	 */
+	private static final int MAX_COLUMN_WIDTH = 255;
+	
+	/**
+	 * Characters added to widest text of column, so text does not touch column border.
+	 */
+	private static final int COLUMN_PADDING = 2;
+	
+	/**
+	 * @return number of characters of value formatted by {@link ReportCellStyles#NUMBER_FORMAT}
+	 */
+	static int numberWidth(long value) {
+		int digits = Long.toString(Math.abs(value)).length();
+		return digits + (digits - 1) / 3 + (value < 0 ? 1 : 0);
+	}
+	
+	/**
+	 * Sheets of one kind of rows, new sheet with header row is added when current one is full.
+	 */
+	private class SheetSeries {
+		private final String name;
+		private final List<String> header;
+		private final List<Sheet> sheets = Lists.newArrayList();
+		private int rowNum;
+		//widest text of each column of current sheet
+		private int[] widths;
+		
+		SheetSeries(String name, List<String> header) {
+			this.name = name;
+			this.header = header;
+			addSheet();
+		}
+		
+		Row createRow() {
+			if(rowNum >= maxRows) {
+				addSheet();
+			}
+			return current().createRow(rowNum++);
+		}
+		
+		private Sheet current() {
+			return sheets.get(sheets.size() - 1);
+		}
+		
+		private void addSheet() {
+			String sheetName = sheets.isEmpty() ? name : name + "_" + (sheets.size() + 1);
+			Sheet sheet = workbook.createSheet(sheetName);
+			if(!sheets.isEmpty()) {
+				sizeColumns();
+				//keep sheets of the same kind together
+				workbook.setSheetOrder(sheetName, workbook.getSheetIndex(current()) + 1);
+			}
+			sheets.add(sheet);
+			widths = new int[header.size()];
+			
+			Row row = sheet.createRow(0);
+			for (int i = 0; i < header.size(); i++) {
+				createTextCell(row, i, header.get(i), null);
+			}
+			rowNum = 1;
+		}
+		
+		/**
+		 * Set widths of columns of current sheet, widths are not limited by rows flushed by streaming workbook.
+		 */
+		void sizeColumns() {
+			for (int i = 0; i < widths.length; i++) {
+				current().setColumnWidth(i, Math.min(MAX_COLUMN_WIDTH, widths[i] + COLUMN_PADDING) * 256);
+			}
+		}
+		
+		private void measure(int colNumber, int width) {
+			if(colNumber < widths.length && width > widths[colNumber]) {
+				widths[colNumber] = width;
+			}
+		}
+		
+		/**
+		 * @param style of cell, null for default style
+		 */
+		Cell createTextCell(Row row, int colNumber, String value, CellStyle style) {
+			Cell cell = row.createCell(colNumber);
+			cell.setCellValue(value);
+			if(style != null) {
+				cell.setCellStyle(style);
+			}
+			measure(colNumber, value.length());
+			return cell;
+		}
+		
+		Cell createNumberCell(Row row, int colNumber, long value) {
+			Cell cell = row.createCell(colNumber);
+			cell.setCellValue(value);
+			cell.setCellStyle(styles.getNumber());
+			measure(colNumber, numberWidth(value));
+			return cell;
+		}
+		
+		Cell createTimestampCell(Row row, int colNumber, Instant timestamp) {
+			Cell cell = row.createCell(colNumber);
+			cell.setCellValue(Date.from(timestamp));
+			cell.setCellStyle(styles.getTimestamp());
+			measure(colNumber, ReportCellStyles.TIMESTAMP_FORMAT.length());
+			return cell;
+		}
+	}
+	
+	private final Path outputPath;
+	private final Workbook workbook;
+	private final int maxRows;
+	private final ReportCellStyles styles;
+	private final SheetSeries fileSheets;
+	private final SheetSeries folderSheets;
+	
+	/**
+	 * @param rowAccessWindowSize how many last rows to keep in memory, {@link SpFileTreeReporter#IN_MEMORY} to keep whole report in memory
+	 */
+	SpXlsxReportSink(Path outputPath, int rowAccessWindowSize) {
+		this(outputPath, rowAccessWindowSize, SpreadsheetVersion.EXCEL2007.getMaxRows());
+	}
+	
+	/**
+	 * @param maxRows maximal number of rows in one sheet including its header row
+	 */
+	SpXlsxReportSink(Path outputPath, int rowAccessWindowSize, int maxRows) {
+		Preconditions.checkArgument(maxRows > 1, "Illegal max rows value, must be > 1 (is '%s')", maxRows);
+		this.outputPath = outputPath;
+		this.workbook = createWorkbook(rowAccessWindowSize);
+		this.maxRows = maxRows;
+		this.styles = new ReportCellStyles(workbook);
+		this.fileSheets = new SheetSeries("files", ISpReportSink.fileColumns());
+		this.folderSheets = new SheetSeries("folders", ISpReportSink.folderColumns());
+	}
+	
+	private static Workbook createWorkbook(int rowAccessWindowSize) {
+		if(rowAccessWindowSize == SpFileTreeReporter.IN_MEMORY) {
+			return new XSSFWorkbook();
+		}
+		SXSSFWorkbook workbook = new SXSSFWorkbook(rowAccessWindowSize) {
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				}
+				finally {
+					//delete temporary files with flushed rows, also when report failed
+					dispose();
+				}
+			}
+		};
+		workbook.setCompressTempFiles(true);
+		return workbook;
+	}
+	
+	@Override
+	public void write(SpFile file, SpFileProperties properties) {
+		AtomicInteger colNumber = new AtomicInteger();
+		Row row = fileSheets.createRow();
+		fileSheets.createTextCell(row, colNumber.getAndIncrement(), file.getName(), null);
+		fileSheets.createTextCell(row, colNumber.getAndIncrement(), file.getServerRelativeUrl(), null);
+		fileSheets.createTimestampCell(row, colNumber.getAndIncrement(), file.getTimeLastModified());
+		fileSheets.createTimestampCell(row, colNumber.getAndIncrement(), file.getTimeCreated());
+		fileSheets.createNumberCell(row, colNumber.getAndIncrement(), file.getLength());
+		fileSheets.createTextCell(row, colNumber.getAndIncrement(), file.getVersion().toString(), styles.getText());
+		
+		if(properties != null) {
+			properties.keysAndValuesDo((property, value) -> {
+				fileSheets.createTextCell(row, colNumber.getAndIncrement(), value, null);
+			});
+		}
+	}
+	
+	@Override
+	public void write(SpFolderRollup rollup) {
+		int colNumber = 0;
+		Row row = folderSheets.createRow();
+		folderSheets.createTextCell(row, colNumber++, rollup.getServerRelativeUrl(), null);
+		folderSheets.createNumberCell(row, colNumber++, rollup.getDepth());
+		folderSheets.createNumberCell(row, colNumber++, rollup.getFiles());
+		folderSheets.createNumberCell(row, colNumber++, rollup.getFolders());
+		folderSheets.createNumberCell(row, colNumber++, rollup.getBytes());
+		folderSheets.createNumberCell(row, colNumber++, rollup.getMaxDepth());
+		if(rollup.getNewest() != null) {
+			folderSheets.createTimestampCell(row, colNumber++, rollup.getNewest());
+		}
+	}
+	
+	@Override
+	public void finish() throws IOException {
+		fileSheets.sizeColumns();
+		folderSheets.sizeColumns();
+		
+		try (OutputStream outputStream = Files.newOutputStream(outputPath)){
+			workbook.write(outputStream);
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		workbook.close();
+	}
+}
@@ -0,0 +1,37 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class ParallelismConverterTest {
+	@Rule
+	public ExpectedException thrown = ExpectedException.none();
+	
+	@Test
+	public void test_1() throws Exception {
+		assertEquals(1, new Ospr.ParallelismConverter().convert("1").intValue());
+	}
+	@Test
+	public void test_16() throws Exception {
+		assertEquals(16, new Ospr.ParallelismConverter().convert("16").intValue());
+	}
+	@Test
+	public void test_unsupported() throws Exception {
+	    thrown.expect(IllegalArgumentException.class);
+	    thrown.expectMessage("Illegal parallelism value, must be > 0 (is '0')");
+		new Ospr.ParallelismConverter().convert("0").intValue();
+	}
+}
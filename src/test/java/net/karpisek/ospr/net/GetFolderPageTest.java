@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.stream.Collectors;
+
+import org.jdom2.JDOMException;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import net.karpisek.ospr.Ospr;
+
+public class GetFolderPageTest {
+	@Test
+	public void testParseFolderPageResponse() throws IOException, JDOMException {
+		String xml = Ospr.readResource("getFolderPageResponse.xml");
+		assertNotNull("Failed to load test resource", xml);
+		
+		GetFolderPage.Result page = new GetFolderPage(null, "").parse(xml);
+		
+		assertEquals(Lists.newArrayList("test1.txt", "test2.txt"), page.getChildren().stream().map(each -> each.getName()).collect(Collectors.toList()));
+		assertEquals(Lists.newArrayList("/sites/test1site/Shared Documents/test1.txt", "/sites/test1site/Shared Documents/test2.txt"), page.getChildren().stream().map(each -> each.getServerRelativeUrl()).collect(Collectors.toList()));
+		assertEquals(
+				"https://testovaci327.sharepoint.com/sites/test1site/_api/Web/GetFolderByServerRelativeUrl('%2Fsites%2Ftest1site%2FShared%20Documents')/Files?%24skiptoken=Paged%3DTRUE%26p_FileLeafRef%3Dtest2.txt&%24top=2&%24orderby=Name", 
+				page.getNextUrl()
+				);
+	}
+	
+	@Test
+	public void testParseFolderPageResponse_json() throws IOException, JDOMException {
+		String url = "https://testovaci327.sharepoint.com/sites/test1site/_api/Web/GetFolderByServerRelativeUrl(%27/sites/test1site/Shared%20Documents%27)/Folders?$top=2&$orderby=Name";
+		String json = "{\"odata.nextLink\": \"https://testovaci327.sharepoint.com/sites/test1site/_api/Web/GetFolderByServerRelativeUrl(%27/sites/test1site/Shared%20Documents%27)/Folders?%24skiptoken=Paged%3dTRUE&%24top=2\", "
+				+ "\"value\": [{\"ItemCount\": 2, \"Name\": \"folder1\", \"ServerRelativeUrl\": \"/sites/test1site/Shared Documents/folder1\", \"TimeCreated\": \"2018-11-10T16:25:33Z\", \"TimeLastModified\": \"2018-11-10T16:39:28Z\"}]}";
+		
+		GetFolderPage.Result page = new GetFolderPage(null, url, GetFolderPage.FOLDERS, SpResponseFormat.JSON).parse(json);
+		
+		assertEquals(1, page.getChildren().size());
+		SpFolder folder = (SpFolder) page.getChildren().get(0);
+		assertEquals("/sites/test1site/Shared Documents/folder1", folder.getServerRelativeUrl());
+		assertEquals(2, folder.getItemCount());
+		assertEquals("https://testovaci327.sharepoint.com/sites/test1site/_api/Web/GetFolderByServerRelativeUrl(%27/sites/test1site/Shared%20Documents%27)/Folders?%24skiptoken=Paged%3dTRUE&%24top=2", page.getNextUrl());
+	}
+	
+	@Test
+	public void testUrl() {
+		assertEquals(
+				"https://localhost/sites/test1site/_api/Web/GetFolderByServerRelativeUrl(%27/sites/test1site/Shared%20Documents%27)/Files?$select=Name,ServerRelativeUrl,TimeLastModified,TimeCreated,Length,MajorVersion,MinorVersion,UniqueId&$top=100&$orderby=Name", 
+				GetFolderPage.url(URI.create("https://localhost/sites/test1site"), "/sites/test1site/Shared Documents", GetFolderPage.FILES, 100)
+				);
+	}
+	
+	@Test
+	public void testParseLastPage() throws IOException, JDOMException {
+		String xml = Ospr.readResource("getFolderPageResponse.xml").replaceAll("<link rel=\"next\"[^>]*>", "");
+		
+		GetFolderPage.Result page = new GetFolderPage(null, "").parse(xml);
+		
+		assertEquals(2, page.getChildren().size());
+		assertNull(page.getNextUrl());
+	}
+}
@@ -13,11 +13,14 @@ package net.karpisek.ospr.net;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import org.jdom2.JDOMException;
@@ -25,6 +28,7 @@ import org.junit.Test;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 import net.karpisek.ospr.Ospr;
 
@@ -50,5 +54,55 @@ public class GetFolderTest {
 		assertEquals(Lists.newArrayList("Forms", "folder1"), folder.getChildren().stream().filter(each -> each.isFolder()).map(each -> each.getName()).collect(Collectors.toList()));
 		
 		assertEquals("test1.txt=1.0,test2.txt=4.1,test3.txt=1.0", Joiner.on(",").join(folder.getChildren().stream().filter(o->o.isFile()).map(o->o.getName() + "=" +((SpFile)o).getVersion()).collect(Collectors.toList())));
+		assertEquals("0bcffc1b-dfac-40e3-8bdf-3307c6cdfb2c", folder.getChildren().stream().filter(each -> each.getName().equals("test1.txt")).findFirst().get().getUniqueId());
 	}	
+	
+	@Test
+	public void testParseFolderResponse_json() throws IOException, JDOMException {
+		GetFolder request = new GetFolder(null, URI.create("https//localhost/sites/test1site"), "", true, SpResponseFormat.ATOM);
+		SpFolder expected = request.parse(Ospr.readResource("getFolderResponse.xml"));
+		
+		String json = Ospr.readResource("getFolderResponse.json");
+		assertNotNull("Failed to load test resource", json);
+		GetFolder jsonRequest = new GetFolder(null, URI.create("https//localhost/sites/test1site"), "", true, SpResponseFormat.JSON);
+		for (SpFolder actual : Lists.newArrayList(jsonRequest.parse(json), jsonRequest.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))))) {
+			assertEquals(expected.toString(), actual.toString());
+			assertEquals(
+					expected.getChildren().stream().map(each -> each.getServerRelativeUrl() + "=" + each.getTimeLastModified() + "/" + each.getTimeCreated()).collect(Collectors.toList()), 
+					actual.getChildren().stream().map(each -> each.getServerRelativeUrl() + "=" + each.getTimeLastModified() + "/" + each.getTimeCreated()).collect(Collectors.toList())
+					);
+			assertEquals("test1.txt=1.0,test2.txt=4.1,test3.txt=1.0", Joiner.on(",").join(actual.getChildren().stream().filter(o->o.isFile()).map(o->o.getName() + "=" +((SpFile)o).getVersion()).collect(Collectors.toList())));
+			assertEquals(2, ((SpFolder) actual.getChildren().stream().filter(each -> each.getName().equals("folder1")).findFirst().get()).getItemCount());
+		}
+	}
+	
+	@Test
+	public void testParseFolderResponse_stream() throws IOException, JDOMException {
+		String xml = Ospr.readResource("getFolderResponse.xml");
+		GetFolder request = new GetFolder(null, URI.create("https//localhost/sites/test1site"), "");
+		
+		SpFolder expected = request.parse(xml);
+		SpFolder actual = request.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+		
+		assertEquals(expected.toString(), actual.toString());
+		assertEquals(
+				expected.getChildren().stream().map(each -> each.getServerRelativeUrl() + "=" + each.getTimeLastModified()).collect(Collectors.toList()), 
+				actual.getChildren().stream().map(each -> each.getServerRelativeUrl() + "=" + each.getTimeLastModified()).collect(Collectors.toList())
+				);
+		assertEquals(8, ((SpFile) actual.getChildren().stream().filter(each -> each.isFile()).findFirst().get()).getLength());
+	}
+	
+	@Test
+	public void testParseFile_largeLength() {
+		Map<String, String> properties = Maps.newHashMap();
+		properties.put("Name", "backup.zip");
+		properties.put("ServerRelativeUrl", "/sites/test1site/Shared Documents/backup.zip");
+		properties.put("TimeLastModified", "2018-11-10T15:31:44Z");
+		properties.put("TimeCreated", "2018-11-10T15:31:43Z");
+		properties.put("Length", "5368709120");
+		properties.put("MajorVersion", "1");
+		properties.put("MinorVersion", "0");
+		
+		assertEquals(5_368_709_120L, GetFolder.parseFile(properties::get).getLength());
+	}
 }
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.jdom2.JDOMException;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import net.karpisek.ospr.Ospr;
+
+public class GetSpChangesTest {
+	private static final URI SITE_URI = URI.create("https://localhost/sites/test1site");
+	
+	static List<String> toStrings(List<SpChange> changes) {
+		return changes.stream().map(each -> each.getType() + " " + each.getServerRelativeUrl() + " " + each.isFolder() + " " + each.getChangeToken() + " " + each.getUniqueId()).collect(Collectors.toList());
+	}
+	
+	@Test
+	public void testParseResponse() throws IOException, JDOMException {
+		String xml = Ospr.readResource("getSpChangesResponse.xml");
+		assertNotNull("Failed to load test resource", xml);
+		
+		List<SpChange> changes = new GetSpChanges(null, SITE_URI, "/sites/test1site/Shared Documents", "1;3;x;0;1000", SpResponseFormat.ATOM).parse(xml);
+		
+		assertEquals(Lists.newArrayList(
+				"ADD /sites/test1site/Shared Documents/folder1/new.txt false 1;3;5f0c5c5e-0000-0000-0000-000000000000;636792000000000000;1001 6a1e2f3c-1111-4000-8000-000000000011",
+				"RENAME /sites/test1site/Shared Documents/folder2 true 1;3;5f0c5c5e-0000-0000-0000-000000000000;636792000000000000;1002 6a1e2f3c-1111-4000-8000-000000000012",
+				"DELETE_OBJECT null false 1;3;5f0c5c5e-0000-0000-0000-000000000000;636792000000000000;1003 6a1e2f3c-1111-4000-8000-000000000007"
+				), toStrings(changes));
+	}
+	
+	@Test
+	public void testParseResponse_json() throws IOException, JDOMException {
+		List<SpChange> expected = new GetSpChanges(null, SITE_URI, "/sites/test1site/Shared Documents", "1;3;x;0;1000", SpResponseFormat.ATOM).parse(Ospr.readResource("getSpChangesResponse.xml"));
+		
+		String json = Ospr.readResource("getSpChangesResponse.json");
+		assertNotNull("Failed to load test resource", json);
+		List<SpChange> actual = new GetSpChanges(null, SITE_URI, "/sites/test1site/Shared Documents", "1;3;x;0;1000", SpResponseFormat.JSON).parse(json);
+		
+		assertEquals(toStrings(expected), toStrings(actual));
+	}
+	
+	@Test
+	public void testUrl() {
+		assertEquals(
+				"https://localhost/sites/test1site/_api/web/GetList(@u)/GetChanges?@u=%27%2Fsites%2Ftest1site%2FShared%20Documents%27", 
+				GetSpChanges.url(SITE_URI, "/sites/test1site/Shared Documents")
+				);
+		assertEquals(
+				"https://localhost/sites/test1site/_api/web/GetList(@u)?$select=CurrentChangeToken&@u=%27%2Fsites%2Ftest1site%2FBob%27%27s%20Documents%27", 
+				GetSpChangeToken.url(SITE_URI, "/sites/test1site/Bob's Documents")
+				);
+	}
+	
+	@Test
+	public void testIsChangeTokenRejected() {
+		assertTrue(GetSpChanges.isChangeTokenRejected(500, "{\"odata.error\":{\"code\":\"-2146232832, Microsoft.SharePoint.SPException\",\"message\":{\"lang\":\"en-US\",\"value\":\"The changeToken refers to a time before the start of the current change log.\"}}}"));
+		assertTrue(GetSpChanges.isChangeTokenRejected(400, "Invalid change token"));
+		assertFalse(GetSpChanges.isChangeTokenRejected(500, "Unexpected failure"));
+		assertFalse(GetSpChanges.isChangeTokenRejected(403, "Access denied, changeToken"));
+	}
+	
+	@Test
+	public void testBody() {
+		assertEquals(
+				"{\"query\":{\"__metadata\":{\"type\":\"SP.ChangeQuery\"},"
+				+ "\"Item\":true,\"Add\":true,\"Update\":true,\"DeleteObject\":true,\"Rename\":true,\"Move\":true,\"Restore\":true,\"SystemUpdate\":true,"
+				+ "\"FetchLimit\":1000,"
+				+ "\"ChangeTokenStart\":{\"__metadata\":{\"type\":\"SP.ChangeToken\"},\"StringValue\":\"1;3;x;0;1000\"}}}", 
+				GetSpChanges.body("1;3;x;0;1000")
+				);
+	}
+	
+	@Test
+	public void testParseChangeToken() throws IOException, JDOMException {
+		String xml = "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+				+ "<entry xml:base=\"https://localhost/sites/test1site/_api/\" xmlns=\"http://www.w3.org/2005/Atom\" xmlns:d=\"http://schemas.microsoft.com/ado/2007/08/dataservices\" xmlns:m=\"http://schemas.microsoft.com/ado/2007/08/dataservices/metadata\">"
+				+ "<content type=\"application/xml\"><m:properties><d:CurrentChangeToken m:type=\"SP.ChangeToken\"><d:StringValue>1;3;x;0;1003</d:StringValue></d:CurrentChangeToken></m:properties></content>"
+				+ "</entry>";
+		assertEquals("1;3;x;0;1003", new GetSpChangeToken(null, SITE_URI, "/sites/test1site/Shared Documents", SpResponseFormat.ATOM).parse(xml));
+		
+		String json = "{\"CurrentChangeToken\":{\"StringValue\":\"1;3;x;0;1003\"}}";
+		assertEquals("1;3;x;0;1003", new GetSpChangeToken(null, SITE_URI, "/sites/test1site/Shared Documents", SpResponseFormat.JSON).parse(json));
+	}
+}
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+
+import org.jdom2.JDOMException;
+import org.junit.Test;
+
+import com.google.common.base.VerifyException;
+import com.google.common.collect.Lists;
+
+import net.karpisek.ospr.Ospr;
+import net.karpisek.ospr.net.SpFileProperties.CoreProperty;
+
+public class GetSpFilePropertiesBatchTest {
+	private static final String BOUNDARY = "batchresponse_8ad6e0ea-2b1b-4d7a-a4a5-0f4cbe2ffb43";
+	
+	private static String part(String status, String xml) {
+		return "--" + BOUNDARY + "\r\n"
+				+ "Content-Type: application/http\r\n"
+				+ "Content-Transfer-Encoding: binary\r\n"
+				+ "\r\n"
+				+ "HTTP/1.1 " + status + "\r\n"
+				+ "CONTENT-TYPE: application/atom+xml;type=entry;charset=utf-8\r\n"
+				+ "\r\n"
+				+ xml + "\r\n";
+	}
+	
+	@Test
+	public void testParseBatchResponse() throws IOException, JDOMException {
+		String xml = Ospr.readResource("getSpFilePropertiesResponse.xml");
+		assertNotNull("Failed to load test resource", xml);
+		
+		String content = part("200 OK", xml) + part("200 OK", xml) + "--" + BOUNDARY + "--\r\n";
+		List<String> files = Lists.newArrayList("/sites/test1site/Shared Documents/a.docx", "/sites/test1site/Shared Documents/b.docx");
+		List<SpFileProperties> properties = new GetSpFilePropertiesBatch(null, URI.create("https//localhost/sites/test1site"), files).parse(content);
+		
+		assertEquals(2, properties.size());
+		for (SpFileProperties each : properties) {
+			assertEquals("Subject text", each.getValue(CoreProperty.SUBJECT, null));
+			assertEquals("keyword1 keyword2", each.getValue(CoreProperty.KEYWORDS, null));
+		}
+	}
+	
+	@Test
+	public void testParseBatchResponse_json() throws IOException, JDOMException {
+		String json = Ospr.readResource("getSpFilePropertiesResponse.json");
+		
+		String content = part("200 OK", json) + "--" + BOUNDARY + "--\r\n";
+		List<String> files = Lists.newArrayList("/sites/test1site/Shared Documents/a.docx");
+		List<SpFileProperties> properties = new GetSpFilePropertiesBatch(null, URI.create("https//localhost/sites/test1site"), files, SpResponseFormat.JSON).parse(content);
+		
+		assertEquals(1, properties.size());
+		assertEquals("Subject text", properties.get(0).getValue(CoreProperty.SUBJECT, null));
+	}
+	
+	@Test
+	public void testParseBatchResponse_failedPart() throws IOException, JDOMException {
+		String xml = Ospr.readResource("getSpFilePropertiesResponse.xml");
+		
+		String content = part("200 OK", xml) + part("404 Not Found", "") + "--" + BOUNDARY + "--\r\n";
+		List<String> files = Lists.newArrayList("/sites/test1site/Shared Documents/a.docx", "/sites/test1site/Shared Documents/missing.docx");
+		try {
+			new GetSpFilePropertiesBatch(null, URI.create("https//localhost/sites/test1site"), files).parse(content);
+			fail("Failed part should fail whole batch");
+		}
+		catch (VerifyException e) {
+			assertEquals("response status not ok for file /sites/test1site/Shared Documents/missing.docx, statusCode=404", e.getMessage());
+		}
+	}
+}
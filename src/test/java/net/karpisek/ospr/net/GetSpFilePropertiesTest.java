@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+
+import org.jdom2.JDOMException;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+import net.karpisek.ospr.Ospr;
+import net.karpisek.ospr.net.SpFileProperties.CoreProperty;
+
+public class GetSpFilePropertiesTest {
+	static Map<CoreProperty, String> toMap(SpFileProperties properties) {
+		Map<CoreProperty, String> result = Maps.newEnumMap(CoreProperty.class);
+		properties.keysAndValuesDo(result::put);
+		return result;
+	}
+	
+	@Test
+	public void testParseResponse() throws IOException, JDOMException {
+		String xml = Ospr.readResource("getSpFilePropertiesResponse.xml");
+		assertNotNull("Failed to load test resource", xml);
+		
+		SpFileProperties properties = new GetSpFileProperties(null, URI.create("https//localhost/sites/test1site"), "").parse(xml);
+		
+		assertEquals("Title text", properties.getValue(CoreProperty.TITLE, null));
+		assertEquals("Subject text", properties.getValue(CoreProperty.SUBJECT, null));
+		assertEquals("comment text", properties.getValue(CoreProperty.COMMENT, null));
+		assertEquals("keyword1 keyword2", properties.getValue(CoreProperty.KEYWORDS, null));
+		assertEquals("Martin Karpisek", properties.getValue(CoreProperty.AUTHOR, null));
+	}
+	
+	@Test
+	public void testUrl() {
+		assertEquals(
+				"https://localhost/sites/test1site/_api/Web/GetFileByServerRelativePath(decodedurl=%27/sites/test1site/Shared%20Documents/a.docx%27)/Properties?$select=vti_x005f_title,Subject,OData__x005f_Comments,Keywords,OData__x005f_Author", 
+				GetSpFileProperties.url(URI.create("https://localhost/sites/test1site"), "/sites/test1site/Shared Documents/a.docx")
+				);
+	}
+	
+	@Test
+	public void testParseResponse_json() throws IOException, JDOMException {
+		String json = Ospr.readResource("getSpFilePropertiesResponse.json");
+		assertNotNull("Failed to load test resource", json);
+		
+		SpFileProperties expected = new GetSpFileProperties(null, URI.create("https//localhost/sites/test1site"), "").parse(Ospr.readResource("getSpFilePropertiesResponse.xml"));
+		SpFileProperties actual = new GetSpFileProperties(null, URI.create("https//localhost/sites/test1site"), "", SpResponseFormat.JSON).parse(json);
+		
+		assertEquals(toMap(expected), toMap(actual));
+	}
+}
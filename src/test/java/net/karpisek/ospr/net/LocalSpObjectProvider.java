@@ -11,10 +11,13 @@
 package net.karpisek.ospr.net;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Instant;
 import java.util.List;
+import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
@@ -27,8 +30,15 @@ import com.google.common.collect.Maps;
 /**
  * Provider of sharepoint files library object information using local file system.
  */
-class LocalSpObjectProvider implements ISpObjectProvider{
+public class LocalSpObjectProvider implements ISpObjectProvider{
 	public static final Instant NOW = Instant.parse("2018-11-10T15:31:43Z");
+	
+	/**
+	 * @return unique id of file or folder derived from its path
+	 */
+	public static String uniqueId(Path path) {
+		return UUID.nameUUIDFromBytes(SpFilesTest.toUnixString(path).getBytes(StandardCharsets.UTF_8)).toString();
+	}
 
 	@Override
 	public SpFolder getFolder(String folder) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
@@ -36,12 +46,12 @@ class LocalSpObjectProvider implements ISpObjectProvider{
 		List<SpFolder> folders = Files
 				.list(Paths.get(folder))
 				.filter(each -> Files.isDirectory(each))
-				.map(path -> new SpFolder(SpFilesTest.toUnixString(path.getFileName()), SpFilesTest.toUnixString(path), NOW, NOW, 0, Lists.newArrayList()))
+				.map(path -> new SpFolder(SpFilesTest.toUnixString(path.getFileName()), SpFilesTest.toUnixString(path), NOW, NOW, 0, Lists.newArrayList(), uniqueId(path)))
 				.collect(Collectors.toList());
 		List<SpFile> files = Files
 				.list(Paths.get(folder))
 				.filter(each -> !Files.isDirectory(each))
-				.map(path -> new SpFile(SpFilesTest.toUnixString(path.getFileName()), SpFilesTest.toUnixString(path), NOW, NOW, 1234567, SpVersion.fromString("1", "0")))
+				.map(path -> new SpFile(SpFilesTest.toUnixString(path.getFileName()), SpFilesTest.toUnixString(path), NOW, NOW, 1234567, SpVersion.fromString("1", "0"), uniqueId(path)))
 				.collect(Collectors.toList());
 		
 		List<SpObject> children = Lists.newArrayList();
@@ -53,7 +63,8 @@ class LocalSpObjectProvider implements ISpObjectProvider{
 				NOW, 
 				NOW, 
 				0,
-				children
+				children,
+				uniqueId(Paths.get(folder))
 				);
 	}
 
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.jdom2.JDOMException;
+import org.junit.Test;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Lists;
+
+public class MemoryCachingSpObjectProviderTest {
+	private static final String ROOT = "src/test/resources/test1site/documents";
+	
+	private static class CountingProvider extends LocalSpObjectProvider {
+		final List<String> fetched = Lists.newArrayList();
+		
+		@Override
+		public SpFolder getFolder(String folder) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+			fetched.add(folder);
+			return super.getFolder(folder);
+		}
+		
+		@Override
+		public SpFileProperties getSpFileProperties(String file) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+			fetched.add(file);
+			return super.getSpFileProperties(file);
+		}
+	}
+	
+	private static class ManualTicker extends Ticker {
+		long nanos;
+		
+		@Override
+		public long read() {
+			return nanos;
+		}
+	}
+	
+	@Test
+	public void testHitsAndMisses() throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		CountingProvider local = new CountingProvider();
+		MemoryCachingSpObjectProvider objectProvider = new MemoryCachingSpObjectProvider.Builder(local).build();
+		
+		SpFolder folder = objectProvider.getFolder(ROOT);
+		assertSame(folder, objectProvider.getFolder(ROOT));
+		objectProvider.getSpFileProperties(ROOT + "/test.docx");
+		List<SpFileProperties> properties = objectProvider.getSpFileProperties(Lists.newArrayList(ROOT + "/test.docx", ROOT + "/test.xlsx", ROOT + "/test.docx"));
+		assertEquals(3, properties.size());
+		assertSame(properties.get(0), properties.get(2));
+		
+		assertEquals(Lists.newArrayList(ROOT, ROOT + "/test.docx", ROOT + "/test.xlsx"), local.fetched);
+		CacheStats stats = objectProvider.getStats();
+		assertEquals(3, stats.hitCount());
+		assertEquals(3, stats.missCount());
+		assertEquals(3, objectProvider.size());
+		
+		//listing is answered from cached folder
+		assertEquals(6, objectProvider.listFolder(ROOT, 10).nextPage().size());
+		assertEquals(3, local.fetched.size());
+	}
+	
+	@Test
+	public void testEvictionByWeight() throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		CountingProvider local = new CountingProvider();
+		//root folder with 6 children weighs 7, test1 folder with 6 children weighs 7
+		MemoryCachingSpObjectProvider objectProvider = new MemoryCachingSpObjectProvider.Builder(local).maximumWeight(10).build();
+		
+		objectProvider.getFolder(ROOT);
+		objectProvider.getFolder(ROOT + "/test1");
+		objectProvider.getFolder(ROOT + "/test1");
+		objectProvider.getFolder(ROOT);
+		
+		assertEquals(Lists.newArrayList(ROOT, ROOT + "/test1", ROOT), local.fetched);
+		assertEquals(1, objectProvider.getStats().hitCount());
+		assertEquals(2, objectProvider.getStats().evictionCount());
+	}
+	
+	@Test
+	public void testTimeToLive() throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		CountingProvider local = new CountingProvider();
+		ManualTicker ticker = new ManualTicker();
+		MemoryCachingSpObjectProvider objectProvider = new MemoryCachingSpObjectProvider.Builder(local).timeToLive(Duration.ofMinutes(1)).ticker(ticker).build();
+		
+		objectProvider.getFolder(ROOT);
+		ticker.nanos += TimeUnit.SECONDS.toNanos(59);
+		objectProvider.getFolder(ROOT);
+		ticker.nanos += TimeUnit.SECONDS.toNanos(2);
+		objectProvider.getFolder(ROOT);
+		
+		assertEquals(Lists.newArrayList(ROOT, ROOT), local.fetched);
+	}
+	
+	@Test
+	public void testFailureNotCached() throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		CountingProvider local = new CountingProvider();
+		MemoryCachingSpObjectProvider objectProvider = new MemoryCachingSpObjectProvider.Builder(local).build();
+		for (int i = 0; i < 2; i++) {
+			try {
+				objectProvider.getFolder(ROOT + "/missing");
+				fail("failure expected");
+			}
+			catch(IOException e) {
+				//same exception as thrown by other provider
+				assertEquals(NoSuchFileException.class, e.getClass());
+			}
+		}
+		assertEquals(2, local.fetched.size());
+	}
+}
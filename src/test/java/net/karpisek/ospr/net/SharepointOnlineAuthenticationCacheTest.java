@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.CookieStore;
+import java.net.HttpCookie;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.karpisek.ospr.Ospr;
+import net.karpisek.ospr.net.SharepointOnlineAuthentication.Result;
+
+public class SharepointOnlineAuthenticationCacheTest {
+	private static final Instant NOW = Instant.parse("2018-11-10T15:31:43Z");
+	private static final SpUri URI = SpUri.fromString("https://testovaci327.sharepoint.com/sites/test1site");
+	
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+	
+	private SharepointOnlineAuthenticationCache cache(Path directory, Instant now) {
+		return new SharepointOnlineAuthenticationCache(directory, Duration.ofMinutes(5), Clock.fixed(now, ZoneOffset.UTC));
+	}
+	
+	private CookieStore cookies() {
+		CookieStore store = new CookieManager().getCookieStore();
+		HttpCookie fedAuth = new HttpCookie("FedAuth", "fedAuthValue");
+		fedAuth.setDomain("testovaci327.sharepoint.com");
+		fedAuth.setPath("/");
+		fedAuth.setSecure(true);
+		fedAuth.setHttpOnly(true);
+		store.add(URI.getServerUri(), fedAuth);
+		HttpCookie rtFa = new HttpCookie("rtFa", "rtFaValue");
+		rtFa.setDomain(".sharepoint.com");
+		rtFa.setPath("/");
+		store.add(URI.getServerUri(), rtFa);
+		return store;
+	}
+	
+	@Test
+	public void testStoreAndLoad() throws IOException {
+		Path directory = temporaryFolder.getRoot().toPath().resolve("cache");
+		Result result = new Result(URI, "rtFaValue", "fedAuthValue", "token", "digest", NOW.plus(Duration.ofMinutes(30)));
+		cache(directory, NOW).store(result, "user@test.onmicrosoft.com", "password", cookies());
+		
+		Path file = cache(directory, NOW).file(URI, "user@test.onmicrosoft.com");
+		assertTrue(Files.exists(file));
+		assertTrue("Content should be encrypted", !new String(Files.readAllBytes(file), "ISO-8859-1").contains("digest"));
+		
+		CookieStore store = new CookieManager().getCookieStore();
+		Result loaded = cache(directory, NOW.plus(Duration.ofMinutes(10))).load(URI, "User@test.onmicrosoft.com", "password", store);
+		assertNotNull(loaded);
+		assertEquals(result.toString(), loaded.toString());
+		assertEquals("fedAuthValue", Ospr.getCookie(store, "FedAuth").getValue());
+		assertEquals("rtFaValue", Ospr.getCookie(store, "rtFa").getValue());
+		assertTrue(Ospr.getCookie(store, "FedAuth").getSecure());
+	}
+	
+	@Test
+	public void testLoad_closeToExpiration() throws IOException {
+		Path directory = temporaryFolder.getRoot().toPath();
+		Result result = new Result(URI, "rtFaValue", "fedAuthValue", "token", "digest", NOW.plus(Duration.ofMinutes(30)));
+		cache(directory, NOW).store(result, "user", "password", cookies());
+		
+		assertNull(cache(directory, NOW.plus(Duration.ofMinutes(26))).load(URI, "user", "password", new CookieManager().getCookieStore()));
+	}
+	
+	@Test
+	public void testLoad_otherPasswordOrUser() throws IOException {
+		Path directory = temporaryFolder.getRoot().toPath();
+		Result result = new Result(URI, "rtFaValue", "fedAuthValue", "token", "digest", NOW.plus(Duration.ofMinutes(30)));
+		cache(directory, NOW).store(result, "user", "password", cookies());
+		
+		assertNull(cache(directory, NOW).load(URI, "user", "other password", new CookieManager().getCookieStore()));
+		assertNull(cache(directory, NOW).load(URI, "other user", "password", new CookieManager().getCookieStore()));
+	}
+}
@@ -0,0 +1,275 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.http.HttpStatus;
+import org.junit.Test;
+
+import net.karpisek.ospr.net.SharepointOnlineAuthentication.Result;
+
+public class SharepointOnlineTokenManagerTest {
+	private static final Instant NOW = Instant.parse("2018-11-10T15:31:43Z");
+	private static final SpUri URI = SpUri.fromString("https://testovaci327.sharepoint.com/sites/test1site");
+	
+	/**
+	 * Clock which time is moved by test.
+	 */
+	private static class TestClock extends Clock {
+		private Instant instant = NOW;
+		
+		@Override
+		public ZoneId getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Instant instant() {
+			return instant;
+		}
+	}
+	
+	private final TestClock clock = new TestClock();
+	private final Queue<Runnable> tasks = new ArrayDeque<>();
+	private final AtomicInteger refreshes = new AtomicInteger();
+	
+	private static Result result(String formDigest, Instant expiration) {
+		return new Result(URI, "rtFa", "fedAuth", "binarySecurityToken", formDigest, expiration);
+	}
+	
+	private SharepointOnlineTokenManager manager(Result authResult) {
+		return new SharepointOnlineTokenManager(
+			() -> result("digest" + refreshes.incrementAndGet(), clock.instant().plus(Duration.ofMinutes(30))), 
+			authResult, 
+			Duration.ofMinutes(5), 
+			Duration.ofMinutes(1), 
+			clock, 
+			tasks::add
+		);
+	}
+	
+	private void runTasks() {
+		while(!tasks.isEmpty()) {
+			tasks.poll().run();
+		}
+	}
+	
+	@Test
+	public void testGetResult() throws Exception {
+		Result initial = result("digest0", NOW.plus(Duration.ofMinutes(30)));
+		SharepointOnlineTokenManager manager = manager(initial);
+		
+		assertSame(initial, manager.getResult());
+		assertTrue(tasks.isEmpty());
+	}
+	
+	@Test
+	public void testGetResult_closeToExpiration() throws Exception {
+		Result initial = result("digest0", NOW.plus(Duration.ofMinutes(30)));
+		SharepointOnlineTokenManager manager = manager(initial);
+		clock.instant = NOW.plus(Duration.ofMinutes(26));
+		
+		//current result is still used while refresh is running, only one refresh is started
+		assertSame(initial, manager.getResult());
+		assertSame(initial, manager.getResult());
+		assertEquals(1, tasks.size());
+		
+		runTasks();
+		assertEquals(1, refreshes.get());
+		assertEquals("digest1", manager.getResult().getFormDigest());
+	}
+	
+	@Test
+	public void testGetResult_expired() throws Exception {
+		Result initial = result("digest0", NOW.plus(Duration.ofMinutes(30)));
+		SharepointOnlineTokenManager manager = manager(initial);
+		clock.instant = NOW.plus(Duration.ofMinutes(31));
+		
+		CompletableFuture<Result> future = manager.getResultAsync();
+		assertTrue(!future.isDone());
+		
+		runTasks();
+		assertEquals("digest1", future.get().getFormDigest());
+	}
+	
+	@Test
+	public void testGetResult_withoutExpiration() throws Exception {
+		Result initial = result("digest0", null);
+		SharepointOnlineTokenManager manager = manager(initial);
+		clock.instant = NOW.plus(Duration.ofDays(1));
+		
+		assertSame(initial, manager.getResult());
+		assertTrue(tasks.isEmpty());
+	}
+	
+	@Test
+	public void testRefreshAsync_alreadyReplaced() throws Exception {
+		Result initial = result("digest0", NOW.plus(Duration.ofMinutes(30)));
+		SharepointOnlineTokenManager manager = manager(initial);
+		
+		CompletableFuture<Result> first = manager.refreshAsync(initial);
+		runTasks();
+		
+		//second request rejected with the same result does not authenticate again
+		CompletableFuture<Result> second = manager.refreshAsync(initial);
+		assertTrue(tasks.isEmpty());
+		assertSame(first.get(), second.get());
+		assertEquals(1, refreshes.get());
+	}
+	
+	@Test
+	public void testExecute_rejected() throws Exception {
+		Result initial = result("digest0", NOW.plus(Duration.ofMinutes(30)));
+		SharepointOnlineTokenManager manager = new SharepointOnlineTokenManager(
+			() -> result("digest" + refreshes.incrementAndGet(), null), initial, Duration.ofMinutes(5), Duration.ofMinutes(1), clock, Runnable::run
+		);
+		
+		String digest = manager.execute(authResult -> {
+			if(authResult == initial) {
+				throw new SpHttpException(HttpStatus.FORBIDDEN_403);
+			}
+			return authResult.getFormDigest();
+		});
+		assertEquals("digest1", digest);
+	}
+	
+	@Test
+	public void testExecute_failed() throws Exception {
+		Result initial = result("digest0", NOW.plus(Duration.ofMinutes(30)));
+		SharepointOnlineTokenManager manager = new SharepointOnlineTokenManager(
+			() -> result("digest" + refreshes.incrementAndGet(), null), initial, Duration.ofMinutes(5), Duration.ofMinutes(1), clock, Runnable::run
+		);
+		
+		try {
+			manager.execute(authResult -> {
+				throw new SpHttpException(HttpStatus.NOT_FOUND_404);
+			});
+			fail("failure expected");
+		}
+		catch(SpHttpException e) {
+			assertEquals(HttpStatus.NOT_FOUND_404, e.getStatus());
+		}
+		assertEquals(0, refreshes.get());
+	}
+	
+	@Test
+	public void testExecute_rejectedRecentlyRefreshed() throws Exception {
+		Result initial = result("digest0", NOW.plus(Duration.ofMinutes(30)));
+		SharepointOnlineTokenManager manager = new SharepointOnlineTokenManager(
+			() -> result("digest" + refreshes.incrementAndGet(), null), initial, Duration.ofMinutes(5), Duration.ofMinutes(1), clock, Runnable::run
+		);
+		AtomicInteger calls = new AtomicInteger();
+		
+		//first rejection refreshes initial result, following ones (e.g. object without permission) do not authenticate again
+		for (int i = 0; i < 3; i++) {
+			try {
+				manager.execute(authResult -> {
+					calls.incrementAndGet();
+					throw new SpHttpException(HttpStatus.FORBIDDEN_403);
+				});
+				fail("failure expected");
+			}
+			catch(SpHttpException e) {
+				assertEquals(HttpStatus.FORBIDDEN_403, e.getStatus());
+			}
+		}
+		assertEquals(1, refreshes.get());
+		assertEquals(4, calls.get());
+		
+		//refreshed result older than minimal age is refreshed again
+		clock.instant = NOW.plus(Duration.ofMinutes(2));
+		String digest = manager.execute(authResult -> {
+			if("digest1".equals(authResult.getFormDigest())) {
+				throw new SpHttpException(HttpStatus.FORBIDDEN_403);
+			}
+			return authResult.getFormDigest();
+		});
+		assertEquals("digest2", digest);
+	}
+	
+	@Test
+	public void testExecute_notRefreshable() throws Exception {
+		Result initial = result("digest0", NOW.plus(Duration.ofMinutes(30)));
+		SharepointOnlineTokenManager manager = new SharepointOnlineTokenManager(initial);
+		AtomicInteger calls = new AtomicInteger();
+		
+		try {
+			manager.execute(authResult -> {
+				calls.incrementAndGet();
+				throw new SpHttpException(HttpStatus.UNAUTHORIZED_401);
+			});
+			fail("failure expected");
+		}
+		catch(SpHttpException e) {
+			assertEquals(HttpStatus.UNAUTHORIZED_401, e.getStatus());
+		}
+		assertEquals(1, calls.get());
+	}
+	
+	@Test
+	public void testExecuteAsync_rejected() throws Exception {
+		Result initial = result("digest0", NOW.plus(Duration.ofMinutes(30)));
+		SharepointOnlineTokenManager manager = manager(initial);
+		
+		CompletableFuture<String> future = manager.executeAsync(authResult -> {
+			CompletableFuture<String> response = new CompletableFuture<>();
+			if(authResult == initial) {
+				response.completeExceptionally(new SpHttpException(HttpStatus.UNAUTHORIZED_401));
+			}
+			else {
+				response.complete(authResult.getFormDigest());
+			}
+			return response;
+		});
+		runTasks();
+		assertEquals("digest1", future.get());
+	}
+	
+	@Test
+	public void testExecuteAsync_failed() throws Exception {
+		Result initial = result("digest0", NOW.plus(Duration.ofMinutes(30)));
+		SharepointOnlineTokenManager manager = manager(initial);
+		
+		CompletableFuture<String> future = manager.executeAsync(authResult -> {
+			CompletableFuture<String> response = new CompletableFuture<>();
+			response.completeExceptionally(new SpHttpException(HttpStatus.NOT_FOUND_404));
+			return response;
+		});
+		try {
+			future.get();
+			fail("failure expected");
+		}
+		catch(ExecutionException e) {
+			assertTrue(e.getCause() instanceof SpHttpException);
+		}
+		assertTrue(tasks.isEmpty());
+	}
+}
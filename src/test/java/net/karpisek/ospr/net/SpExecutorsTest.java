@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+public class SpExecutorsTest {
+	private static String threadName(ExecutorService executor) throws InterruptedException, ExecutionException, TimeoutException {
+		try {
+			return executor.submit(() -> Thread.currentThread().getName()).get(10, TimeUnit.SECONDS);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	@Test
+	public void testPlatformThreads() throws InterruptedException, ExecutionException, TimeoutException {
+		assertEquals("ospr-test-0", threadName(SpExecutors.newExecutor("test", 2, false)));
+	}
+	
+	@Test
+	public void testVirtualThreads() throws InterruptedException, ExecutionException, TimeoutException {
+		//falls back to pool of platform threads on Java without virtual threads
+		String name = threadName(SpExecutors.newExecutor("test", 2, true));
+		assertTrue(name, name.startsWith("ospr-test-"));
+		
+		ExecutorService executor = SpExecutors.newExecutor("test", 2, true);
+		try {
+			boolean virtual = executor.submit(() -> {
+				try {
+					return (Boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread());
+				} catch (NoSuchMethodException e) {
+					return false;
+				}
+			}).get(10, TimeUnit.SECONDS);
+			assertEquals(SpExecutors.isVirtualThreadsSupported(), virtual);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+}
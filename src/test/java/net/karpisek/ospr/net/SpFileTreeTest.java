@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class SpFileTreeTest {
+	private static final Instant MODIFIED = Instant.parse("2018-11-10T15:31:43Z");
+	private static final Instant CREATED = Instant.parse("2018-10-27T08:08:40Z");
+	
+	static SpFolder folder(String url, SpObject... children) {
+		return new SpFolder(url.substring(url.lastIndexOf('/') + 1), url, MODIFIED, CREATED, children.length, Lists.newArrayList(children));
+	}
+	
+	static SpFile file(String url, long length, String minorVersion) {
+		return new SpFile(url.substring(url.lastIndexOf('/') + 1), url, MODIFIED, CREATED, length, SpVersion.fromString("3", minorVersion));
+	}
+	
+	static List<String> describe(SpFolder folder) {
+		List<String> result = Lists.newArrayList(folder.toString());
+		folder.getChildren().forEach(each -> result.add(each.toString()));
+		return result;
+	}
+	
+	@Test
+	public void testPutAndGet() {
+		SpFolder root = folder("/sites/s/lib", file("/sites/s/lib/b.txt", 5_368_709_120L, "511"), folder("/sites/s/lib/sub"), file("/sites/s/lib/a.txt", 20, "0"));
+		SpFolder sub = folder("/sites/s/lib/sub", file("/sites/s/lib/sub/a.txt", 30, "1"));
+		SpFileTree tree = new SpFileTree();
+		tree.put("/sites/s/lib", root);
+		assertEquals(describe(root), describe(tree.get("/sites/s/lib")));
+		tree.put("/sites/s/lib/sub", sub);
+		
+		assertEquals(describe(sub), describe(tree.get("/sites/s/lib/sub")));
+		assertEquals(Lists.newArrayList("a.txt", "b.txt", "sub"), tree.get("/sites/s/lib").getChildren().stream().map(SpObject::getName).collect(Collectors.toList()));
+		//names are shared by all nodes
+		assertSame(tree.get("/sites/s/lib").getChildren().get(0).getName(), tree.get("/sites/s/lib/sub").getChildren().get(0).getName());
+		
+		assertEquals(2, tree.size());
+		assertTrue(tree.contains("/sites/s/lib/sub"));
+		assertFalse(tree.contains("/sites/s/lib/a.txt"));
+		assertNull(tree.get("/sites/s/lib/other"));
+		assertEquals(Lists.newArrayList("/sites/s/lib", "/sites/s/lib/sub"), tree.urls());
+	}
+	
+	@Test
+	public void testRootUnderOtherUrl() {
+		SpFileTree tree = new SpFileTree();
+		tree.put("lib", folder("/sites/s/lib", folder("/sites/s/lib/sub")));
+		tree.put("/sites/s/lib/sub", folder("/sites/s/lib/sub"));
+		
+		assertEquals("/sites/s/lib", tree.get("lib").getServerRelativeUrl());
+		assertEquals(Lists.newArrayList("lib", "/sites/s/lib/sub"), tree.urls());
+	}
+	
+	@Test
+	public void testPutAgain() {
+		SpFileTree tree = new SpFileTree();
+		tree.put("/lib", folder("/lib", folder("/lib/sub1"), folder("/lib/sub2")));
+		tree.put("/lib/sub1", folder("/lib/sub1", folder("/lib/sub1/subsub")));
+		tree.put("/lib/sub1/subsub", folder("/lib/sub1/subsub", file("/lib/sub1/subsub/a.txt", 1, "0")));
+		tree.put("/lib/sub2", folder("/lib/sub2"));
+		
+		//listed subfolders keep their children, removed subfolder has to be removed explicitly
+		SpFolder changed = folder("/lib", folder("/lib/sub1"), file("/lib/new.txt", 2, "0"));
+		tree.put("/lib", changed);
+		tree.remove("/lib/sub2");
+		
+		assertEquals(describe(changed), describe(tree.get("/lib")));
+		assertEquals("/lib/sub1/subsub/a.txt", tree.get("/lib/sub1/subsub").getChildren().get(0).getServerRelativeUrl());
+		assertEquals(Lists.newArrayList("/lib", "/lib/sub1", "/lib/sub1/subsub"), tree.urls());
+		
+		SpFileTree copy = tree.copy();
+		assertEquals(tree.urls(), copy.urls());
+		for (String url : tree.urls()) {
+			assertEquals(describe(tree.get(url)), describe(copy.get(url)));
+		}
+		copy.remove("/lib/sub1");
+		assertEquals(3, tree.size());
+		assertEquals(1, copy.size());
+		assertFalse(copy.contains("/lib/sub1/subsub"));
+	}
+	
+	@Test
+	public void testRootBeforeParent() {
+		SpFileTree tree = new SpFileTree();
+		tree.put("/lib/sub", folder("/lib/sub", file("/lib/sub/a.txt", 1, "0")));
+		tree.put("/lib", folder("/lib", folder("/lib/sub")));
+		
+		assertEquals(Lists.newArrayList("/lib", "/lib/sub"), tree.urls());
+		assertEquals("/lib/sub/a.txt", tree.get("/lib/sub").getChildren().get(0).getServerRelativeUrl());
+		tree.remove("/lib");
+		assertEquals(0, tree.size());
+		assertFalse(tree.contains("/lib/sub"));
+	}
+}
@@ -11,11 +11,17 @@
 package net.karpisek.ospr.net;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeoutException;
 
 import org.jdom2.JDOMException;
@@ -138,5 +144,160 @@ public class SpFilesTest {
 			}
 		});
 		assertEquals(Joiner.on("\n").join(expected), Joiner.on("\n").join(actual));
-	}	
+	}
+
+	@Test
+	public void testParallel() throws IOException, JDOMException, InterruptedException, TimeoutException, ExecutionException {
+		for (int maxDepth : new int[] {Ospr.UNLIMITED_DEPTH, 0, 1, 2}) {
+			List<String> expected = Lists.newArrayList();
+			SpFiles.walkFileTree(new LocalSpObjectProvider(), "src/test/resources/test1site/documents", 0, maxDepth, recordingVisitor(expected));
+
+			List<String> actual = Lists.newArrayList();
+			ExecutorService executor = Executors.newFixedThreadPool(3);
+			try {
+				SpFiles.walkFileTree(new LocalSpObjectProvider(), "src/test/resources/test1site/documents", 0, maxDepth, recordingVisitor(actual), executor, 3);
+			}
+			finally {
+				executor.shutdownNow();
+			}
+			assertEquals("maxDepth=" + maxDepth, Joiner.on("\n").join(expected), Joiner.on("\n").join(actual));
+		}
+	}
+
+	@Test
+	public void testParallel_async() throws IOException, JDOMException, InterruptedException, TimeoutException, ExecutionException {
+		List<String> expected = Lists.newArrayList();
+		SpFiles.walkFileTree(new LocalSpObjectProvider(), "src/test/resources/test1site/documents", 0, Ospr.UNLIMITED_DEPTH, recordingVisitor(expected));
+
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			ISpObjectProvider provider = new AsyncLocalSpObjectProvider(executor);
+			List<String> actual = Lists.newArrayList();
+			//executor given to walk is not needed by asynchronous provider
+			SpFiles.walkFileTree(provider, "src/test/resources/test1site/documents", 0, Ospr.UNLIMITED_DEPTH, recordingVisitor(actual), command -> fail("Should not be used"), 2);
+			assertEquals(Joiner.on("\n").join(expected), Joiner.on("\n").join(actual));
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testParallel_failure() throws IOException, JDOMException, InterruptedException, TimeoutException, ExecutionException {
+		ISpObjectProvider provider = new LocalSpObjectProvider() {
+			@Override
+			public SpFolder getFolder(String folder) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+				if(folder.endsWith("test11")) {
+					throw new IOException("failed " + folder);
+				}
+				return super.getFolder(folder);
+			}
+		};
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			SpFiles.walkFileTree(provider, "src/test/resources/test1site/documents", 0, Ospr.UNLIMITED_DEPTH, recordingVisitor(Lists.newArrayList()), executor, 2);
+			fail("Failure of folder fetch should be propagated");
+		}
+		catch (IOException e) {
+			assertEquals("failed src/test/resources/test1site/documents/test1/test11", e.getMessage());
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testPrefetcher_completedFutures() throws Exception {
+		CompletableFuture<SpFolder> first = new CompletableFuture<>();
+		IAsyncSpObjectProvider provider = new AsyncLocalSpObjectProvider(command -> fail("Should not be used")) {
+			@Override
+			public CompletableFuture<SpFolder> getFolderAsync(String folder) {
+				if(folder.equals("first")) {
+					return first;
+				}
+				CompletableFuture<SpFolder> result = new CompletableFuture<>();
+				result.completeExceptionally(new IOException("failed " + folder));
+				return result;
+			}
+		};
+		SpFolderPrefetcher prefetcher = new SpFolderPrefetcher(provider, command -> fail("Should not be used"), 1);
+		prefetcher.fetch("first", new int[] {0});
+		List<CompletableFuture<SpFolder>> waiting = Lists.newArrayList();
+		for (int i = 1; i <= 100_000; i++) {
+			waiting.add(prefetcher.fetch("folder" + i, new int[] {i}));
+		}
+		//waiting requests failing immediately are dispatched in loop instead of recursion
+		first.completeExceptionally(new IOException("failed first"));
+		for (CompletableFuture<SpFolder> each : waiting) {
+			assertTrue(each.isCompletedExceptionally());
+		}
+	}
+
+	@Test
+	public void testPaged() throws IOException, JDOMException, InterruptedException, TimeoutException, ExecutionException {
+		for (int maxDepth : new int[] {Ospr.UNLIMITED_DEPTH, 0, 1}) {
+			List<String> expected = Lists.newArrayList();
+			SpFiles.walkFileTree(new LocalSpObjectProvider(), "src/test/resources/test1site/documents", 0, maxDepth, recordingVisitor(expected));
+			
+			for (int pageSize : new int[] {1, 2, 100}) {
+				List<String> actual = Lists.newArrayList();
+				SpFiles.walkFileTreePaged(new LocalSpObjectProvider(), "src/test/resources/test1site/documents", 0, maxDepth, recordingVisitor(actual), pageSize);
+				assertEquals("maxDepth=" + maxDepth + " pageSize=" + pageSize, Joiner.on("\n").join(expected), Joiner.on("\n").join(actual));
+			}
+		}
+	}
+
+	private static class AsyncLocalSpObjectProvider extends LocalSpObjectProvider implements IAsyncSpObjectProvider{
+		private final Executor executor;
+
+		AsyncLocalSpObjectProvider(Executor executor) {
+			this.executor = executor;
+		}
+
+		@Override
+		public CompletableFuture<SpFolder> getFolderAsync(String folder) {
+			CompletableFuture<SpFolder> result = new CompletableFuture<>();
+			executor.execute(() -> {
+				try {
+					result.complete(getFolder(folder));
+				} catch (Exception e) {
+					result.completeExceptionally(e);
+				}
+			});
+			return result;
+		}
+
+		@Override
+		public CompletableFuture<SpFileProperties> getSpFilePropertiesAsync(String file) {
+			CompletableFuture<SpFileProperties> result = new CompletableFuture<>();
+			executor.execute(() -> {
+				try {
+					result.complete(getSpFileProperties(file));
+				} catch (Exception e) {
+					result.completeExceptionally(e);
+				}
+			});
+			return result;
+		}
+	}
+
+	private static ISpFileVisitor recordingVisitor(List<String> events) {
+		return new ISpFileVisitor() {
+			@Override
+			public void visitFile(SpFile file) throws IOException {
+				events.add("visitFile="+file.getName());
+			}
+
+			@Override
+			public void preVisitFolder(SpFolder folder) throws IOException {
+				events.add("preVisitFolder="+folder.getName());
+			}
+
+			@Override
+			public void postVisitFolder(SpFolder folder) throws IOException {
+				events.add("postVisitFolder="+folder.getName());
+			}
+		};
+	}
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+public class SpJsonReaderTest {
+	@Test
+	public void testNextProperties() throws IOException {
+		String json = "{\"a\": \"x\\\"y\\\\z\\/\\u00e9\\n\", \"b\" : 12, \"c\":true, \"d\": null, \"e\": {\"f\": [1, {\"g\": \"h\"}]}, \"i\":[], \"j\": -1.5e3}";
+		try(SpJsonReader reader = new SpJsonReader(new StringReader(json))){
+			Map<String, String> properties = reader.nextProperties();
+			assertEquals(ImmutableMap.of("a", "x\"y\\z/é\n", "b", "12", "c", "true", "j", "-1.5e3"), properties);
+			assertFalse(reader.hasNext());
+		}
+	}
+	
+	@Test
+	public void testArray() throws IOException {
+		try(SpJsonReader reader = new SpJsonReader(new StringReader("[ {\"a\":\"1\"} , {\"a\":\"2\"} ]"))){
+			reader.beginArray();
+			assertEquals("1", reader.nextProperties().get("a"));
+			assertEquals("2", reader.nextProperties().get("a"));
+			assertFalse(reader.hasNext());
+			reader.endArray();
+		}
+	}
+	
+	@Test
+	public void testTruncated() throws IOException {
+		try(SpJsonReader reader = new SpJsonReader(new StringReader("{\"a\": \"unterminated"))){
+			reader.nextProperties();
+			fail("Truncated content should fail");
+		}
+		catch (IOException e) {
+			assertEquals("Malformed JSON, unexpected end of content", e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import org.jdom2.JDOMException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.VerifyException;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import net.karpisek.ospr.Ospr;
+import net.karpisek.ospr.net.SpFileProperties.CoreProperty;
+
+public class SpMetadataCacheTest {
+	private static final Instant MODIFIED = Instant.parse("2018-11-10T15:31:43Z");
+	
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+	
+	static SpFile file(String url, Instant modified, String minorVersion) {
+		return new SpFile(url.substring(url.lastIndexOf('/') + 1), url, modified, MODIFIED, 8, SpVersion.fromString("1", minorVersion));
+	}
+	
+	static SpFileProperties properties(String title) {
+		EnumMap<CoreProperty, String> values = Maps.newEnumMap(CoreProperty.class);
+		values.put(CoreProperty.TITLE, title);
+		values.put(CoreProperty.COMMENT, "line1\nline2\twith tab");
+		return new SpFileProperties(values);
+	}
+	
+	@Test
+	public void testPutAndGet() throws IOException {
+		Path path = temporaryFolder.getRoot().toPath().resolve("test.cache");
+		SpFile file = file("/sites/s/lib/a.docx", MODIFIED, "0");
+		try(SpMetadataCache cache = SpMetadataCache.open(path)){
+			assertNull(cache.getProperties(file));
+			cache.putProperties(file, properties("title1"));
+			
+			assertEquals("title1", cache.getProperties(file).getValue(CoreProperty.TITLE, null));
+			assertEquals("line1\nline2\twith tab", cache.getProperties(file).getValue(CoreProperty.COMMENT, null));
+			//modified or newer version invalidates entry
+			assertNull(cache.getProperties(file("/sites/s/lib/a.docx", MODIFIED.plusSeconds(1), "0")));
+			assertNull(cache.getProperties(file("/sites/s/lib/a.docx", MODIFIED, "1")));
+		}
+		
+		try(SpMetadataCache cache = SpMetadataCache.open(path)){
+			assertEquals(1, cache.getPropertiesCount());
+			assertEquals("title1", cache.getProperties(file).getValue(CoreProperty.TITLE, null));
+		}
+	}
+	
+	@Test
+	public void testUnknownRecord() throws IOException {
+		Path path = temporaryFolder.getRoot().toPath().resolve("test.cache");
+		try(SpMetadataCache cache = SpMetadataCache.open(path)){
+			cache.putProperties(file("/sites/s/lib/a.docx", MODIFIED, "0"), properties("title1"));
+		}
+		List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+		lines.add(SpObjectCodec.join(Lists.newArrayList("D", MODIFIED.toString(), "lib", "/sites/s/lib", MODIFIED.toString(), MODIFIED.toString(), "2", "0")));
+		Files.write(path, lines, StandardCharsets.UTF_8);
+		
+		try(SpMetadataCache cache = SpMetadataCache.open(path)){
+			fail("Unknown record should fail verification");
+		}
+		catch (VerifyException e) {
+			assertTrue(e.getMessage().contains("unknown record"));
+		}
+	}
+	
+	@Test
+	public void testIncompleteRecord() throws IOException {
+		Path path = temporaryFolder.getRoot().toPath().resolve("test.cache");
+		SpFile file1 = file("/sites/s/lib/a.docx", MODIFIED, "0");
+		SpFile file2 = file("/sites/s/lib/b.docx", MODIFIED, "0");
+		try(SpMetadataCache cache = SpMetadataCache.open(path)){
+			cache.putProperties(file1, properties("title1"));
+			cache.putProperties(file2, properties("title2"));
+		}
+		//interrupted run wrote only part of last record
+		byte[] content = Files.readAllBytes(path);
+		Files.write(path, Arrays.copyOf(content, content.length - 5));
+		
+		try(SpMetadataCache cache = SpMetadataCache.open(path)){
+			assertEquals("title1", cache.getProperties(file1).getValue(CoreProperty.TITLE, null));
+			assertNull(cache.getProperties(file2));
+			cache.putProperties(file2, properties("title2"));
+		}
+		try(SpMetadataCache cache = SpMetadataCache.open(path)){
+			assertEquals("title2", cache.getProperties(file2).getValue(CoreProperty.TITLE, null));
+		}
+	}
+	
+	@Test
+	public void testCompaction() throws IOException {
+		Path path = temporaryFolder.getRoot().toPath().resolve("test.cache");
+		try(SpMetadataCache cache = SpMetadataCache.open(path)){
+			for (int i = 0; i < 10; i++) {
+				cache.putProperties(file("/sites/s/lib/a.docx", MODIFIED.plusSeconds(i), "0"), properties("title" + i));
+				cache.putProperties(file("/sites/s/lib/b.docx", MODIFIED, "0"), properties("b" + i));
+			}
+		}
+		long before = Files.size(path);
+		
+		try(SpMetadataCache cache = SpMetadataCache.open(path)){
+			assertEquals("title9", cache.getProperties(file("/sites/s/lib/a.docx", MODIFIED.plusSeconds(9), "0")).getValue(CoreProperty.TITLE, null));
+			assertEquals("b9", cache.getProperties(file("/sites/s/lib/b.docx", MODIFIED, "0")).getValue(CoreProperty.TITLE, null));
+		}
+		assertTrue(Files.size(path) < before / 5);
+		assertEquals(3, Files.readAllLines(path, StandardCharsets.UTF_8).size());
+		
+		//appended after compaction
+		try(SpMetadataCache cache = SpMetadataCache.open(path)){
+			cache.putProperties(file("/sites/s/lib/c.docx", MODIFIED, "0"), properties("c"));
+		}
+		try(SpMetadataCache cache = SpMetadataCache.open(path)){
+			assertEquals(3, cache.getPropertiesCount());
+			assertEquals("b9", cache.getProperties(file("/sites/s/lib/b.docx", MODIFIED, "0")).getValue(CoreProperty.TITLE, null));
+		}
+	}
+	
+	@Test
+	public void testCachingProvider() throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		Path path = temporaryFolder.getRoot().toPath().resolve("test.cache");
+		List<String> fetched = Lists.newArrayList();
+		//modification times of files changed between runs
+		Map<String, Instant> modified = Maps.newHashMap();
+		LocalSpObjectProvider local = new LocalSpObjectProvider() {
+			@Override
+			public SpFolder getFolder(String folder) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+				fetched.add(folder);
+				SpFolder result = super.getFolder(folder);
+				List<SpObject> children = result.getChildren().stream()
+						.map(each -> modified.containsKey(each.getServerRelativeUrl()) ? file(each.getServerRelativeUrl(), modified.get(each.getServerRelativeUrl()), "0") : each)
+						.collect(Collectors.toList());
+				return new SpFolder(result.getName(), result.getServerRelativeUrl(), result.getTimeLastModified(), result.getTimeCreated(), result.getItemCount(), children);
+			}
+			
+			@Override
+			public SpFileProperties getSpFileProperties(String file) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+				fetched.add(file);
+				return super.getSpFileProperties(file);
+			}
+		};
+		String root = "src/test/resources/test1site/documents";
+		String folders = root + "," + root + "/test1," + root + "/test1/test11," + root + "/test2";
+		
+		for (int run = 0; run < 3; run++) {
+			fetched.clear();
+			if(run == 2) {
+				//modification of file in grandchild folder does not change modification time of its parent folders
+				modified.put(root + "/test1/test11/test11a.txt", MODIFIED.plusSeconds(60));
+			}
+			try(SpMetadataCache cache = SpMetadataCache.open(path)){
+				CachingSpObjectProvider objectProvider = new CachingSpObjectProvider(cache, local);
+				List<String> visited = Lists.newArrayList();
+				SpFiles.walkFileTree(objectProvider, root, 0, Ospr.UNLIMITED_DEPTH, new ISpFileVisitor() {
+					@Override
+					public void preVisitFolder(SpFolder folder) throws IOException {
+						visited.add(folder.getName());
+					}
+					
+					@Override
+					public void visitFile(SpFile file) throws IOException {
+						visited.add(file.getName());
+						try {
+							objectProvider.getSpFileProperties(file.getServerRelativeUrl());
+						} catch (InterruptedException | TimeoutException | ExecutionException | JDOMException e) {
+							throw new IOException(e);
+						}
+					}
+					
+					@Override
+					public void postVisitFolder(SpFolder folder) throws IOException {
+						//nothing to do
+					}
+				});
+				assertEquals(15, visited.size());
+				if(run == 0) {
+					assertEquals(15, fetched.size());
+					assertEquals(0, objectProvider.getPropertiesHits());
+				}
+				else if(run == 1) {
+					//folders are always listed, properties of unmodified files are cached
+					assertEquals(folders, Joiner.on(",").join(fetched));
+					assertEquals(11, objectProvider.getPropertiesHits());
+				}
+				else {
+					assertEquals(root + "," + root + "/test1," + root + "/test1/test11," + root + "/test1/test11/test11a.txt," + root + "/test2", Joiner.on(",").join(fetched));
+					assertEquals(10, objectProvider.getPropertiesHits());
+					assertEquals(1, objectProvider.getPropertiesMisses());
+				}
+			}
+		}
+	}
+}
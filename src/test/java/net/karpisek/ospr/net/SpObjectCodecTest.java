@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.EnumMap;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import net.karpisek.ospr.net.SpFileProperties.CoreProperty;
+
+public class SpObjectCodecTest {
+	@Test
+	public void testJoinSplit() {
+		List<String> fields = Lists.newArrayList("a\tb", "line1\nline2\r\n", "back\\slash", "", "plain");
+		String line = SpObjectCodec.join(fields);
+		assertEquals("a\\tb\tline1\\nline2\\r\\n\tback\\\\slash\t\tplain", line);
+		assertEquals(fields, SpObjectCodec.split(line));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testSplit_illegalEscape() {
+		SpObjectCodec.split("a\\x");
+	}
+	
+	@Test
+	public void testFile() {
+		SpFile file = new SpFile("test.docx", "/sites/test1site/Shared Documents/test.docx", LocalSpObjectProvider.NOW, LocalSpObjectProvider.NOW, 1234567, SpVersion.fromString("12", "3"));
+		SpFile decoded = SpObjectCodec.decodeFile(SpObjectCodec.split(SpObjectCodec.join(SpObjectCodec.encode(file))));
+		assertEquals(file.toString(), decoded.toString());
+		
+		//files over 2GB
+		SpFile large = new SpFile("backup.zip", "/sites/test1site/Shared Documents/backup.zip", LocalSpObjectProvider.NOW, LocalSpObjectProvider.NOW, 5_368_709_120L, SpVersion.fromString("1", "0"));
+		assertEquals(5_368_709_120L, SpObjectCodec.decodeFile(SpObjectCodec.encode(large)).getLength());
+	}
+	
+	@Test
+	public void testProperties() {
+		EnumMap<CoreProperty, String> values = Maps.newEnumMap(CoreProperty.class);
+		values.put(CoreProperty.TITLE, "Title\twith tab");
+		values.put(CoreProperty.AUTHOR, "Martin");
+		SpFileProperties decoded = SpObjectCodec.decodeProperties(SpObjectCodec.encode(new SpFileProperties(values)));
+		assertEquals("Title\twith tab", decoded.getValue(CoreProperty.TITLE, null));
+		assertEquals("Martin", decoded.getValue(CoreProperty.AUTHOR, null));
+		assertEquals("", decoded.getValue(CoreProperty.SUBJECT, null));
+	}
+}
@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.jdom2.JDOMException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.Lists;
+
+import net.karpisek.ospr.Ospr;
+
+public class SpSnapshotTest {
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+	
+	private Path documents;
+	private String root;
+	
+	@Before
+	public void setUp() throws IOException {
+		Path source = Paths.get("src/test/resources/test1site/documents");
+		documents = temporaryFolder.getRoot().toPath().resolve("documents");
+		try(Stream<Path> paths = Files.walk(source)){
+			for (Path each : paths.collect(Collectors.toList())) {
+				Files.copy(each, documents.resolve(source.relativize(each).toString()));
+			}
+		}
+		root = SpFilesTest.toUnixString(documents);
+	}
+	
+	/**
+	 * @return sorted lines describing all folders in snapshot and their children
+	 */
+	static List<String> describe(SpSnapshot snapshot) {
+		List<String> result = Lists.newArrayList();
+		describe(snapshot, snapshot.getFolder(), result);
+		result.sort(Comparator.naturalOrder());
+		return result;
+	}
+	
+	private static void describe(SpSnapshot snapshot, String url, List<String> result) {
+		SpFolder folder = snapshot.getFolder(url);
+		if(folder == null) {
+			return;
+		}
+		result.add(url + "=" + folder.getChildren().stream().map(each -> each.getName() + (each.isFile() ? ":" + ((SpFile) each).getLength() : "/")).sorted().collect(Collectors.joining(",")));
+		folder.getChildren(SpObject::isFolder).forEach(each -> describe(snapshot, each.getServerRelativeUrl(), result));
+	}
+	
+	private String url(String relative) {
+		return root + "/" + relative;
+	}
+	
+	@Test
+	public void testWalk() throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		SpSnapshot snapshot = SpSnapshot.walk(new LocalSpObjectProvider(), root, Ospr.UNLIMITED_DEPTH, "token1");
+		
+		assertEquals(4, snapshot.size());
+		assertEquals("token1", snapshot.getChangeToken());
+		assertTrue(snapshot.isFor(root, Ospr.UNLIMITED_DEPTH));
+		assertFalse(snapshot.isFor(root, 1));
+		assertTrue(describe(snapshot).contains(url("test1/test11") + "=test11a.txt:1234567"));
+		
+		SpSnapshot shallow = SpSnapshot.walk(new LocalSpObjectProvider(), root, 1, "token1");
+		assertEquals(3, shallow.size());
+		assertNull(shallow.getFolder(url("test1/test11")));
+	}
+	
+	@Test
+	public void testStoreAndLoad() throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		SpSnapshot expected = SpSnapshot.walk(new LocalSpObjectProvider(), root, Ospr.UNLIMITED_DEPTH, "1;3;x;0;1000");
+		Path path = temporaryFolder.getRoot().toPath().resolve("snapshot/test1site.snapshot");
+		expected.store(path);
+		
+		SpSnapshot actual = SpSnapshot.load(path);
+		assertEquals(describe(expected), describe(actual));
+		assertEquals("1;3;x;0;1000", actual.getChangeToken());
+		assertTrue(actual.isFor(root, Ospr.UNLIMITED_DEPTH));
+		
+		SpFile file = (SpFile) actual.getFolder(root).getChildren().stream().filter(each -> each.getName().equals("test.txt")).findFirst().get();
+		assertEquals(LocalSpObjectProvider.NOW, file.getTimeLastModified());
+		assertEquals("1.0", file.getVersion().toString());
+		assertEquals(LocalSpObjectProvider.uniqueId(documents.resolve("test.txt")), file.getUniqueId());
+		assertEquals(LocalSpObjectProvider.uniqueId(documents), actual.getFolder(root).getUniqueId());
+	}
+	
+	@Test
+	public void testUpdate() throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		LocalSpObjectProvider objectProvider = new LocalSpObjectProvider();
+		SpSnapshot previous = SpSnapshot.walk(objectProvider, root, Ospr.UNLIMITED_DEPTH, "token1");
+		
+		Files.write(documents.resolve("test1/new.txt"), "new".getBytes());
+		Files.delete(documents.resolve("test2/test2a.txt"));
+		Files.delete(documents.resolve("test2"));
+		Files.createDirectories(documents.resolve("test1/test12/test121"));
+		Files.write(documents.resolve("test1/test12/test121/a.txt"), "a".getBytes());
+		
+		List<SpChange> changes = Lists.newArrayList(
+				new SpChange(SpChange.Type.ADD, url("test1/new.txt"), false, "token2"),
+				new SpChange(SpChange.Type.DELETE_OBJECT, url("test2"), true, "token3"),
+				new SpChange(SpChange.Type.ADD, url("test1/test12"), true, "token4"),
+				//changes of items outside of snapshot are ignored
+				new SpChange(SpChange.Type.ADD, "/elsewhere/a.txt", false, "token5")
+				);
+		SpSnapshot actual = previous.update(objectProvider, changes, "token5");
+		SpSnapshot expected = SpSnapshot.walk(objectProvider, root, Ospr.UNLIMITED_DEPTH, "token5");
+		
+		assertEquals(describe(expected), describe(actual));
+		assertEquals("token5", actual.getChangeToken());
+		assertNull(actual.getFolder(url("test2")));
+		assertEquals(4, previous.size());
+		assertTrue(describe(previous).contains(url("test2") + "=test2a.txt:1234567"));
+	}
+	
+	@Test
+	public void testUpdate_changeWithoutUrl() throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		LocalSpObjectProvider objectProvider = new LocalSpObjectProvider();
+		SpSnapshot previous = SpSnapshot.walk(objectProvider, root, Ospr.UNLIMITED_DEPTH, "token1");
+		
+		Files.write(documents.resolve("test2/new.txt"), "new".getBytes());
+		
+		SpSnapshot actual = previous.update(objectProvider, Lists.newArrayList(new SpChange(SpChange.Type.DELETE_OBJECT, null, false, "token2")), "token2");
+		
+		assertEquals(describe(SpSnapshot.walk(objectProvider, root, Ospr.UNLIMITED_DEPTH, "token2")), describe(actual));
+	}
+	
+	@Test
+	public void testUpdate_deletedItems() throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		LocalSpObjectProvider objectProvider = new LocalSpObjectProvider();
+		SpSnapshot previous = SpSnapshot.walk(objectProvider, root, Ospr.UNLIMITED_DEPTH, "token1");
+		
+		String file = LocalSpObjectProvider.uniqueId(documents.resolve("test1/test1a.txt"));
+		String folder = LocalSpObjectProvider.uniqueId(documents.resolve("test1/test11"));
+		Files.delete(documents.resolve("test1/test1a.txt"));
+		Files.delete(documents.resolve("test1/test11/test11a.txt"));
+		Files.delete(documents.resolve("test1/test11"));
+		Files.write(documents.resolve("test2/new.txt"), "new".getBytes());
+		
+		//changes of deleted items contain only unique id, items not in snapshot are ignored
+		List<SpChange> changes = Lists.newArrayList(
+				new SpChange(SpChange.Type.DELETE_OBJECT, null, false, "token2", file),
+				new SpChange(SpChange.Type.DELETE_OBJECT, null, false, "token3", folder),
+				new SpChange(SpChange.Type.DELETE_OBJECT, null, false, "token4", LocalSpObjectProvider.uniqueId(documents.resolve("unknown.txt")))
+				);
+		SpSnapshot actual = previous.update(objectProvider, changes, "token4");
+		
+		assertNull(actual.getFolder(url("test1/test11")));
+		assertTrue(describe(actual).contains(url("test1") + "=test1b.txt:1234567,test1c.docx:1234567,test1d.xlsx:1234567,test1e.pptx:1234567"));
+		//test2 was not fetched again, its new file is not known
+		assertTrue(describe(actual).contains(url("test2") + "=test2a.txt:1234567"));
+		assertEquals(3, actual.size());
+		assertEquals(4, previous.size());
+	}
+	
+	@Test
+	public void testUpdate_movedFile() throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		LocalSpObjectProvider objectProvider = new LocalSpObjectProvider();
+		SpSnapshot previous = SpSnapshot.walk(objectProvider, root, Ospr.UNLIMITED_DEPTH, "token1");
+		
+		String file = LocalSpObjectProvider.uniqueId(documents.resolve("test1/test1a.txt"));
+		Files.move(documents.resolve("test1/test1a.txt"), documents.resolve("test2/test1a.txt"));
+		
+		//change of moved item contains only its new url, previous folder is found by unique id
+		SpSnapshot actual = previous.update(objectProvider, Lists.newArrayList(new SpChange(SpChange.Type.RENAME, url("test2/test1a.txt"), false, "token2", file)), "token2");
+		
+		assertEquals(describe(SpSnapshot.walk(objectProvider, root, Ospr.UNLIMITED_DEPTH, "token2")), describe(actual));
+		assertTrue(describe(actual).contains(url("test2") + "=test1a.txt:1234567,test2a.txt:1234567"));
+	}
+	
+	@Test
+	public void testSnapshotProvider() throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		SpSnapshot snapshot = SpSnapshot.walk(new LocalSpObjectProvider(), root, Ospr.UNLIMITED_DEPTH, "token1");
+		SnapshotSpObjectProvider objectProvider = new SnapshotSpObjectProvider(snapshot, new LocalSpObjectProvider());
+		
+		//folders answered by snapshot even after they are gone
+		Files.write(documents.resolve("test2/new.txt"), "new".getBytes());
+		List<String> actual = Lists.newArrayList();
+		SpFiles.walkFileTree(objectProvider, root, 0, Ospr.UNLIMITED_DEPTH, new ISpFileVisitor() {
+			@Override
+			public void preVisitFolder(SpFolder folder) throws IOException {
+				actual.add(folder.getName());
+			}
+			
+			@Override
+			public void visitFile(SpFile file) throws IOException {
+				actual.add(file.getName());
+			}
+			
+			@Override
+			public void postVisitFolder(SpFolder folder) throws IOException {
+				//nothing to do
+			}
+		});
+		assertEquals(15, actual.size());
+		assertFalse(actual.contains("new.txt"));
+	}
+}
@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class SpThrottleTest {
+	private static final Instant NOW = Instant.parse("2018-11-10T15:31:43Z");
+	
+	private ScheduledExecutorScheduler scheduler;
+	
+	@Before
+	public void setUp() throws Exception {
+		scheduler = new ScheduledExecutorScheduler();
+		scheduler.start();
+	}
+	
+	@After
+	public void tearDown() throws Exception {
+		scheduler.stop();
+	}
+	
+	private SpThrottle throttle(int maxConcurrency, int maxRetries) {
+		return new SpThrottle(() -> scheduler, maxConcurrency, maxRetries, Duration.ofMillis(1), Duration.ofMillis(10), Clock.fixed(NOW, ZoneOffset.UTC));
+	}
+	
+	@Test
+	public void testRetryAfter() {
+		assertEquals(Duration.ofSeconds(120), SpThrottle.retryAfter("120", NOW));
+		assertEquals(Duration.ofSeconds(17), SpThrottle.retryAfter("Sat, 10 Nov 2018 15:32:00 GMT", NOW));
+		assertEquals(Duration.ZERO, SpThrottle.retryAfter("Sat, 10 Nov 2018 15:00:00 GMT", NOW));
+		assertNull(SpThrottle.retryAfter(null, NOW));
+		assertNull(SpThrottle.retryAfter("", NOW));
+		assertNull(SpThrottle.retryAfter("soon", NOW));
+	}
+	
+	@Test
+	public void testExecute_throttled() throws Exception {
+		SpThrottle throttle = throttle(4, 3);
+		AtomicInteger attempts = new AtomicInteger();
+		
+		String result = throttle.execute(() -> {
+			if(attempts.incrementAndGet() < 3) {
+				throw new SpHttpException(HttpStatus.TOO_MANY_REQUESTS_429, "0");
+			}
+			return "ok";
+		});
+		assertEquals("ok", result);
+		assertEquals(3, attempts.get());
+		assertEquals(3, throttle.getRequests());
+		assertEquals(2, throttle.getThrottled());
+		assertEquals(2, throttle.getRetries());
+		assertEquals(Duration.ZERO, throttle.getBackoffTime());
+	}
+	
+	@Test
+	public void testExecute_retriesExceeded() throws Exception {
+		SpThrottle throttle = throttle(4, 2);
+		AtomicInteger attempts = new AtomicInteger();
+		
+		try {
+			throttle.execute(() -> {
+				attempts.incrementAndGet();
+				throw new SpHttpException(HttpStatus.SERVICE_UNAVAILABLE_503);
+			});
+			fail("failure expected");
+		}
+		catch(SpHttpException e) {
+			assertEquals(HttpStatus.SERVICE_UNAVAILABLE_503, e.getStatus());
+		}
+		assertEquals(3, attempts.get());
+		assertEquals(2, throttle.getRetries());
+	}
+	
+	@Test
+	public void testExecute_notThrottled() throws Exception {
+		SpThrottle throttle = throttle(4, 2);
+		AtomicInteger attempts = new AtomicInteger();
+		
+		try {
+			throttle.execute(() -> {
+				attempts.incrementAndGet();
+				throw new SpHttpException(HttpStatus.NOT_FOUND_404);
+			});
+			fail("failure expected");
+		}
+		catch(SpHttpException e) {
+			assertEquals(HttpStatus.NOT_FOUND_404, e.getStatus());
+		}
+		assertEquals(1, attempts.get());
+		assertEquals(0, throttle.getRetries());
+		assertEquals(4, throttle.getLimit());
+	}
+	
+	@Test
+	public void testLimit() throws Exception {
+		SpThrottle throttle = throttle(8, 0);
+		List<CompletableFuture<String>> responses = Lists.newArrayList();
+		List<CompletableFuture<String>> results = Lists.newArrayList();
+		for (int i = 0; i < 10; i++) {
+			results.add(throttle.executeAsync(() -> {
+				CompletableFuture<String> response = new CompletableFuture<>();
+				responses.add(response);
+				return response;
+			}));
+		}
+		//requests over the limit wait
+		assertEquals(8, responses.size());
+		
+		//throttled responses of the same round halve the limit only once
+		responses.get(0).completeExceptionally(new SpHttpException(HttpStatus.TOO_MANY_REQUESTS_429));
+		responses.get(1).completeExceptionally(new SpHttpException(HttpStatus.TOO_MANY_REQUESTS_429));
+		assertEquals(4, throttle.getLimit());
+		assertEquals(8, responses.size());
+		
+		for (int i = 2; i < 8; i++) {
+			responses.get(i).complete("ok" + i);
+		}
+		assertEquals(10, responses.size());
+		responses.get(8).complete("ok8");
+		responses.get(9).complete("ok9");
+		assertEquals(5, throttle.getLimit());
+		
+		try {
+			results.get(0).get();
+			fail("failure expected");
+		}
+		catch(ExecutionException e) {
+			assertTrue(e.getCause() instanceof SpHttpException);
+		}
+		assertEquals("ok9", results.get(9).get());
+		assertEquals(2, throttle.getThrottled());
+	}
+	
+	@Test
+	public void testExecuteAsync_throttled() throws Exception {
+		SpThrottle throttle = throttle(4, 3);
+		AtomicInteger attempts = new AtomicInteger();
+		
+		CompletableFuture<String> result = throttle.executeAsync(() -> {
+			CompletableFuture<String> response = new CompletableFuture<>();
+			if(attempts.incrementAndGet() < 3) {
+				response.completeExceptionally(new SpHttpException(HttpStatus.TOO_MANY_REQUESTS_429));
+			}
+			else {
+				response.complete("ok");
+			}
+			return response;
+		});
+		assertEquals("ok", result.get());
+		assertEquals(3, attempts.get());
+		assertEquals(2, throttle.getRetries());
+	}
+}
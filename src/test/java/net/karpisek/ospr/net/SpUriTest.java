@@ -33,6 +33,7 @@ public class SpUriTest {
 		assertEquals("yourdomain", uri.getDomain());
 
 		assertEquals("/sites/test1site/Shared Documents", uri.getPath());
+		assertEquals("/sites/test1site/Shared Documents", uri.getLibraryPath());
 		assertEquals("test1site", uri.getSite());
 	}
 	
@@ -59,6 +60,7 @@ public class SpUriTest {
 		assertEquals(URI.create("https://yourdomain.sharepoint.com:80"), uri.getServerUri());
 
 		assertEquals("/sites/test1site/Shared Documents/folder1/folder11", uri.getPath());
+		assertEquals("/sites/test1site/Shared Documents", uri.getLibraryPath());
 		assertEquals("test1site", uri.getSite());
 	}
 	@Test
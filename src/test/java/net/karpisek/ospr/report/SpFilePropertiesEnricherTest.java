@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.report;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdom2.JDOMException;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import net.karpisek.ospr.net.LocalSpObjectProvider;
+import net.karpisek.ospr.net.SpFile;
+import net.karpisek.ospr.net.SpFileProperties;
+import net.karpisek.ospr.net.SpVersion;
+
+public class SpFilePropertiesEnricherTest {
+	@Test
+	public void testOrder() throws IOException {
+		Map<String, SpFileProperties> answered = new ConcurrentHashMap<>();
+		Random random = new Random(1);
+		LocalSpObjectProvider provider = new LocalSpObjectProvider() {
+			@Override
+			public SpFileProperties getSpFileProperties(String file) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+				Thread.sleep(random.nextInt(5));
+				SpFileProperties properties = super.getSpFileProperties(file);
+				answered.put(file, properties);
+				return properties;
+			}
+		};
+		
+		List<SpFile> files = Lists.newArrayList();
+		for (int i = 0; i < 200; i++) {
+			files.add(new SpFile("file" + i + (i % 3 == 0 ? ".txt" : ".docx"), "/files/file" + i, Instant.now(), Instant.now(), i, SpVersion.fromString("1", "0")));
+		}
+		
+		List<SpFile> written = Lists.newArrayList();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			SpFilePropertiesEnricher enricher = new SpFilePropertiesEnricher(provider, SpFileTreeReporter::hasProperties, executor, 4, 1, (file, properties) -> {
+				written.add(file);
+				if(SpFileTreeReporter.hasProperties(file)) {
+					assertSame(answered.get(file.getServerRelativeUrl()), properties);
+				}
+				else {
+					assertNull(properties);
+				}
+			});
+			for (SpFile file : files) {
+				enricher.add(file);
+			}
+			enricher.finish();
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		assertEquals(files, written);
+	}
+	
+	@Test
+	public void testOrder_batch() throws IOException {
+		AtomicInteger batches = new AtomicInteger();
+		LocalSpObjectProvider provider = new LocalSpObjectProvider() {
+			@Override
+			public List<SpFileProperties> getSpFileProperties(List<String> files) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+				assertTrue("Batch too big: " + files.size(), files.size() <= 7);
+				batches.incrementAndGet();
+				return super.getSpFileProperties(files);
+			}
+		};
+		
+		List<SpFile> files = Lists.newArrayList();
+		for (int i = 0; i < 200; i++) {
+			files.add(new SpFile("file" + i + (i % 3 == 0 ? ".txt" : ".docx"), "/files/file" + i, Instant.now(), Instant.now(), i, SpVersion.fromString("1", "0")));
+		}
+		
+		List<SpFile> written = Lists.newArrayList();
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			SpFilePropertiesEnricher enricher = new SpFilePropertiesEnricher(provider, SpFileTreeReporter::hasProperties, executor, 2, 7, (file, properties) -> {
+				written.add(file);
+				assertEquals(SpFileTreeReporter.hasProperties(file), properties != null);
+			});
+			for (SpFile file : files) {
+				enricher.add(file);
+			}
+			enricher.finish();
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		assertEquals(files, written);
+		//133 office files, incomplete batches are sent only when writer would have to wait for them
+		assertTrue("Too many batches: " + batches.get(), batches.get() < 133);
+	}
+}
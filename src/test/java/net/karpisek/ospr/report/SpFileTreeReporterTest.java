@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.report;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.jdom2.JDOMException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.Lists;
+
+import net.karpisek.ospr.Ospr;
+import net.karpisek.ospr.net.LocalSpObjectProvider;
+import net.karpisek.ospr.net.SpFolder;
+
+public class SpFileTreeReporterTest {
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+	
+	static List<String> readColumn(Sheet sheet, int column) {
+		List<String> result = Lists.newArrayList();
+		for (Row row : sheet) {
+			result.add(row.getCell(column).getStringCellValue());
+		}
+		return result;
+	}
+	
+	static List<String> expectedNames() {
+		return Lists.newArrayList(
+				"sp.name", 
+				"test.docx", "test.pptx", "test.txt", "test.xlsx", 
+				"test11a.txt", 
+				"test1a.txt", "test1b.txt", "test1c.docx", "test1d.xlsx", "test1e.pptx", 
+				"test2a.txt"
+				);
+	}
+	
+	static void assertExpectedRollups(Sheet sheet) {
+		String root = "src/test/resources/test1site/documents";
+		assertEquals(
+				Lists.newArrayList("sp.serverRelativeUrl", root + "/test1/test11", root + "/test1", root + "/test2", root), 
+				readColumn(sheet, 0)
+				);
+		Row rootRow = sheet.getRow(4);
+		assertEquals(0, (int) rootRow.getCell(1).getNumericCellValue());
+		assertEquals(11, (int) rootRow.getCell(2).getNumericCellValue());
+		assertEquals(3, (int) rootRow.getCell(3).getNumericCellValue());
+		assertEquals(11 * 1234567L, (long) rootRow.getCell(4).getNumericCellValue());
+		assertEquals(2, (int) rootRow.getCell(5).getNumericCellValue());
+	}
+	
+	@Test
+	public void testInMemory() throws IOException, InterruptedException, TimeoutException, ExecutionException, JDOMException {
+		Path output = temporaryFolder.getRoot().toPath().resolve("report.xlsx");
+		new SpFileTreeReporter.Builder(new LocalSpObjectProvider(), "src/test/resources/test1site/documents", output)
+			.maxDepth(Ospr.UNLIMITED_DEPTH)
+			.build()
+			.execute();
+		
+		try(InputStream stream = Files.newInputStream(output); XSSFWorkbook workbook = new XSSFWorkbook(stream)){
+			assertEquals(expectedNames(), readColumn(workbook.getSheet("files"), 0));
+			assertExpectedRollups(workbook.getSheet("folders"));
+			//default style + timestamp, number and text styles shared by all rows
+			assertEquals(4, workbook.getNumCellStyles());
+		}
+	}
+	
+	@Test
+	public void testStreaming() throws IOException, InterruptedException, TimeoutException, ExecutionException, JDOMException {
+		Path output = temporaryFolder.getRoot().toPath().resolve("report.xlsx");
+		new SpFileTreeReporter.Builder(new LocalSpObjectProvider(), "src/test/resources/test1site/documents", output)
+			.maxDepth(Ospr.UNLIMITED_DEPTH)
+			.streaming(2)
+			.build()
+			.execute();
+		
+		try(InputStream stream = Files.newInputStream(output); XSSFWorkbook workbook = new XSSFWorkbook(stream)){
+			assertEquals(expectedNames(), readColumn(workbook.getSheet("files"), 0));
+		}
+	}
+	
+	@Test
+	public void testCsv() throws IOException, InterruptedException, TimeoutException, ExecutionException, JDOMException {
+		Path output = temporaryFolder.getRoot().toPath().resolve("report.csv");
+		new SpFileTreeReporter.Builder(new LocalSpObjectProvider(), "src/test/resources/test1site/documents", output)
+			.maxDepth(Ospr.UNLIMITED_DEPTH)
+			.format(SpReportFormat.CSV)
+			.build()
+			.execute();
+		
+		List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+		assertEquals(expectedNames(), lines.stream().map(line -> line.substring(0, line.indexOf(','))).collect(Collectors.toList()));
+		assertEquals("sp.name,sp.serverRelativeUrl,sp.timeLastModified,sp.timeCreated,sp.length,sp.version,meta.title,meta.subject,meta.comment,meta.keywords,meta.author", lines.get(0));
+		assertEquals("test.txt,src/test/resources/test1site/documents/test.txt,2018-11-10T15:31:43Z,2018-11-10T15:31:43Z,1234567,1.0,,,,,", lines.get(3));
+		
+		List<String> folders = Files.readAllLines(temporaryFolder.getRoot().toPath().resolve("report_folders.csv"), StandardCharsets.UTF_8);
+		assertEquals("sp.serverRelativeUrl,rollup.depth,rollup.files,rollup.folders,rollup.length,rollup.maxDepth,rollup.timeLastModified", folders.get(0));
+		assertEquals("src/test/resources/test1site/documents,0,11,3,13580237,2,2018-11-10T15:31:43Z", folders.get(4));
+		//only finished outputs are left
+		assertEquals(2, temporaryFolder.getRoot().list().length);
+	}
+	
+	@Test
+	public void testNdjson() throws IOException, InterruptedException, TimeoutException, ExecutionException, JDOMException {
+		Path output = temporaryFolder.getRoot().toPath().resolve("report.ndjson");
+		new SpFileTreeReporter.Builder(new LocalSpObjectProvider(), "src/test/resources/test1site/documents", output)
+			.maxDepth(Ospr.UNLIMITED_DEPTH)
+			.format(SpReportFormat.NDJSON)
+			.build()
+			.execute();
+		
+		List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+		assertEquals(expectedNames().size() - 1, lines.size());
+		assertEquals(
+				"{\"sp.name\":\"test.txt\",\"sp.serverRelativeUrl\":\"src/test/resources/test1site/documents/test.txt\",\"sp.timeLastModified\":\"2018-11-10T15:31:43Z\",\"sp.timeCreated\":\"2018-11-10T15:31:43Z\","
+				+ "\"sp.length\":1234567,\"sp.version\":\"1.0\",\"meta.title\":null,\"meta.subject\":null,\"meta.comment\":null,\"meta.keywords\":null,\"meta.author\":null}", 
+				lines.get(2)
+				);
+		
+		List<String> folders = Files.readAllLines(temporaryFolder.getRoot().toPath().resolve("report_folders.ndjson"), StandardCharsets.UTF_8);
+		assertEquals(4, folders.size());
+		assertEquals(
+				"{\"sp.serverRelativeUrl\":\"src/test/resources/test1site/documents/test1/test11\",\"rollup.depth\":2,\"rollup.files\":1,\"rollup.folders\":0,"
+				+ "\"rollup.length\":1234567,\"rollup.maxDepth\":0,\"rollup.timeLastModified\":\"2018-11-10T15:31:43Z\"}", 
+				folders.get(0)
+				);
+	}
+	
+	@Test
+	public void testResume() throws IOException, InterruptedException, TimeoutException, ExecutionException, JDOMException {
+		Path output = temporaryFolder.getRoot().toPath().resolve("report.xlsx");
+		Path journal = temporaryFolder.getRoot().toPath().resolve("report.journal");
+		String failing = "src/test/resources/test1site/documents/test2";
+		try {
+			new SpFileTreeReporter.Builder(new LocalSpObjectProvider() {
+				@Override
+				public SpFolder getFolder(String folder) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+					if(folder.equals(failing)) {
+						throw new IOException("connection lost");
+					}
+					return super.getFolder(folder);
+				}
+			}, "src/test/resources/test1site/documents", output)
+				.maxDepth(Ospr.UNLIMITED_DEPTH)
+				.journal(journal)
+				.build()
+				.execute();
+			fail("failure expected");
+		}
+		catch(IOException e) {
+			assertEquals("connection lost", e.getMessage());
+		}
+		assertTrue(Files.exists(journal));
+		
+		//finished subtree of test1 is not fetched again
+		List<String> fetched = Lists.newArrayList();
+		new SpFileTreeReporter.Builder(new LocalSpObjectProvider() {
+			@Override
+			public SpFolder getFolder(String folder) throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+				fetched.add(folder);
+				return super.getFolder(folder);
+			}
+		}, "src/test/resources/test1site/documents", output)
+			.maxDepth(Ospr.UNLIMITED_DEPTH)
+			.journal(journal)
+			.resume(true)
+			.build()
+			.execute();
+		
+		assertEquals(Lists.newArrayList("src/test/resources/test1site/documents", failing), fetched);
+		assertFalse(Files.exists(journal));
+		try(InputStream stream = Files.newInputStream(output); XSSFWorkbook workbook = new XSSFWorkbook(stream)){
+			assertEquals(expectedNames(), readColumn(workbook.getSheet("files"), 0));
+			//rollups of subtree finished by interrupted run are taken from journal
+			assertExpectedRollups(workbook.getSheet("folders"));
+		}
+	}
+}
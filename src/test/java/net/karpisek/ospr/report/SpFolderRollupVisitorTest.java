@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.report;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import org.jdom2.JDOMException;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import net.karpisek.ospr.Ospr;
+import net.karpisek.ospr.net.LocalSpObjectProvider;
+import net.karpisek.ospr.net.SpFiles;
+
+public class SpFolderRollupVisitorTest {
+	private static final String ROOT = "src/test/resources/test1site/documents";
+	
+	@Test
+	public void testRollups() throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		List<SpFolderRollup> rollups = Lists.newArrayList();
+		SpFiles.walkFileTree(new LocalSpObjectProvider(), ROOT, 0, Ospr.UNLIMITED_DEPTH, new SpFolderRollupVisitor(rollups::add));
+		
+		//subfolders are written before their parent
+		assertEquals(
+				Lists.newArrayList(ROOT + "/test1/test11", ROOT + "/test1", ROOT + "/test2", ROOT), 
+				rollups.stream().map(SpFolderRollup::getServerRelativeUrl).collect(Collectors.toList())
+				);
+		Map<String, SpFolderRollup> byUrl = rollups.stream().collect(Collectors.toMap(SpFolderRollup::getServerRelativeUrl, each -> each));
+		
+		SpFolderRollup root = byUrl.get(ROOT);
+		assertEquals(0, root.getDepth());
+		assertEquals(11, root.getFiles());
+		assertEquals(3, root.getFolders());
+		assertEquals(11 * 1234567L, root.getBytes());
+		assertEquals(2, root.getMaxDepth());
+		assertEquals(LocalSpObjectProvider.NOW, root.getNewest());
+		
+		SpFolderRollup test1 = byUrl.get(ROOT + "/test1");
+		assertEquals(1, test1.getDepth());
+		assertEquals(6, test1.getFiles());
+		assertEquals(1, test1.getFolders());
+		assertEquals(1, test1.getMaxDepth());
+		
+		SpFolderRollup test11 = byUrl.get(ROOT + "/test1/test11");
+		assertEquals(2, test11.getDepth());
+		assertEquals(1, test11.getFiles());
+		assertEquals(0, test11.getFolders());
+		assertEquals(0, test11.getMaxDepth());
+	}
+	
+	@Test
+	public void testMaxDepth() throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		List<SpFolderRollup> rollups = Lists.newArrayList();
+		SpFiles.walkFileTree(new LocalSpObjectProvider(), ROOT, 0, 0, new SpFolderRollupVisitor(rollups::add));
+		
+		//only visited part of tree is counted
+		assertEquals(1, rollups.size());
+		assertEquals(4, rollups.get(0).getFiles());
+		assertEquals(0, rollups.get(0).getFolders());
+		assertEquals(0, rollups.get(0).getMaxDepth());
+	}
+	
+	@Test
+	public void testSkippedSubfolder() throws InterruptedException, TimeoutException, ExecutionException, IOException, JDOMException {
+		List<SpFolderRollup> rollups = Lists.newArrayList();
+		SpFolderRollupVisitor visitor = new SpFolderRollupVisitor(rollups::add) {
+			@Override
+			public boolean skipFolder(String serverRelativeUrl) {
+				if(serverRelativeUrl.equals(ROOT + "/test2")) {
+					add(new SpFolderRollup(serverRelativeUrl, 1, 10, 2, 100, 3, LocalSpObjectProvider.NOW.plusSeconds(60)));
+					return true;
+				}
+				return false;
+			}
+		};
+		SpFiles.walkFileTree(new LocalSpObjectProvider(), ROOT, 0, Ospr.UNLIMITED_DEPTH, visitor);
+		
+		SpFolderRollup root = rollups.get(rollups.size() - 1);
+		assertEquals(ROOT, root.getServerRelativeUrl());
+		assertEquals(10 + 10, root.getFiles());
+		assertEquals(2 + 3, root.getFolders());
+		assertEquals(10 * 1234567L + 100, root.getBytes());
+		assertEquals(4, root.getMaxDepth());
+		assertEquals(LocalSpObjectProvider.NOW.plusSeconds(60), root.getNewest());
+	}
+}
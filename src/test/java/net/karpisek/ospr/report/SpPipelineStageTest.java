@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.report;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+public class SpPipelineStageTest {
+	@Test
+	public void testOrder() throws IOException {
+		List<Integer> done = new CopyOnWriteArrayList<>();
+		try(SpPipelineStage stage = new SpPipelineStage("test", 2)){
+			for (int i = 0; i < 100; i++) {
+				int each = i;
+				stage.put(() -> done.add(each));
+			}
+			stage.finish();
+			assertEquals(100, stage.getDone());
+		}
+		assertEquals(IntStream.range(0, 100).boxed().collect(Collectors.toList()), done);
+	}
+	
+	@Test
+	public void testBackpressure() throws IOException, InterruptedException {
+		CountDownLatch release = new CountDownLatch(1);
+		try(SpPipelineStage stage = new SpPipelineStage("test", 1)){
+			stage.put(() -> {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			//waits in queue while first task is running
+			stage.put(() -> {});
+			Thread producer = new Thread(() -> {
+				try {
+					stage.put(() -> {});
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+			});
+			producer.start();
+			producer.join(200);
+			assertTrue("producer has to wait for full queue", producer.isAlive());
+			
+			release.countDown();
+			producer.join();
+			stage.finish();
+			assertEquals(3, stage.getDone());
+		}
+	}
+	
+	@Test
+	public void testFailure() throws IOException {
+		try(SpPipelineStage stage = new SpPipelineStage("test", 2)){
+			stage.put(() -> {
+				throw new IOException("disk full");
+			});
+			try {
+				for (int i = 0; i < 100; i++) {
+					stage.put(() -> {});
+				}
+				stage.finish();
+				fail("failure expected");
+			}
+			catch(IOException e) {
+				assertEquals("disk full", e.getCause().getMessage());
+			}
+		}
+	}
+	
+	@Test
+	public void testError() throws IOException {
+		try(SpPipelineStage stage = new SpPipelineStage("test", 2)){
+			stage.put(() -> {
+				throw new OutOfMemoryError("Java heap space");
+			});
+			try {
+				for (int i = 0; i < 100; i++) {
+					stage.put(() -> {});
+				}
+				stage.finish();
+				fail("failure expected");
+			}
+			catch(IOException e) {
+				assertTrue(e.getCause() instanceof OutOfMemoryError);
+			}
+		}
+	}
+}
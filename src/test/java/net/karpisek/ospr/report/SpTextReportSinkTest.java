@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.report;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.karpisek.ospr.net.LocalSpObjectProvider;
+import net.karpisek.ospr.net.SpFile;
+import net.karpisek.ospr.net.SpVersion;
+
+public class SpTextReportSinkTest {
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+	
+	@Test
+	public void testFoldersPath() {
+		assertEquals(Paths.get("target/report_folders.csv"), SpTextReportSink.foldersPath(Paths.get("target/report.csv")));
+		assertEquals(Paths.get("report_folders"), SpTextReportSink.foldersPath(Paths.get("report")));
+	}
+	
+	@Test
+	public void testCsvEscape() {
+		assertEquals("plain text", SpCsvReportSink.escape("plain text"));
+		assertEquals("\"a,b\"", SpCsvReportSink.escape("a,b"));
+		assertEquals("\"say \"\"hi\"\"\"", SpCsvReportSink.escape("say \"hi\""));
+		assertEquals("\"line\nbreak\"", SpCsvReportSink.escape("line\nbreak"));
+	}
+	
+	@Test
+	public void testJsonQuote() {
+		assertEquals("\"plain\"", SpJsonReportSink.quote("plain"));
+		assertEquals("\"a\\\"b\\\\c\"", SpJsonReportSink.quote("a\"b\\c"));
+		assertEquals("\"\\n\\t\\u0001\"", SpJsonReportSink.quote("\n\t\u0001"));
+	}
+	
+	@Test
+	public void testUnfinished() throws IOException {
+		Path output = temporaryFolder.getRoot().toPath().resolve("report.csv");
+		try(SpCsvReportSink sink = new SpCsvReportSink(output)){
+			sink.write(new SpFile("a.txt", "documents/a.txt", LocalSpObjectProvider.NOW, LocalSpObjectProvider.NOW, 1, SpVersion.of(1, 0)), null);
+		}
+		//report of failed run is not left behind, not even partially
+		assertFalse(Files.exists(output));
+		assertEquals(0, temporaryFolder.getRoot().list().length);
+	}
+}
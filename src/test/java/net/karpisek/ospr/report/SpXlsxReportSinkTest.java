@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Karpisek and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Martin Karpisek <martin.karpisek@gmail.com> - initial API and implementation 
+ *******************************************************************************/
+package net.karpisek.ospr.report;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.Lists;
+
+import net.karpisek.ospr.net.LocalSpObjectProvider;
+import net.karpisek.ospr.net.SpFile;
+import net.karpisek.ospr.net.SpVersion;
+
+public class SpXlsxReportSinkTest {
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+	
+	private static SpFile file(String name) {
+		return new SpFile(name, "documents/" + name, LocalSpObjectProvider.NOW, LocalSpObjectProvider.NOW, 1, SpVersion.of(1, 0));
+	}
+	
+	private void testRollover(int rowAccessWindowSize) throws IOException {
+		Path output = temporaryFolder.getRoot().toPath().resolve("report.xlsx");
+		try(SpXlsxReportSink sink = new SpXlsxReportSink(output, rowAccessWindowSize, 3)){
+			for (int i = 1; i <= 5; i++) {
+				sink.write(file("test" + i + ".txt"), null);
+			}
+			sink.write(new SpFolderRollup("documents", 0, LocalSpObjectProvider.NOW));
+			sink.finish();
+		}
+		
+		try(InputStream stream = Files.newInputStream(output); XSSFWorkbook workbook = new XSSFWorkbook(stream)){
+			List<String> names = Lists.newArrayList();
+			workbook.forEach(sheet -> names.add(sheet.getSheetName()));
+			assertEquals(Lists.newArrayList("files", "files_2", "files_3", "folders"), names);
+			//each sheet starts with header row
+			assertEquals(Lists.newArrayList("sp.name", "test1.txt", "test2.txt"), SpFileTreeReporterTest.readColumn(workbook.getSheet("files"), 0));
+			assertEquals(Lists.newArrayList("sp.name", "test3.txt", "test4.txt"), SpFileTreeReporterTest.readColumn(workbook.getSheet("files_2"), 0));
+			assertEquals(Lists.newArrayList("sp.name", "test5.txt"), SpFileTreeReporterTest.readColumn(workbook.getSheet("files_3"), 0));
+			assertEquals(Lists.newArrayList("sp.serverRelativeUrl", "documents"), SpFileTreeReporterTest.readColumn(workbook.getSheet("folders"), 0));
+		}
+	}
+	
+	@Test
+	public void testRolloverInMemory() throws IOException {
+		testRollover(SpFileTreeReporter.IN_MEMORY);
+	}
+	
+	@Test
+	public void testRolloverStreaming() throws IOException {
+		testRollover(2);
+	}
+	
+	@Test
+	public void testColumnWidths() throws IOException {
+		Path output = temporaryFolder.getRoot().toPath().resolve("report.xlsx");
+		try(SpXlsxReportSink sink = new SpXlsxReportSink(output, 2)){
+			sink.write(file("a.txt"), null);
+			sink.write(file("longer_name.txt"), null);
+			sink.write(file("b.txt"), null);
+			sink.finish();
+		}
+		
+		try(InputStream stream = Files.newInputStream(output); XSSFWorkbook workbook = new XSSFWorkbook(stream)){
+			Sheet sheet = workbook.getSheet("files");
+			//widest value, also when its row was already flushed
+			assertEquals(("longer_name.txt".length() + 2) * 256, sheet.getColumnWidth(0));
+			//header is wider than length values
+			assertEquals(("sp.length".length() + 2) * 256, sheet.getColumnWidth(4));
+			assertEquals(("sp.timeLastModified".length() + 2) * 256, sheet.getColumnWidth(2));
+		}
+	}
+	
+	@Test
+	public void testNumberWidth() {
+		assertEquals(1, SpXlsxReportSink.numberWidth(0));
+		assertEquals(3, SpXlsxReportSink.numberWidth(999));
+		assertEquals(5, SpXlsxReportSink.numberWidth(1000));
+		assertEquals(9, SpXlsxReportSink.numberWidth(1234567));
+		assertEquals(6, SpXlsxReportSink.numberWidth(-1000));
+	}
+}